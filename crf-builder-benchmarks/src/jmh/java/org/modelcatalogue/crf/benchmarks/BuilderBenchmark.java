@@ -0,0 +1,66 @@
+package org.modelcatalogue.crf.benchmarks;
+
+import org.modelcatalogue.crf.builder.CaseReportFormStaticExtensions;
+import org.modelcatalogue.crf.model.CaseReportForm;
+import org.modelcatalogue.crf.model.Section;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loading the form from the DSL file and sorting the items by question number.
+ */
+@State(Scope.Benchmark)
+public class BuilderBenchmark {
+
+    @Param({SyntheticForms.SMALL, SyntheticForms.MEDIUM, SyntheticForms.HUGE})
+    public String size;
+
+    private File dsl;
+
+    @Setup
+    public void setUp() throws IOException {
+        dsl = SyntheticForms.dsl(size);
+    }
+
+    @Benchmark
+    public CaseReportForm load() {
+        return CaseReportFormStaticExtensions.load(null, dsl);
+    }
+
+    @Benchmark
+    public List<Section> sortItemsByQuestionNumber(UnsortedSections unsorted) {
+        for (Section section : unsorted.sections) {
+            section.sortItemsByQuestionNumber();
+        }
+        return unsorted.sections;
+    }
+
+    /**
+     * Modifiable copies of the sections of the loaded form, created again before each invocation so the items are
+     * always sorted from the order of the DSL file and never from the order left by the previous invocation.
+     */
+    @State(Scope.Thread)
+    public static class UnsortedSections {
+
+        private CaseReportForm loaded;
+        private List<Section> sections;
+
+        @Setup
+        public void setUp(BuilderBenchmark benchmark) {
+            loaded = CaseReportFormStaticExtensions.load(null, benchmark.dsl).freeze();
+        }
+
+        @Setup(Level.Invocation)
+        public void copy() {
+            CaseReportForm version = loaded.newVersion();
+            sections = new ArrayList<Section>(loaded.getSections().size());
+            for (String label : loaded.getSections().keySet()) {
+                sections.add(version.section(label));
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.modelcatalogue.crf.benchmarks;
+
+import org.modelcatalogue.crf.model.CaseReportForm;
+import org.modelcatalogue.crf.model.Item;
+import org.modelcatalogue.crf.model.Section;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+
+/**
+ * Reading the response options and the conditional display of every item in the form. Only the items which have some
+ * options are asked for them.
+ */
+@State(Scope.Benchmark)
+public class ItemBenchmark {
+
+    @Param({SyntheticForms.SMALL, SyntheticForms.MEDIUM, SyntheticForms.HUGE})
+    public String size;
+
+    private CaseReportForm form;
+
+    @Setup
+    public void setUp() throws IOException {
+        form = SyntheticForms.load(size);
+    }
+
+    @Benchmark
+    public void responseOptions(Blackhole blackhole) {
+        for (Section section : form.getSections().values()) {
+            for (Item item : section.getItems().values()) {
+                if (item.getResponseOptionsText() != null) {
+                    blackhole.consume(item.getResponseOptions());
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void conditionalDisplay(Blackhole blackhole) {
+        for (Section section : form.getSections().values()) {
+            for (Item item : section.getItems().values()) {
+                blackhole.consume(item.getConditionalDisplay());
+            }
+        }
+    }
+}
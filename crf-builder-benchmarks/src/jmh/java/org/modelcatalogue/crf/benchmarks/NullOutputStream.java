@@ -0,0 +1,25 @@
+package org.modelcatalogue.crf.benchmarks;
+
+import java.io.OutputStream;
+
+/**
+ * Discards everything written but counts the bytes so the output cannot be optimized away.
+ */
+final class NullOutputStream extends OutputStream {
+
+    private long count;
+
+    @Override
+    public void write(int b) {
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        count += len;
+    }
+
+    long getCount() {
+        return count;
+    }
+}
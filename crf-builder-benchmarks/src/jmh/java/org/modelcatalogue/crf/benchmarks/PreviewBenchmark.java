@@ -0,0 +1,31 @@
+package org.modelcatalogue.crf.benchmarks;
+
+import org.modelcatalogue.crf.model.CaseReportForm;
+import org.modelcatalogue.crf.preview.CaseReportFormPreview;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+
+/**
+ * Writing the HTML preview of the form including the validation errors.
+ */
+@State(Scope.Benchmark)
+public class PreviewBenchmark {
+
+    @Param({SyntheticForms.SMALL, SyntheticForms.MEDIUM, SyntheticForms.HUGE})
+    public String size;
+
+    private CaseReportForm form;
+
+    @Setup
+    public void setUp() throws IOException {
+        form = SyntheticForms.load(size);
+    }
+
+    @Benchmark
+    public long write() {
+        NullOutputStream out = new NullOutputStream();
+        new CaseReportFormPreview(form).write(out);
+        return out.getCount();
+    }
+}
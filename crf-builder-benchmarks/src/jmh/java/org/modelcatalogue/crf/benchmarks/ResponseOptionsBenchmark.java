@@ -0,0 +1,70 @@
+package org.modelcatalogue.crf.benchmarks;
+
+import org.modelcatalogue.crf.model.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encoding and decoding of the comma separated response options of a section of select items, each of them having
+ * given number of options. Every fifth option contains a comma which needs to be escaped.
+ */
+@State(Scope.Benchmark)
+public class ResponseOptionsBenchmark {
+
+    private static final int ITEMS = 100;
+
+    @Param({"5", "60"})
+    public int options;
+
+    private final List<Item> items = new ArrayList<Item>(ITEMS);
+    private final List<ResponseOption> responseOptions = new ArrayList<ResponseOption>();
+
+    private String encodedTexts;
+    private String conditionalDisplay;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < options; i++) {
+            String text = i % 5 == 0 ? "Option " + i + ", with comma" : "Option " + i;
+            responseOptions.add(new ResponseOption(text, String.valueOf(i)));
+        }
+
+        CaseReportForm form = new CaseReportForm();
+        Section section = form.section("Options");
+        for (int i = 0; i < ITEMS; i++) {
+            Item item = (Item) section.singleSelect("SELECT_" + i);
+            item.setResponseOptions(responseOptions);
+            items.add(item);
+        }
+
+        encodedTexts = items.get(0).getResponseOptionsText();
+
+        Item controlled = (Item) section.text("CONTROLLED");
+        controlled.setConditionalDisplay(new ConditionalDisplay(items.get(0).getResponseOptions().get(0), "Please select, the first option"));
+        conditionalDisplay = controlled.getSimpleConditionalDisplay();
+    }
+
+    @Benchmark
+    public void encode(Blackhole blackhole) {
+        for (Item item : items) {
+            item.setResponseOptions(responseOptions);
+            blackhole.consume(item.getResponseOptionsText());
+            blackhole.consume(item.getResponseValuesOrCalculations());
+        }
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole) {
+        for (int i = 0; i < ITEMS; i++) {
+            blackhole.consume(Item.parseResponseOptions(encodedTexts));
+        }
+    }
+
+    @Benchmark
+    public List<String> decodeConditionalDisplay() {
+        return Item.parseResponseOptions(conditionalDisplay);
+    }
+}
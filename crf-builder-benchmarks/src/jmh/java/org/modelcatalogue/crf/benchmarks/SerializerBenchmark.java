@@ -0,0 +1,83 @@
+package org.modelcatalogue.crf.benchmarks;
+
+import org.modelcatalogue.crf.model.CaseReportForm;
+import org.modelcatalogue.crf.model.Item;
+import org.modelcatalogue.crf.serializer.CaseReportFormSerializer;
+import org.modelcatalogue.crf.serializer.TextFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writing the form as excel file and as plain text tables, and writing the tables again after single edit with and
+ * without reusing the rows of the unchanged sections. With the rows reused only the edited section is read again, so
+ * the memory allocated per write (<code>gc.alloc.rate.norm</code>) grows with the size of the edited section instead
+ * of the whole form, while the time is still spent with writing all the rows to the files.
+ */
+@State(Scope.Benchmark)
+public class SerializerBenchmark {
+
+    @Param({SyntheticForms.SMALL, SyntheticForms.MEDIUM, SyntheticForms.HUGE})
+    public String size;
+
+    private CaseReportForm form;
+    private File directory;
+    private CaseReportFormSerializer reusingSerializer;
+    private Item edited;
+    private int edits;
+
+    @Setup
+    public void setUp() throws IOException {
+        form = SyntheticForms.load(size);
+        directory = File.createTempFile("serializer", "");
+        if (!directory.delete() || !directory.mkdir()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        reusingSerializer = new CaseReportFormSerializer(form);
+        reusingSerializer.setReuseRows(true);
+        edited = form.getSections().values().iterator().next().getItems().values().iterator().next();
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        NullOutputStream out = new NullOutputStream();
+        new CaseReportFormSerializer(form).write(out);
+        return out.getCount();
+    }
+
+    @Benchmark
+    public File writeCsv() throws IOException {
+        new CaseReportFormSerializer(form).writeText(directory, TextFormat.CSV);
+        return directory;
+    }
+
+    @Benchmark
+    public File writeCsvAfterEdit() throws IOException {
+        edit();
+        new CaseReportFormSerializer(form).writeText(directory, TextFormat.CSV);
+        return directory;
+    }
+
+    @Benchmark
+    public File writeCsvReusingRowsAfterEdit() throws IOException {
+        edit();
+        reusingSerializer.writeText(directory, TextFormat.CSV);
+        return directory;
+    }
+
+    private void edit() {
+        edited.setUnits(edits++ % 2 == 0 ? "kg" : null);
+    }
+}
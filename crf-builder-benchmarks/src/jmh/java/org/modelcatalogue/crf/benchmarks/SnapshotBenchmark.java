@@ -0,0 +1,52 @@
+package org.modelcatalogue.crf.benchmarks;
+
+import org.modelcatalogue.crf.builder.CaseReportFormStaticExtensions;
+import org.modelcatalogue.crf.model.CaseReportForm;
+import org.modelcatalogue.crf.serializer.CaseReportFormSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writing the binary snapshot of the form and reading the form back from the snapshot file.
+ *
+ * Compare the read with {@link BuilderBenchmark#load()} which loads the same form from the DSL file.
+ */
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+    @Param({SyntheticForms.SMALL, SyntheticForms.MEDIUM, SyntheticForms.HUGE})
+    public String size;
+
+    private CaseReportForm form;
+    private File snapshot;
+
+    @Setup
+    public void setUp() throws IOException {
+        form = CaseReportFormStaticExtensions.load(null, SyntheticForms.dsl(size));
+        snapshot = File.createTempFile("synthetic-" + size, ".crfs");
+        snapshot.deleteOnExit();
+        OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(snapshot));
+        try {
+            CaseReportFormSnapshot.write(form, outputStream);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    @Benchmark
+    public NullOutputStream write() throws IOException {
+        NullOutputStream outputStream = new NullOutputStream();
+        CaseReportFormSnapshot.write(form, outputStream);
+        return outputStream;
+    }
+
+    @Benchmark
+    public CaseReportForm read() throws IOException {
+        return CaseReportFormSnapshot.read(snapshot);
+    }
+}
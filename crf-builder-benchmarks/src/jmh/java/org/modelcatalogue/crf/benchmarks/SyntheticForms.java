@@ -0,0 +1,145 @@
+package org.modelcatalogue.crf.benchmarks;
+
+import org.modelcatalogue.crf.builder.CaseReportFormStaticExtensions;
+import org.modelcatalogue.crf.model.CaseReportForm;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Generates the forms used by the benchmarks.
+ *
+ * The forms are written as DSL files and loaded using the builder so they look the same as the real forms. Each
+ * section contains repeated blocks of single select with hidden comments shown on abnormal value and measurement with
+ * range validation, followed by a grid. The question numbers are in reverse order so the items need to be sorted.
+ */
+final class SyntheticForms {
+
+    static final String SMALL = "small";
+    static final String MEDIUM = "medium";
+    static final String HUGE = "huge";
+
+    private SyntheticForms() {}
+
+    /**
+     * Writes the DSL file of given size.
+     * @param size one of {@link #SMALL}, {@link #MEDIUM} or {@link #HUGE}
+     * @return temporary file deleted on exit
+     */
+    static File dsl(String size) throws IOException {
+        File file = File.createTempFile("synthetic-" + size, ".crf");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(dsl(sections(size), blocks(size)));
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    /**
+     * Loads the form of given size using the builder.
+     * @param size one of {@link #SMALL}, {@link #MEDIUM} or {@link #HUGE}
+     * @return new form
+     */
+    static CaseReportForm load(String size) throws IOException {
+        return CaseReportFormStaticExtensions.load(null, dsl(size));
+    }
+
+    private static int sections(String size) {
+        if (SMALL.equals(size)) {
+            return 2;
+        }
+        if (MEDIUM.equals(size)) {
+            return 10;
+        }
+        if (HUGE.equals(size)) {
+            return 40;
+        }
+        throw new IllegalArgumentException("Unknown form size: " + size);
+    }
+
+    private static int blocks(String size) {
+        if (SMALL.equals(size)) {
+            return 3;
+        }
+        if (MEDIUM.equals(size)) {
+            return 15;
+        }
+        if (HUGE.equals(size)) {
+            return 80;
+        }
+        throw new IllegalArgumentException("Unknown form size: " + size);
+    }
+
+    private static String dsl(int sections, int blocks) {
+        StringBuilder dsl = new StringBuilder();
+        dsl.append("name 'Synthetic Form'\n");
+        dsl.append("version 'S").append(sections).append('B').append(blocks).append("'\n");
+        dsl.append("versionDescription 'Synthetic form with ").append(sections).append(" sections'\n");
+        dsl.append("revisionNotes 'generated for benchmarks'\n\n");
+
+        for (int s = 1; s <= sections; s++) {
+            dsl.append("section('S").append(s).append("') {\n");
+            dsl.append("    title 'Section ").append(s).append("'\n");
+
+            for (int b = 1; b <= blocks; b++) {
+                String prefix = "S" + s + "_";
+                int questionNumber = blocks - b + 1;
+
+                dsl.append("    row {\n");
+                dsl.append("        singleSelect('").append(prefix).append("STATUS_").append(b).append("') {\n");
+                dsl.append("            description 'Status ").append(b).append("'\n");
+                dsl.append("            question 'Status ").append(b).append(":'\n");
+                dsl.append("            options 'Normal': 1, 'Abnormal': 2, 'Not Examined': 99\n");
+                dsl.append("            value '(select one)'\n");
+                dsl.append("            dataType integer\n");
+                dsl.append("            required true\n");
+                dsl.append("            questionNumber '").append(questionNumber).append(".1'\n");
+                dsl.append("        }\n");
+                dsl.append("        text('").append(prefix).append("COMMENTS_").append(b).append("') {\n");
+                dsl.append("            description 'Comments ").append(b).append("'\n");
+                dsl.append("            question 'Comments:(Required if Abnormal)'\n");
+                dsl.append("            dataType string\n");
+                dsl.append("            questionNumber '").append(questionNumber).append(".2'\n");
+                dsl.append("            show {\n");
+                dsl.append("                when '").append(prefix).append("STATUS_").append(b).append("' is 2 otherwise 'Abnormal should be selected if a comment has been entered.'\n");
+                dsl.append("            }\n");
+                dsl.append("        }\n");
+                dsl.append("    }\n");
+                dsl.append("    text('").append(prefix).append("MEASUREMENT_").append(b).append("') {\n");
+                dsl.append("        description 'Measurement ").append(b).append("'\n");
+                dsl.append("        question 'Measurement ").append(b).append(":'\n");
+                dsl.append("        units 'mm'\n");
+                dsl.append("        dataType real\n");
+                dsl.append("        questionNumber '").append(questionNumber).append(".3'\n");
+                dsl.append("        validate('Measurement out of expected range of 0-100 mm.') {\n");
+                dsl.append("            range(0, 100)\n");
+                dsl.append("        }\n");
+                dsl.append("    }\n");
+            }
+
+            dsl.append("    grid('Other ").append(s).append("') {\n");
+            dsl.append("        header 'Other Findings ").append(s).append("'\n");
+            dsl.append("        text('S").append(s).append("_OTHER') {\n");
+            dsl.append("            description 'Other Finding'\n");
+            dsl.append("            question 'Other Finding:'\n");
+            dsl.append("            dataType string\n");
+            dsl.append("        }\n");
+            dsl.append("        singleSelect('S").append(s).append("_OTHER_STATUS') {\n");
+            dsl.append("            description 'Other Finding Status'\n");
+            dsl.append("            question 'Status:'\n");
+            dsl.append("            options Normal: 1, Abnormal: 2\n");
+            dsl.append("            value '(select one)'\n");
+            dsl.append("            dataType integer\n");
+            dsl.append("        }\n");
+            dsl.append("    }\n");
+            dsl.append("}\n\n");
+        }
+        return dsl.toString();
+    }
+}
@@ -0,0 +1,72 @@
+package org.modelcatalogue.crf.benchmarks;
+
+import org.modelcatalogue.crf.model.CaseReportForm;
+import org.modelcatalogue.crf.model.FormValidator;
+import org.modelcatalogue.crf.model.IncrementalFormValidator;
+import org.modelcatalogue.crf.model.Item;
+import org.openjdk.jmh.annotations.*;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Bean Validation of the whole form, cascading from the form on single thread and using the {@link FormValidator}
+ * sequentially and in parallel, validation of the whole form using the generated validators which need no Bean
+ * Validation provider, and revalidation of the form after single edit using the {@link IncrementalFormValidator}.
+ */
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+
+    @Param({SyntheticForms.SMALL, SyntheticForms.MEDIUM, SyntheticForms.HUGE})
+    public String size;
+
+    private CaseReportForm form;
+    private Validator validator;
+    private FormValidator formValidator;
+    private FormValidator generatedFormValidator;
+    private IncrementalFormValidator incrementalFormValidator;
+    private Item edited;
+    private int edits;
+
+    @Setup
+    public void setUp() throws IOException {
+        form = SyntheticForms.load(size);
+        ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        formValidator = new FormValidator(validatorFactory);
+        generatedFormValidator = new FormValidator();
+        // the form is shared by all the benchmarks, the edits keep it as valid as it was
+        incrementalFormValidator = new IncrementalFormValidator(form, validatorFactory);
+        edited = form.getSections().values().iterator().next().getItems().values().iterator().next();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<CaseReportForm>> validate() {
+        return validator.validate(form);
+    }
+
+    @Benchmark
+    public FormValidator.Report formValidatorSequential() {
+        return formValidator.validate(form, Integer.MAX_VALUE, null);
+    }
+
+    @Benchmark
+    public FormValidator.Report formValidatorParallel() {
+        return formValidator.validate(form);
+    }
+
+    @Benchmark
+    public FormValidator.Report formValidatorGenerated() {
+        return generatedFormValidator.validate(form, Integer.MAX_VALUE, null);
+    }
+
+    @Benchmark
+    public int incrementalRevalidate() {
+        edited.setUnits(edits++ % 2 == 0 ? "kg" : null);
+        return incrementalFormValidator.revalidate().size();
+    }
+}
@@ -296,13 +296,13 @@ class CaseReportFormExtensions {
         ConditionDelegate delegate = new ConditionDelegate()
         delegate.with closure
 
-        Item refItem = item.getSection().getCaseReportForm().findItem(delegate.item)
+        Item refItem = item.getSection().getCaseReportForm().editItem(delegate.item)
 
         if (!refItem) {
             throw new IllegalArgumentException("Item '$delegate.item' not found for the form!")
         }
 
-        ResponseOption option = refItem.responseOptions.find { it.value == delegate.value?.toString() }
+        ResponseOption option = refItem.findResponseOptionByValue(delegate.value?.toString())
 
         if (!option) {
             throw new IllegalArgumentException("Item '$delegate.item' does not provides any option with value '$delegate.value'!")
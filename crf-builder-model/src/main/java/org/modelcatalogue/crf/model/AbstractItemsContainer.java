@@ -2,8 +2,6 @@ package org.modelcatalogue.crf.model;
 
 import javax.validation.Valid;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 abstract class AbstractItemsContainer implements ItemContainer {
 
@@ -11,10 +9,26 @@ abstract class AbstractItemsContainer implements ItemContainer {
 
     @Valid protected Map<String, Item> items = new LinkedHashMap<String, Item>();
 
+    /**
+     * True if the container belongs to a frozen form.
+     * @see CaseReportForm#freeze()
+     */
+    boolean frozen;
+
     private Item item(ResponseType type, String name) {
+        if (isConcurrent()) {
+            synchronized (this) {
+                return getOrCreateItem(type, name);
+            }
+        }
+        return getOrCreateItem(type, name);
+    }
+
+    private Item getOrCreateItem(ResponseType type, String name) {
         if (items.containsKey(name)) {
             return items.get(name);
         }
+        checkNotFrozen();
         Item item = new Item(type);
         item.setName(name);
         addItem(item);
@@ -23,10 +37,30 @@ abstract class AbstractItemsContainer implements ItemContainer {
 
     protected abstract Item addItem(Item item);
 
+    /**
+     * @return true if the container belongs to a form being built concurrently
+     * @see CaseReportForm#buildSections(List, CaseReportForm.SectionBuilder)
+     */
+    abstract boolean isConcurrent();
+
+    /**
+     * Records the container as dirty once its items have been reordered.
+     */
+    abstract void markReordered();
+
     public final Map<String, Item> getItems() {
+        if (frozen) {
+            return items;
+        }
         return Collections.unmodifiableMap(items);
     }
 
+    final void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException(CaseReportForm.FROZEN_MESSAGE);
+        }
+    }
+
     @Override
     public Text text(String name) {
         return item(ResponseType.TEXT, name);
@@ -79,50 +113,85 @@ abstract class AbstractItemsContainer implements ItemContainer {
         return item(ResponseType.INSTANT_CALCULATION, name);
     }
 
+    /**
+     * Sorts the items by their question numbers as described in {@link QuestionNumber}.
+     *
+     * Question number which has already been used in the container starts new sequence of questions which is placed
+     * after the previous one. Items without question number stay right after the item preceding them. Items which
+     * would be placed at the same position keep their original order.
+     */
     public void sortItemsByQuestionNumber() {
-        SortedMap<Long, Item> itemsByIndex = new TreeMap<Long, Item>();
-        Set<String> questionNumbers = new HashSet<String>(items.size());
-        int offset = 0;
+        checkNotFrozen();
+        if (isConcurrent()) {
+            synchronized (this) {
+                sortItems();
+            }
+        } else {
+            sortItems();
+        }
+    }
+
+    private void sortItems() {
+        SortKey[] keys = new SortKey[items.size()];
+        Set<String> questionNumbers = new HashSet<String>(items.size() * 2);
+        int sequence = 0;
+        QuestionNumber last = null;
 
-        long lastIndex = 0;
+        int index = 0;
         for (Item item : items.values()) {
             String questionNumber = item.getQuestionNumber();
             if (questionNumber != null) {
-                if (questionNumbers.contains(questionNumber)) {
-                    offset++;
+                if (!questionNumbers.add(questionNumber)) {
+                    sequence++;
                 }
-                questionNumbers.add(questionNumber);
-                long index = toQuestionNumberIndex(offset, questionNumber);
-                lastIndex = index;
-                itemsByIndex.put(index, item);
-            } else {
-                itemsByIndex.put(++lastIndex, item);
+                last = QuestionNumber.parse(questionNumber);
             }
+            keys[index] = new SortKey(item, sequence, last, index);
+            index++;
         }
 
-        Map<String, Item> result = new LinkedHashMap<String, Item>(items.size());
-        for (Item item : itemsByIndex.values()) {
-            result.put(item.getName(), item);
+        // falls back to sequential sort for small containers
+        Arrays.parallelSort(keys);
+
+        Map<String, Item> result = new LinkedHashMap<String, Item>(items.size() * 2);
+        for (SortKey key : keys) {
+            result.put(key.item.getName(), key.item);
         }
         this.items = result;
+        markReordered();
     }
 
-    private static Pattern SECOND_LEVEL_QUESTION = Pattern.compile("(\\d+)\\.(\\d+)");
-
-    /**
-     * If the string is just number itreturns the number times 1000.
-     * If the string contains two numbers separated by dot it returns the first number times 1000 plus the second number.
-     */
-    private static long toQuestionNumberIndex(int offset, String string) {
-        if (string.matches("\\d+")) {
-            return offset * 1000000000 + Integer.parseInt(string, 10) * 1000000;
+    private static final class SortKey implements Comparable<SortKey> {
+        final Item item;
+        final int sequence;
+        final QuestionNumber questionNumber;
+        final int index;
+
+        SortKey(Item item, int sequence, QuestionNumber questionNumber, int index) {
+            this.item = item;
+            this.sequence = sequence;
+            this.questionNumber = questionNumber;
+            this.index = index;
         }
 
-        Matcher matcher = SECOND_LEVEL_QUESTION.matcher(string);
-        if (matcher.matches()) {
-            return offset * 1000000000 + Integer.parseInt(matcher.group(1), 10) * 1000000 + Integer.parseInt(matcher.group(2), 10) * 1000;
+        @Override
+        public int compareTo(SortKey other) {
+            if (sequence != other.sequence) {
+                return sequence < other.sequence ? -1 : 1;
+            }
+            if (questionNumber != other.questionNumber) {
+                if (questionNumber == null) {
+                    return -1;
+                }
+                if (other.questionNumber == null) {
+                    return 1;
+                }
+                int result = questionNumber.compareTo(other.questionNumber);
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return index < other.index ? -1 : (index == other.index ? 0 : 1);
         }
-
-        return offset * 1000000000;
     }
 }
@@ -0,0 +1,155 @@
+package org.modelcatalogue.crf.model;
+
+import java.util.*;
+
+/**
+ * Immutable map backed by arrays of keys and values in insertion order with an open addressing index of the keys.
+ *
+ * It is used by the frozen forms where it replaces the linked hash maps. It needs only few references per entry and
+ * all the views are created once so the map can be read by any number of threads without allocating anything but
+ * the iterators.
+ */
+final class ArrayMap<V> extends AbstractMap<String, V> {
+
+    private final String[] keys;
+    private final Object[] values;
+
+    /**
+     * Positions of the entries increased by one, zero marks an empty slot.
+     */
+    private final int[] index;
+
+    private final Set<String> keySet;
+    private final List<V> valueList;
+    private final Set<Entry<String, V>> entrySet;
+
+    @SuppressWarnings("unchecked")
+    ArrayMap(Map<String, ? extends V> source) {
+        int size = source.size();
+        keys = new String[size];
+        values = new Object[size];
+
+        int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+        index = new int[capacity];
+
+        int i = 0;
+        for (Entry<String, ? extends V> entry : source.entrySet()) {
+            keys[i] = entry.getKey();
+            values[i] = entry.getValue();
+
+            int slot = hash(entry.getKey()) & (capacity - 1);
+            while (index[slot] != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            index[slot] = ++i;
+        }
+
+        final List<String> keyList = Collections.unmodifiableList(Arrays.asList(keys));
+        keySet = new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return keyList.iterator();
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return containsKey(key);
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+        valueList = Collections.unmodifiableList(Arrays.asList((V[]) values));
+        entrySet = new AbstractSet<Entry<String, V>>() {
+            @Override
+            public Iterator<Entry<String, V>> iterator() {
+                return new Iterator<Entry<String, V>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < keys.length;
+                    }
+
+                    @Override
+                    public Entry<String, V> next() {
+                        if (next >= keys.length) {
+                            throw new NoSuchElementException();
+                        }
+                        int current = next++;
+                        return new SimpleImmutableEntry<String, V>(keys[current], (V) values[current]);
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int position = position(key);
+        return position < 0 ? null : (V) values[position];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return position(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return keySet;
+    }
+
+    @Override
+    public Collection<V> values() {
+        return valueList;
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return entrySet;
+    }
+
+    private int position(Object key) {
+        if (key != null && !(key instanceof String)) {
+            return -1;
+        }
+        int mask = index.length - 1;
+        int slot = hash(key) & mask;
+        while (index[slot] != 0) {
+            int position = index[slot] - 1;
+            String candidate = keys[position];
+            if (key == null ? candidate == null : key.equals(candidate)) {
+                return position;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int hash(Object key) {
+        if (key == null) {
+            return 0;
+        }
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -8,10 +8,38 @@ import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 
 public class CaseReportForm {
 
+    static final String FROZEN_MESSAGE = "The form is frozen and cannot be modified!";
+
+    /**
+     * Maximal number of versions whose indices of the items are chained before a version gets the full index.
+     */
+    private static final int MAX_INDEX_DEPTH = 8;
+
+    private static final ChangeTracker[] NO_TRACKERS = new ChangeTracker[0];
+
+    /**
+     * Builds the content of single section.
+     *
+     * @see #buildSections(List, SectionBuilder)
+     */
+    public interface SectionBuilder {
+
+        /**
+         * Populates the section. Different sections are populated by different threads at the same time so the builder
+         * must only touch the section given and the items it creates.
+         *
+         * @param section section to be populated
+         */
+        void build(Section section);
+    }
+
     /**
      * Defines the name of the CRF as it will be displayed in the OpenClinica user interface.
      * When a user is assigning CRFs to an event definition, they will be viewing this name. A user performing data
@@ -61,10 +89,70 @@ public class CaseReportForm {
 
     @Size(min = 1) @Valid private Map<String, Section> sections = new LinkedHashMap<String, Section>();
 
+    /**
+     * Index of all the items of the form by their names. The item names must be unique within the whole form so single
+     * map is enough to find any item regardless of the section it belongs to.
+     *
+     * The index is kept up to date by the sections when the items are added so it does not depend on the actual map
+     * of the items held by the sections which is replaced when the items are sorted.
+     */
+    private Map<String, Item> itemsByName = new HashMap<String, Item>();
+
+    /**
+     * Pool of the values repeated across the items such as units, width decimals, page numbers, response labels or
+     * validation messages. The items intern these values when they are set so each distinct value is held only once
+     * no matter how many items use it.
+     */
+    private Map<String, String> strings = new HashMap<String, String>();
+
+    /**
+     * True if the form is the immutable snapshot created by {@link #freeze()}.
+     */
+    private boolean frozen;
+
+    /**
+     * True if the sections of the form can be built by multiple threads at the same time.
+     */
+    private boolean concurrent;
+
+    /**
+     * Frozen version this form has been derived from using {@link #newVersion()} or null if it is not derived.
+     *
+     * The sections shared with the base version are not copied and their items are not present in the own index of
+     * the items of this form which only holds the items of the copied or new sections. The items of the shared
+     * sections are found in the index of the base version instead.
+     */
+    private CaseReportForm base;
+
+    /**
+     * Number of the chained indices of the items which must be searched to find any item of the form.
+     */
+    private int depth;
+
+    /**
+     * Trackers collecting the changes of the form, empty if the changes are not tracked. The array is replaced
+     * whenever a tracker is added or removed.
+     */
+    private ChangeTracker[] trackers = NO_TRACKERS;
+
     public Section section(String label) {
+        if (concurrent) {
+            synchronized (this) {
+                return getOrCreateSection(label);
+            }
+        }
+        return getOrCreateSection(label);
+    }
+
+    private Section getOrCreateSection(String label) {
         if (sections.containsKey(label)) {
-            return sections.get(label);
+            Section existing = sections.get(label);
+            if (existing.frozen && !frozen) {
+                return thaw(existing);
+            }
+            return existing;
         }
+        checkNotFrozen();
         Section section = new Section();
         section.setLabel(label);
         addSection(section);
@@ -73,13 +161,26 @@ public class CaseReportForm {
 
     private Section addSection(Section section) {
         if (!sections.containsKey(section.getLabel())) {
+            for (Item item : section.items.values()) {
+                registerItem(item);
+            }
             sections.put(section.getLabel(), section);
             section.setCaseReportForm(this);
+            markDirty(this);
+            markDirty(section);
         }
         return section;
     }
 
+    /**
+     * Returns the sections of the form. The sections of a new version which are still shared with the base version
+     * are frozen, use {@link #section(String)} to get their modifiable copies.
+     * @return the sections of the form
+     */
     public Map<String, Section> getSections() {
+        if (frozen) {
+            return sections;
+        }
         return Collections.unmodifiableMap(sections);
     }
 
@@ -88,7 +189,9 @@ public class CaseReportForm {
     }
 
     public void setName(String name) {
+        checkNotFrozen();
         this.name = name;
+        markDirty(this);
     }
 
     public String getVersion() {
@@ -96,7 +199,9 @@ public class CaseReportForm {
     }
 
     public void setVersion(String version) {
+        checkNotFrozen();
         this.version = version;
+        markDirty(this);
     }
 
     public String getVersionDescription() {
@@ -104,7 +209,9 @@ public class CaseReportForm {
     }
 
     public void setVersionDescription(String versionDescription) {
+        checkNotFrozen();
         this.versionDescription = versionDescription;
+        markDirty(this);
     }
 
     public String getRevisionNotes() {
@@ -112,16 +219,390 @@ public class CaseReportForm {
     }
 
     public void setRevisionNotes(String revisionNotes) {
+        checkNotFrozen();
         this.revisionNotes = revisionNotes;
+        markDirty(this);
     }
 
+    /**
+     * Finds the item of given name in any section of the form.
+     *
+     * If the form is a new version and the item belongs to a section shared with the base version, the shared item is
+     * returned as it is and it cannot be modified. Use {@link #editItem(String)} to get the item which can be modified.
+     *
+     * @param name name of the item
+     * @return the item of given name or null if there is no such item in the form
+     */
     public Item findItem(String name) {
+        Item item = itemsByName.get(name);
+        if (item != null || base == null) {
+            return item;
+        }
+        return findShared(name);
+    }
+
+    /**
+     * Finds the item of given name in any section of the form so it can be modified.
+     *
+     * If the form is a new version and the item belongs to a section shared with the base version, the section is
+     * copied first together with all the sections bound to it by the conditional display, see {@link #newVersion()}.
+     * The items of the copied sections replace the shared ones, so any shared item found before is no longer part of
+     * this form.
+     *
+     * @param name name of the item
+     * @return the modifiable item of given name or null if there is no such item in the form
+     * @throws IllegalStateException if the form is frozen
+     */
+    public Item editItem(String name) {
+        checkNotFrozen();
+        Item item = itemsByName.get(name);
+        if (item != null || base == null) {
+            return item;
+        }
+        Item shared = findShared(name);
+        if (shared == null) {
+            return null;
+        }
+        section(shared.getSection().getLabel());
+        return itemsByName.get(name);
+    }
+
+    /**
+     * @return the item of given name from the base version if its section is still shared by this form
+     */
+    private Item findShared(String name) {
+        Item shared = base.findItem(name);
+        if (shared == null || sections.get(shared.getSection().getLabel()) != shared.getSection()) {
+            return null;
+        }
+        return shared;
+    }
+
+    /**
+     * Adds the item to the index of the form items.
+     *
+     * @param item item being added to one of the sections of the form
+     * @throws IllegalArgumentException if different item of the same name already exists in the form
+     */
+    void registerItem(Item item) {
+        Item existing = itemsByName.putIfAbsent(item.getName(), item);
+        if (existing == null && base != null) {
+            existing = findShared(item.getName());
+            if (existing != null) {
+                itemsByName.remove(item.getName());
+            }
+        }
+        if (existing == null) {
+            return;
+        }
+        if (existing != item) {
+            String sectionLabel = existing.getSection() == null ? null : existing.getSection().getLabel();
+            throw new IllegalArgumentException("Item " + item.getName() + " already exists in section " + sectionLabel + ". Item names must be unique within the whole form!");
+        }
+    }
+
+    /**
+     * Returns the instance of the value held by the pool of the repeated values of the form.
+     * @param value value to be interned
+     * @return the pooled instance equal to the value
+     */
+    String intern(String value) {
+        String existing = strings.putIfAbsent(value, value);
+        return existing == null ? value : existing;
+    }
+
+    /**
+     * Builds the sections of given labels in parallel using the common fork-join pool.
+     *
+     * @see #buildSections(List, SectionBuilder, ForkJoinPool)
+     */
+    public void buildSections(List<String> labels, SectionBuilder builder) {
+        buildSections(labels, builder, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds the sections of given labels in parallel.
+     *
+     * All the sections are declared in the order of the labels before any of them is built so the order of the
+     * sections is always the same regardless of the order the threads finish. The order of the items within each section
+     * is the order the builder creates them. The form is switched to the concurrent mode while the sections are being
+     * built and back once all of them are finished.
+     *
+     * @param labels labels of the sections to be built
+     * @param builder builder populating each of the sections
+     * @param pool pool used to build the sections
+     * @throws IllegalArgumentException if the items of the same name are created in different sections
+     */
+    public void buildSections(List<String> labels, SectionBuilder builder, ForkJoinPool pool) {
+        checkNotFrozen();
+        List<Section> declared = new ArrayList<Section>(labels.size());
+        for (String label : labels) {
+            declared.add(section(label));
+        }
+
+        boolean previous = concurrent;
+        setConcurrent(true);
+        try {
+            pool.invoke(new BuildSectionsAction(declared, builder));
+        } finally {
+            setConcurrent(previous);
+        }
+    }
+
+    /**
+     * @return true if the sections of the form can be built by multiple threads at the same time
+     */
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    /**
+     * Switches the concurrent mode of the form.
+     *
+     * In the concurrent mode the sections, groups and items are created under the lock of their container and
+     * the index of the items and the pool of the repeated values are concurrent so each section can be populated by
+     * a different thread. The mode should be switched before the threads are started and after all of them are
+     * finished. Outside the concurrent mode the form is not thread-safe at all and no locks are taken.
+     *
+     * @param concurrent true if the sections of the form will be built by multiple threads at the same time
+     */
+    public void setConcurrent(boolean concurrent) {
+        checkNotFrozen();
+        if (this.concurrent == concurrent) {
+            return;
+        }
+        this.concurrent = concurrent;
+        itemsByName = concurrent ? new ConcurrentHashMap<String, Item>(itemsByName) : new HashMap<String, Item>(itemsByName);
+        strings = concurrent ? new ConcurrentHashMap<String, String>(strings) : new HashMap<String, String>(strings);
+    }
+
+    /**
+     * Creates an immutable snapshot of the form.
+     *
+     * The snapshot contains copies of all the sections, groups and items which are held in compact array based maps.
+     * Any attempt to modify the snapshot fails with {@link IllegalStateException}. Once the snapshot is safely published
+     * it can be read, validated, serialized or previewed by any number of threads at the same time without any locking
+     * while this form is still being edited.
+     *
+     * If the form is a new version created by {@link #newVersion()} only the sections which have been modified are
+     * copied, the snapshot shares all the other sections with the base version.
+     *
+     * @return immutable snapshot of the form or the form itself if it is already frozen
+     */
+    public CaseReportForm freeze() {
+        if (frozen) {
+            return this;
+        }
+
+        CaseReportForm copy = new CaseReportForm();
+        copy.name = name;
+        copy.version = version;
+        copy.versionDescription = versionDescription;
+        copy.revisionNotes = revisionNotes;
+
+        Map<Item, Item> copies = new IdentityHashMap<Item, Item>(itemsByName.size() * 2);
+        Map<String, Section> sectionCopies = new LinkedHashMap<String, Section>(sections.size() * 2);
+        for (Section section : sections.values()) {
+            if (section.frozen) {
+                // shared with the base version
+                sectionCopies.put(section.getLabel(), section);
+            } else {
+                sectionCopies.put(section.getLabel(), section.copy(copy, copies, true));
+            }
+        }
+        copy.sections = new ArrayMap<Section>(sectionCopies);
+
+        boolean chained = base != null && base.depth < MAX_INDEX_DEPTH;
+        Map<String, Item> itemCopies = new LinkedHashMap<String, Item>(copies.size() * 2);
         for (Section section : sections.values()) {
-            Item found = section.items.get(name);
-            if (found != null) {
-                return found;
+            for (Item item : section.items.values()) {
+                if (!section.frozen) {
+                    item.copyConditionalDisplay(copies);
+                    itemCopies.put(item.getName(), copies.get(item));
+                } else if (!chained) {
+                    itemCopies.put(item.getName(), item);
+                }
+            }
+        }
+        copy.itemsByName = new ArrayMap<Item>(itemCopies);
+        if (chained) {
+            copy.base = base;
+            copy.depth = base.depth + 1;
+        }
+
+        copy.frozen = true;
+        return copy;
+    }
+
+    /**
+     * Creates new version of the form which shares all the sections, groups and items with this form until they are
+     * modified.
+     *
+     * The new version is modifiable but its sections are frozen and shared with this form until they are requested
+     * using {@link #section(String)} or one of their items is requested using {@link #editItem(String)}. At that point
+     * the section is copied together with all the sections bound to it by the conditional display. Items and groups
+     * point back to their sections so the section is the smallest unit which can be shared. The shared sections still
+     * belong to the version they have been copied in, see {@link Section#getCaseReportForm()}.
+     *
+     * Creating the new version of a frozen form takes constant time. A modifiable form is frozen first using
+     * {@link #freeze()}, which copies all its sections unless the form is a new version itself, so deriving the new
+     * version from a modifiable form takes the time and memory proportional to the whole form. Once the new version is
+     * frozen it only holds copies of the modified sections and it shares the rest with this form, so freezing the new
+     * version takes the time and memory proportional to the changes, apart from every few versions in the chain which
+     * index the items of the whole form again, and all the versions stay readable at once.
+     *
+     * @return new modifiable version of the form
+     */
+    public CaseReportForm newVersion() {
+        CaseReportForm frozenBase = freeze();
+
+        CaseReportForm version = new CaseReportForm();
+        version.name = frozenBase.name;
+        version.version = frozenBase.version;
+        version.versionDescription = frozenBase.versionDescription;
+        version.revisionNotes = frozenBase.revisionNotes;
+        version.sections.putAll(frozenBase.sections);
+        version.base = frozenBase;
+        return version;
+    }
+
+    /**
+     * Replaces the shared frozen section and all the shared sections bound to it by the conditional display with
+     * their modifiable copies.
+     */
+    private Section thaw(Section shared) {
+        Set<Section> bound = Collections.newSetFromMap(new IdentityHashMap<Section, Boolean>());
+        Deque<Section> pending = new ArrayDeque<Section>();
+        pending.add(shared);
+        while (!pending.isEmpty()) {
+            Section section = pending.poll();
+            if (sections.get(section.getLabel()) != section || !bound.add(section)) {
+                continue;
+            }
+            for (Item item : section.items.values()) {
+                ConditionalDisplay conditionalDisplay = item.getConditionalDisplay();
+                if (conditionalDisplay != null && conditionalDisplay.getResponse().getItem().getSection() != null) {
+                    pending.add(conditionalDisplay.getResponse().getItem().getSection());
+                }
+                for (Item controlled : item.getControlledItems()) {
+                    pending.add(controlled.getSection());
+                }
+            }
+        }
+
+        Map<Item, Item> copies = new IdentityHashMap<Item, Item>();
+        for (Section section : bound) {
+            Section copy = section.copy(this, copies, false);
+            sections.put(section.getLabel(), copy);
+            markSectionDirty(section);
+            markSectionDirty(copy);
+        }
+        for (Section section : bound) {
+            for (Item item : section.items.values()) {
+                item.copyConditionalDisplay(copies);
+                Item copy = copies.get(item);
+                itemsByName.put(copy.getName(), copy);
+            }
+        }
+        return sections.get(shared.getLabel());
+    }
+
+    /**
+     * Starts tracking the changes of the form. Once the tracking is started, the form, sections, groups and items
+     * record themselves as dirty in the returned tracker whenever any of their setters is called or when they are
+     * created. The sections replaced by their copies in a new version are recorded as dirty as well, together with
+     * the copies.
+     * @return new tracker collecting the changes independently of any other tracker of the form
+     */
+    synchronized ChangeTracker track() {
+        checkNotFrozen();
+        ChangeTracker tracker = new ChangeTracker();
+        ChangeTracker[] extended = Arrays.copyOf(trackers, trackers.length + 1);
+        extended[trackers.length] = tracker;
+        trackers = extended;
+        return tracker;
+    }
+
+    /**
+     * Stops collecting the changes into the tracker. The changes are no longer recorded at all once the last tracker
+     * is removed.
+     * @param tracker tracker created by {@link #track()}
+     */
+    synchronized void untrack(ChangeTracker tracker) {
+        for (int i = 0; i < trackers.length; i++) {
+            if (trackers[i] == tracker) {
+                ChangeTracker[] reduced = new ChangeTracker[trackers.length - 1];
+                System.arraycopy(trackers, 0, reduced, 0, i);
+                System.arraycopy(trackers, i + 1, reduced, i, reduced.length - i);
+                trackers = reduced.length == 0 ? NO_TRACKERS : reduced;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Records the form or any of its sections, groups or items as dirty in all the trackers of the form.
+     * @param changed the object which has changed
+     */
+    void markDirty(Object changed) {
+        ChangeTracker[] current = trackers;
+        for (ChangeTracker tracker : current) {
+            tracker.mark(changed, concurrent);
+        }
+    }
+
+    private void markSectionDirty(Section section) {
+        if (trackers.length == 0) {
+            return;
+        }
+        markDirty(section);
+        for (Group group : section.getGroups().values()) {
+            markDirty(group);
+        }
+        for (Item item : section.items.values()) {
+            markDirty(item);
+        }
+    }
+
+    /**
+     * @return true if the form is an immutable snapshot created by {@link #freeze()}
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException(FROZEN_MESSAGE);
+        }
+    }
+
+    private static final class BuildSectionsAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Section> sections;
+        private final SectionBuilder builder;
+
+        BuildSectionsAction(List<Section> sections, SectionBuilder builder) {
+            this.sections = sections;
+            this.builder = builder;
+        }
+
+        @Override
+        protected void compute() {
+            if (sections.size() == 1) {
+                builder.build(sections.get(0));
+                return;
+            }
+            if (sections.isEmpty()) {
+                return;
             }
+            int half = sections.size() / 2;
+            invokeAll(
+                new BuildSectionsAction(sections.subList(0, half), builder),
+                new BuildSectionsAction(sections.subList(half, sections.size()), builder)
+            );
         }
-        return null;
     }
 }
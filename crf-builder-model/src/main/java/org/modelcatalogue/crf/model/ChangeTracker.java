@@ -0,0 +1,53 @@
+package org.modelcatalogue.crf.model;
+
+import java.util.*;
+
+/**
+ * Subscription to the changes of the form created by {@link CaseReportForm#track()}.
+ *
+ * Each tracker collects its own set of the changed objects, so taking the changes of one tracker never affects any
+ * other tracker of the same form. The tracker stops collecting the changes once it is removed using
+ * {@link CaseReportForm#untrack(ChangeTracker)}.
+ */
+final class ChangeTracker {
+
+    private final Set<Object> dirty = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+    /**
+     * Records the object as changed.
+     * @param changed the form or any of its sections, groups or items
+     * @param concurrent true if the form is being modified by multiple threads at the same time
+     */
+    void mark(Object changed, boolean concurrent) {
+        if (concurrent) {
+            synchronized (dirty) {
+                dirty.add(changed);
+            }
+        } else {
+            dirty.add(changed);
+        }
+    }
+
+    /**
+     * Returns the objects which have changed since the last call and forgets them.
+     * @param concurrent true if the form is being modified by multiple threads at the same time
+     * @return the changed objects
+     */
+    List<Object> take(boolean concurrent) {
+        if (concurrent) {
+            synchronized (dirty) {
+                return doTake();
+            }
+        }
+        return doTake();
+    }
+
+    private List<Object> doTake() {
+        if (dirty.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Object> taken = new ArrayList<Object>(dirty);
+        dirty.clear();
+        return taken;
+    }
+}
@@ -0,0 +1,417 @@
+package org.modelcatalogue.crf.model;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Path;
+import javax.validation.TraversableResolver;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import java.lang.annotation.ElementType;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class validates the whole form in parallel, either using Bean Validation or using the validators generated from
+ * the constraint annotations of the model (see {@link ModelConstraints}) which need no Bean Validation provider.
+ *
+ * The form, each of its sections, groups and items are validated separately without cascading so the work can be
+ * split between the threads of a fork-join pool. The violations are reported against the sheet and row the object
+ * is exported to (see {@link Sheet}) and they are always reported in the same order regardless of the number of threads:
+ * by sheet, row, property and message.
+ *
+ * The validation can stop once the given number of violations has been found. The reported violations are still the
+ * same as if the objects were validated one by one on single thread and the validation stopped as soon as the limit
+ * has been reached.
+ */
+public class FormValidator {
+
+    /**
+     * The sheets of the exported form the objects are written to.
+     */
+    public enum Sheet {
+        CRF("CRF"),
+        SECTIONS("Sections"),
+        GROUPS("Groups"),
+        ITEMS("Items");
+
+        private final String sheetName;
+
+        Sheet(String sheetName) {
+            this.sheetName = sheetName;
+        }
+
+        public String getSheetName() {
+            return sheetName;
+        }
+    }
+
+    /**
+     * Single violation of the constraint of the form, section, group or item.
+     */
+    public static final class Violation {
+
+        private final Sheet sheet;
+        private final int row;
+        private final String property;
+        private final ConstraintViolation<Object> constraintViolation;
+
+        private Violation(Sheet sheet, int row, ConstraintViolation<Object> constraintViolation) {
+            this.sheet = sheet;
+            this.row = row;
+            this.property = constraintViolation.getPropertyPath().toString();
+            this.constraintViolation = constraintViolation;
+        }
+
+        /**
+         * @return the sheet the invalid object is exported to
+         */
+        public Sheet getSheet() {
+            return sheet;
+        }
+
+        /**
+         * @return position of the invalid object within the sheet, zero for the first row below the headers
+         */
+        public int getRow() {
+            return row;
+        }
+
+        /**
+         * @return name of the invalid property or empty string if the constraint applies to the whole object
+         */
+        public String getProperty() {
+            return property;
+        }
+
+        public String getMessage() {
+            return constraintViolation.getMessage();
+        }
+
+        /**
+         * @return the form, section, group or item which is not valid
+         */
+        public Object getInvalidObject() {
+            return constraintViolation.getRootBean();
+        }
+
+        public ConstraintViolation<Object> getConstraintViolation() {
+            return constraintViolation;
+        }
+
+        @Override
+        public String toString() {
+            return sheet.getSheetName() + "[" + row + "]" + (property.isEmpty() ? "" : "." + property) + ": " + getMessage();
+        }
+    }
+
+    /**
+     * Outcome of the validation.
+     */
+    public static final class Report {
+
+        private final List<Violation> violations;
+        private final boolean limitReached;
+
+        private Report(List<Violation> violations, boolean limitReached) {
+            this.violations = Collections.unmodifiableList(violations);
+            this.limitReached = limitReached;
+        }
+
+        /**
+         * @return violations ordered by sheet, row, property and message
+         */
+        public List<Violation> getViolations() {
+            return violations;
+        }
+
+        /**
+         * @return true if the number of violations has reached the error limit so the form may contain more of them
+         */
+        public boolean isLimitReached() {
+            return limitReached;
+        }
+
+        /**
+         * @return true if there are no violations
+         */
+        public boolean isValid() {
+            return violations.isEmpty();
+        }
+    }
+
+    /**
+     * Number of objects validated by single task without forking.
+     */
+    private static final int THRESHOLD = 32;
+
+    private static final TraversableResolver NON_CASCADING = new TraversableResolver() {
+        @Override
+        public boolean isReachable(Object traversableObject, Path.Node traversableProperty, Class<?> rootBeanType, Path pathToTraversableObject, ElementType elementType) {
+            return true;
+        }
+
+        @Override
+        public boolean isCascadable(Object traversableObject, Path.Node traversableProperty, Class<?> rootBeanType, Path pathToTraversableObject, ElementType elementType) {
+            return false;
+        }
+    };
+
+    private static final Comparator<ConstraintViolation<Object>> BY_PROPERTY_AND_MESSAGE = new Comparator<ConstraintViolation<Object>>() {
+        @Override
+        public int compare(ConstraintViolation<Object> first, ConstraintViolation<Object> second) {
+            int result = first.getPropertyPath().toString().compareTo(second.getPropertyPath().toString());
+            if (result != 0) {
+                return result;
+            }
+            return first.getMessage().compareTo(second.getMessage());
+        }
+    };
+
+    /**
+     * Bean Validation validator or <code>null</code> to check the generated constraints.
+     */
+    private final Validator validator;
+
+    /**
+     * Creates new form validator checking the constraints using the generated validators, see {@link ModelConstraints}.
+     * The messages are the default English ones regardless of the locale.
+     */
+    public FormValidator() {
+        this.validator = null;
+    }
+
+    /**
+     * Creates new form validator using Bean Validation.
+     * @param validatorFactory factory of the validator, the validator is created with the cascading disabled
+     */
+    public FormValidator(ValidatorFactory validatorFactory) {
+        if (validatorFactory == null) {
+            throw new IllegalArgumentException("Validator factory must not be null");
+        }
+        this.validator = createNonCascadingValidator(validatorFactory);
+    }
+
+    /**
+     * @return validator which validates only the constraints of the object itself
+     */
+    static Validator createNonCascadingValidator(ValidatorFactory validatorFactory) {
+        return validatorFactory.usingContext().traversableResolver(NON_CASCADING).getValidator();
+    }
+
+    /**
+     * @param validator Bean Validation validator or <code>null</code> to check the generated constraints
+     * @return violations of the constraints of the object itself ordered by property and message
+     */
+    static List<ConstraintViolation<Object>> validateObject(Validator validator, Object object) {
+        Collection<ConstraintViolation<Object>> constraintViolations = validator == null ? ModelConstraints.validate(object) : validator.validate(object);
+        if (constraintViolations.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ConstraintViolation<Object>> result = new ArrayList<ConstraintViolation<Object>>(constraintViolations);
+        Collections.sort(result, BY_PROPERTY_AND_MESSAGE);
+        return result;
+    }
+
+    /**
+     * Creates the report of the violations of the objects.
+     * @param objects objects of the form
+     * @param violations violations of each of the objects, null for the objects which have not been validated
+     * @param errorLimit maximal number of violations to be reported
+     * @return report of the violations
+     */
+    static Report toReport(FormObjects objects, List<ConstraintViolation<Object>>[] violations, int errorLimit) {
+        List<Violation> report = new ArrayList<Violation>();
+        int found = 0;
+        for (int index = 0; index < objects.size; index++) {
+            if (violations[index] == null) {
+                continue;
+            }
+            found += violations[index].size();
+            for (ConstraintViolation<Object> constraintViolation : violations[index]) {
+                if (report.size() == errorLimit) {
+                    break;
+                }
+                report.add(new Violation(objects.sheets[index], objects.rows[index], constraintViolation));
+            }
+        }
+        return new Report(report, found >= errorLimit);
+    }
+
+    /**
+     * Validates the whole form in parallel using the common fork-join pool.
+     * @param form form to be validated
+     * @return all the violations found in the form
+     */
+    public Report validate(CaseReportForm form) {
+        return validate(form, Integer.MAX_VALUE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Validates the whole form.
+     * @param form form to be validated
+     * @param errorLimit maximal number of violations to be reported, the validation stops once it is reached
+     * @param pool pool used to validate the form or <code>null</code> to validate it on the calling thread
+     * @return at most <code>errorLimit</code> first violations found in the form
+     */
+    public Report validate(CaseReportForm form, int errorLimit, ForkJoinPool pool) {
+        if (form == null) {
+            throw new IllegalArgumentException("Form must not be null");
+        }
+        if (errorLimit < 1) {
+            throw new IllegalArgumentException("Error limit must be positive: " + errorLimit);
+        }
+
+        ValidationRun run = new ValidationRun(form, errorLimit);
+        ValidateAction action = new ValidateAction(run, 0, run.objects.size);
+        if (pool == null) {
+            action.validateRange();
+        } else {
+            pool.invoke(action);
+        }
+        return run.toReport();
+    }
+
+    /**
+     * The form, its sections, groups and items in the order they are exported together with their sheets and rows.
+     */
+    static final class FormObjects {
+
+        final Object[] objects;
+        final Sheet[] sheets;
+        final int[] rows;
+        int size;
+
+        FormObjects(CaseReportForm form) {
+            int count = 1 + form.getSections().size();
+            for (Section section : form.getSections().values()) {
+                count += section.getGroups().size() + section.getItems().size();
+            }
+            objects = new Object[count];
+            sheets = new Sheet[count];
+            rows = new int[count];
+
+            add(form, Sheet.CRF, 0);
+
+            int row = 0;
+            for (Section section : form.getSections().values()) {
+                add(section, Sheet.SECTIONS, row++);
+            }
+
+            row = 0;
+            for (Section section : form.getSections().values()) {
+                for (Group group : section.getGroups().values()) {
+                    add(group, Sheet.GROUPS, row++);
+                }
+            }
+
+            row = 0;
+            for (Section section : form.getSections().values()) {
+                for (Item item : section.getItems().values()) {
+                    add(item, Sheet.ITEMS, row++);
+                }
+            }
+        }
+
+        private void add(Object object, Sheet sheet, int row) {
+            objects[size] = object;
+            sheets[size] = sheet;
+            rows[size] = row;
+            size++;
+        }
+    }
+
+    /**
+     * State of single validation shared by all the tasks.
+     */
+    private final class ValidationRun {
+
+        private final FormObjects objects;
+
+        /**
+         * Violations of each of the objects, null for the objects which have not been validated.
+         */
+        private final List<ConstraintViolation<Object>>[] violations;
+
+        private final int errorLimit;
+
+        /**
+         * Index of the object known to reach the error limit together with all the objects before it. None of the
+         * objects after it needs to be validated.
+         */
+        private final AtomicInteger cutoff = new AtomicInteger(Integer.MAX_VALUE);
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ValidationRun(CaseReportForm form, int errorLimit) {
+            this.errorLimit = errorLimit;
+            this.objects = new FormObjects(form);
+            this.violations = new List[objects.size];
+        }
+
+        /**
+         * @return number of violations of the object at given index
+         */
+        int validate(int index) {
+            violations[index] = validateObject(validator, objects.objects[index]);
+            return violations[index].size();
+        }
+
+        boolean isCutOff(int index) {
+            return index > cutoff.get();
+        }
+
+        void cutOff(int index) {
+            int current = cutoff.get();
+            while (index < current && !cutoff.compareAndSet(current, index)) {
+                current = cutoff.get();
+            }
+        }
+
+        Report toReport() {
+            return FormValidator.toReport(objects, violations, errorLimit);
+        }
+    }
+
+    private static final class ValidateAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ValidationRun run;
+        private final int from;
+        private final int to;
+
+        ValidateAction(ValidationRun run, int from, int to) {
+            this.run = run;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                validateRange();
+                return;
+            }
+            int half = (from + to) >>> 1;
+            invokeAll(new ValidateAction(run, from, half), new ValidateAction(run, half, to));
+        }
+
+        /**
+         * Validates the objects of the range one by one. The objects before the range may only add more violations
+         * so once the range alone has reached the limit, none of the following objects needs to be validated.
+         */
+        void validateRange() {
+            int errors = 0;
+            for (int index = from; index < to; index++) {
+                if (run.isCutOff(index)) {
+                    return;
+                }
+                errors += run.validate(index);
+                if (errors >= run.errorLimit) {
+                    run.cutOff(index);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -6,6 +6,8 @@ import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 
+import java.util.Map;
+
 @ValidRepeat
 public class GridGroup extends Group {
 
@@ -61,7 +63,9 @@ public class GridGroup extends Group {
     }
 
     public void setHeader(String header) {
+        checkNotFrozen();
         this.header = header;
+        markDirty();
     }
 
     public Integer getRepeatNum() {
@@ -69,7 +73,9 @@ public class GridGroup extends Group {
     }
 
     public void setRepeatNum(Integer repeatNum) {
+        checkNotFrozen();
         this.repeatNum = repeatNum;
+        markDirty();
     }
 
     public Integer getRepeatMax() {
@@ -77,6 +83,17 @@ public class GridGroup extends Group {
     }
 
     public void setRepeatMax(Integer repeatMax) {
+        checkNotFrozen();
         this.repeatMax = repeatMax;
+        markDirty();
+    }
+
+    @Override
+    Group copy(Section section, Map<Item, Item> copies, boolean frozen) {
+        GridGroup copy = new GridGroup();
+        copy.header = header;
+        copy.repeatNum = repeatNum;
+        copy.repeatMax = repeatMax;
+        return copyInto(copy, section, copies, frozen);
     }
 }
@@ -7,6 +7,9 @@ import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 
 public class Group extends AbstractItemsContainer implements HasDisplayStatus {
 
@@ -56,10 +59,10 @@ public class Group extends AbstractItemsContainer implements HasDisplayStatus {
 
     protected Item addItem(Item item) {
         if (!items.containsKey(item.getName())) {
+            // the section checks the name is unique within the form before the item is added to the group
+            this.getSection().addItem(item);
             items.put(item.getName(), item);
             item.setGroup(this);
-            item.setSection(this.getSection());
-            this.getSection().addItem(item);
         }
         return item;
     }
@@ -69,7 +72,9 @@ public class Group extends AbstractItemsContainer implements HasDisplayStatus {
     }
 
     public void setLabel(String label) {
+        checkNotFrozen();
         this.label = label;
+        markDirty();
     }
 
     public DisplayStatus getDisplayStatus() {
@@ -77,7 +82,9 @@ public class Group extends AbstractItemsContainer implements HasDisplayStatus {
     }
 
     public void setDisplayStatus(DisplayStatus displayStatus) {
+        checkNotFrozen();
         this.displayStatus = displayStatus;
+        markDirty();
     }
 
     public Section getSection() {
@@ -87,4 +94,48 @@ public class Group extends AbstractItemsContainer implements HasDisplayStatus {
     void setSection(Section section) {
         this.section = section;
     }
+
+    @Override
+    boolean isConcurrent() {
+        return section != null && section.isConcurrent();
+    }
+
+    final void markDirty() {
+        if (section != null) {
+            section.markDirty(this);
+        }
+    }
+
+    @Override
+    void markReordered() {
+        markDirty();
+    }
+
+    /**
+     * Creates copy of the group.
+     * @param section section the copy belongs to
+     * @param copies copies of the items of the section
+     * @param frozen whether the copy belongs to a frozen form
+     * @return copy of the group
+     */
+    Group copy(Section section, Map<Item, Item> copies, boolean frozen) {
+        return copyInto(new Group(), section, copies, frozen);
+    }
+
+    final Group copyInto(Group copy, Section section, Map<Item, Item> copies, boolean frozen) {
+        copy.label = label;
+        copy.displayStatus = displayStatus;
+        copy.section = section;
+
+        Map<String, Item> itemCopies = new LinkedHashMap<String, Item>(items.size() * 2);
+        for (Item item : items.values()) {
+            Item itemCopy = copies.get(item);
+            itemCopy.setGroup(copy);
+            itemCopies.put(item.getName(), itemCopy);
+        }
+        copy.items = frozen ? new ArrayMap<Item>(itemCopies) : itemCopies;
+
+        copy.frozen = frozen;
+        return copy;
+    }
 }
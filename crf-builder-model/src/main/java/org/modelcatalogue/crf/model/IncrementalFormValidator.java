@@ -0,0 +1,209 @@
+package org.modelcatalogue.crf.model;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import java.util.*;
+
+/**
+ * This class keeps the violations of the form up to date while the form is being edited.
+ *
+ * The whole form is validated once when the validator is created and the form starts tracking its changes. Each call
+ * of {@link #revalidate()} then validates only the form, sections, groups and items which have changed since the last
+ * call together with the items whose conditional display is controlled by the changed items. The violations of all
+ * the other objects are kept from the previous validations, so the cost of the revalidation depends only on the number
+ * of the changes and not on the size of the form.
+ *
+ * Each validator tracks the changes on its own so any number of validators can be attached to the same form. The form
+ * keeps recording its changes for the validator until the validator is closed, so the validator should be closed
+ * once it is no longer needed.
+ *
+ * Each object is validated without cascading, see {@link FormValidator}. The validator is not thread-safe, it should
+ * be used by the same thread which edits the form.
+ */
+public class IncrementalFormValidator implements AutoCloseable {
+
+    private final CaseReportForm form;
+
+    /**
+     * Changes of the form since the last validation or <code>null</code> if the validator has been closed.
+     */
+    private ChangeTracker tracker;
+
+    /**
+     * Bean Validation validator or <code>null</code> to check the generated constraints.
+     */
+    private final Validator validator;
+
+    /**
+     * Violations of the objects of the form, the valid objects are not present.
+     */
+    private final Map<Object, List<ConstraintViolation<Object>>> violations = new IdentityHashMap<Object, List<ConstraintViolation<Object>>>();
+
+    private int violationCount;
+
+    /**
+     * Creates new incremental validator checking the constraints using the generated validators and validates the
+     * whole form, see {@link ModelConstraints}.
+     * @param form form to be validated, it must not be frozen
+     */
+    public IncrementalFormValidator(CaseReportForm form) {
+        this(form, (Validator) null);
+    }
+
+    /**
+     * Creates new incremental validator using Bean Validation and validates the whole form.
+     * @param form form to be validated, it must not be frozen
+     * @param validatorFactory factory of the validator, the validator is created with the cascading disabled
+     */
+    public IncrementalFormValidator(CaseReportForm form, ValidatorFactory validatorFactory) {
+        this(form, createNonCascadingValidator(validatorFactory));
+    }
+
+    private IncrementalFormValidator(CaseReportForm form, Validator validator) {
+        if (form == null) {
+            throw new IllegalArgumentException("Form must not be null");
+        }
+        if (form.isFrozen()) {
+            throw new IllegalArgumentException("Frozen form cannot change, validate it using FormValidator instead");
+        }
+        this.form = form;
+        this.validator = validator;
+
+        this.tracker = form.track();
+
+        FormValidator.FormObjects objects = new FormValidator.FormObjects(form);
+        for (int index = 0; index < objects.size; index++) {
+            validate(objects.objects[index]);
+        }
+    }
+
+    /**
+     * Validates the objects which have changed since the last validation and the items depending on them.
+     * @return the objects which have been validated again including the ones which no longer belong to the form
+     * @throws IllegalStateException if the validator has been closed
+     */
+    public Set<Object> revalidate() {
+        if (tracker == null) {
+            throw new IllegalStateException("The validator has been closed");
+        }
+        List<Object> dirty = tracker.take(form.isConcurrent());
+        if (dirty.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Set<Object> revalidated = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        for (Object object : dirty) {
+            revalidated.add(object);
+            if (object instanceof Item) {
+                revalidated.addAll(((Item) object).getControlledItems());
+            }
+        }
+
+        for (Object object : revalidated) {
+            if (belongsToForm(object)) {
+                validate(object);
+            } else {
+                forget(object);
+            }
+        }
+        return Collections.unmodifiableSet(revalidated);
+    }
+
+    /**
+     * @param object the form or any of its sections, groups or items
+     * @return violations of the object ordered by property and message as of the last validation
+     */
+    public List<ConstraintViolation<Object>> getViolations(Object object) {
+        List<ConstraintViolation<Object>> objectViolations = violations.get(object);
+        if (objectViolations == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(objectViolations);
+    }
+
+    /**
+     * @return number of all the violations in the form as of the last validation
+     */
+    public int getViolationCount() {
+        return violationCount;
+    }
+
+    /**
+     * @return true if there were no violations in the form as of the last validation
+     */
+    public boolean isValid() {
+        return violationCount == 0;
+    }
+
+    /**
+     * Creates the report of all the violations as of the last validation. The report is the same as the one created by
+     * {@link FormValidator} if the form has been revalidated after the last change.
+     * @return report of all the violations ordered by sheet, row, property and message
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public FormValidator.Report getReport() {
+        FormValidator.FormObjects objects = new FormValidator.FormObjects(form);
+        List<ConstraintViolation<Object>>[] objectViolations = new List[objects.size];
+        for (int index = 0; index < objects.size; index++) {
+            objectViolations[index] = getViolations(objects.objects[index]);
+        }
+        return FormValidator.toReport(objects, objectViolations, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Stops tracking the changes of the form. The violations as of the last validation are still available but the
+     * form can no longer be revalidated. Closing the validator again has no effect.
+     */
+    @Override
+    public void close() {
+        if (tracker != null) {
+            form.untrack(tracker);
+            tracker = null;
+        }
+    }
+
+    private static Validator createNonCascadingValidator(ValidatorFactory validatorFactory) {
+        if (validatorFactory == null) {
+            throw new IllegalArgumentException("Validator factory must not be null");
+        }
+        return FormValidator.createNonCascadingValidator(validatorFactory);
+    }
+
+    private void validate(Object object) {
+        forget(object);
+        List<ConstraintViolation<Object>> objectViolations = FormValidator.validateObject(validator, object);
+        if (!objectViolations.isEmpty()) {
+            violations.put(object, objectViolations);
+            violationCount += objectViolations.size();
+        }
+    }
+
+    private void forget(Object object) {
+        List<ConstraintViolation<Object>> previous = violations.remove(object);
+        if (previous != null) {
+            violationCount -= previous.size();
+        }
+    }
+
+    /**
+     * Nothing is ever removed from the form but the sections shared with the base version are replaced by their copies
+     * once they are modified. The groups and items always stay in the section they have been created in.
+     */
+    private boolean belongsToForm(Object object) {
+        if (object == form) {
+            return true;
+        }
+        if (object instanceof Section) {
+            Section section = (Section) object;
+            return section.getCaseReportForm() == form || form.getSections().get(section.getLabel()) == section;
+        }
+        if (object instanceof Group) {
+            return belongsToForm(((Group) object).getSection());
+        }
+        if (object instanceof Item) {
+            return belongsToForm(((Item) object).getSection());
+        }
+        return false;
+    }
+}
@@ -21,36 +21,17 @@ public class Item implements Text, Textarea, SingleSelect, Radio, MultiSelect, C
     }
 
     static String storeResponseOptions(Iterable<String> options) {
-        List<String> encoded = new ArrayList<String>();
-        for (String option : options) {
-            encoded.add(option.replaceAll(",", "\\\\\\\\,"));
-        }
-        return join(encoded, ",");
-    }
-
-    static List<String> parseResponseOptions(String options) {
-        List<String> parsed = new ArrayList<String>();
-        for (String option : options.split("\\s*(?<!\\\\),\\s*")) {
-            parsed.add(option.replaceAll("\\\\\\\\,", ","));
-        }
-        return Collections.unmodifiableList(parsed);
+        return ResponseOptionsCodec.encode(options);
     }
 
-    private static String join(List<String> list, String delim) {
-
-        StringBuilder sb = new StringBuilder();
-
-        String loopDelim = "";
-
-        for(String s : list) {
-
-            sb.append(loopDelim);
-            sb.append(s);
-
-            loopDelim = delim;
-        }
-
-        return sb.toString();
+    /**
+     * Splits the comma separated list of response options texts or values as stored in RESPONSE_OPTIONS_TEXT and
+     * RESPONSE_VALUES_OR_CALCULATIONS columns. Escaped commas are kept as a part of the option.
+     * @param options encoded response options
+     * @return list of the response options texts or values
+     */
+    public static List<String> parseResponseOptions(String options) {
+        return ResponseOptionsCodec.decode(options);
     }
 
     /**
@@ -127,24 +108,8 @@ public class Item implements Text, Textarea, SingleSelect, Radio, MultiSelect, C
      */
     @Size(max = 64) private String units;
 
-    /**
-     * Descriptive text that appears to the right of the form input on the CRF, and to the right of any UNITS that are
-     * specified too. Often phrased in the form of a question, or supporting instructions for the form field input.
-     *
-     * HTML elements are allowed; however, only a limited subset of tags is officially supported (bold &lt;b&gt;,
-     * italics &lt;i&gt;, underline &lt;u&gt;, superscript &lt;sup&gt;, subscript &lt;sub&gt;, line break &lt;br/&gt;,
-     * link &lt;a href=""&gt;, image &lt;img src=""&gt;).
-     *
-     * This field can be used as a way of describing the expected input to users entering or for field-specific
-     * instructions. The value of RIGHT_ITEM_TEXT is displayed to the right of the form input. The text wraps after
-     * the first 20 characters.
-     *
-     * An example of use of right item text is "If other, please specify".
-     *
-     * If the item is part of a repeating group (GRID), the RIGHT_ITEM_TEXT will be ignored and never displayed.
-     *
-     */
-    @Size(max = 2000) private String rightItemText;
+    // side table slot of the right item text
+    private static final int RIGHT_ITEM_TEXT = 0;
 
     /**
      * Logically organizes the items that should be together on a section.
@@ -188,6 +153,232 @@ public class Item implements Text, Textarea, SingleSelect, Radio, MultiSelect, C
      */
     @Valid private Group group;
 
+    // side table slot of the header
+    private static final int HEADER = 1;
+
+    // side table slot of the subheader
+    private static final int SUBHEADER = 2;
+
+    // side table slot of the column number
+    private static final int COLUMN_NUMBER = 3;
+
+    /**
+     * The page number on which the section begins. If using paper source documents and have a multi-page CRF,
+     * put in the printed page number.
+     *
+     * For the most part, this field is only used in studies collecting data on multi-page paper forms and then having
+     * the data keyed in at a central location performing double data entry.
+     */
+    @Size(max = 5) @AlphaNumeric private String pageNumber;
+
+    /**
+     * This field is used to specify an identifier for each item or question in the Items worksheet.  It appears to the
+     * left of the LEFT_ITEM_TEXT field, or if that field was left blank, to the left of the form input.
+     *
+     * This field allows you to specify questions as 1, 2, 2a etc. in a field.
+     */
+    @Size(max = 20) @AlphaNumeric private String questionNumber;
+
+    /**
+     * The types of responses are based on standard HTML elements web browsers can display in a form. Allowed use of
+     * the available RESPONSE_TYPEs depends on the item DATA_TYPE and use of Response Sets.
+     */
+    @NotNull private final ResponseType responseType;
+
+    /**
+     * Create a custom label associated with a response set. This label must be defined once and may be reused by other i
+     * tems with the same responses (e.g. Yes, No) and values.
+     *
+     * In order to facilitate the creation of a CRF, unnecessary duplication of RESPONSE_OPTIONS_TEXT and
+     * RESPONSE_VALUES_OR_CALCULATIONS values can be mitigated by the RESPONSE_LABEL.
+     *
+     * If the same options and values are going to be used for multiple items like Yes, No and 1,2, provide
+     * the information once and enter a unique response label.  This label can be used throughout the rest of the Items
+     * worksheet so other items will use the exact same options and values. If a RESPONSE_LABEL is reused within a CRF,
+     * the RESPONSE_OPTIONS_TEXT and RESPONSE_VALUES_OR_CALCULATIONS must be left blank or exactly match the values of
+     * the original RESPONSE_LABEL in the CRF.
+     */
+    @Size(max = 80) @AlphaNumeric private String responseLabel;
+
+    // side table slot of the options text not kept in responseOptions, such as the calculation marker
+    private static final int RESPONSE_OPTIONS_TEXT = 4;
+
+    // side table slot of the values not kept in responseOptions, such as the calculation
+    private static final int RESPONSE_VALUES_OR_CALCULATIONS = 5;
+
+    /**
+     * Response options of checkbox, multi-select, radio and single-select fields.
+     */
+    private ResponseOptionList responseOptions;
+
+    // bit offset of the response layout in flags
+    private static final int RESPONSE_LAYOUT_SHIFT = 0;
+
+    // side table slot of the default value
+    private static final int DEFAULT_VALUE = 6;
+
+    // bit offset of the data type in flags
+    private static final int DATA_TYPE_SHIFT = 2;
+
+    // side table slot of the width decimal
+    private static final int WIDTH_DECIMAL = 7;
+
+    // side table slot of the validation
+    private static final int VALIDATION = 8;
+
+    // side table slot of the validation error message
+    private static final int VALIDATION_ERROR_MESSAGE = 9;
+
+    // bit offset of the phi value in flags
+    private static final int PHI_SHIFT = 6;
+
+    // bit offset of the required value in flags
+    private static final int REQUIRED_SHIFT = 8;
+
+    // bit offset of the display status in flags
+    private static final int DISPLAY_STATUS_SHIFT = 10;
+
+    // side table slot of the simple conditional display
+    private static final int SIMPLE_CONDITIONAL_DISPLAY = 10;
+
+    /**
+     * Values of {@link #getPhi()} and {@link #getRequired()} other than null, zero or one, which are invalid but must
+     * be kept so they can be reported by the validation.
+     */
+    private static final int PHI = 11;
+    private static final int REQUIRED = 12;
+
+    private static final int FROZEN = 1 << 12;
+
+    private static final int TWO_BITS = 0x3;
+    private static final int FOUR_BITS = 0xF;
+
+    private static final ResponseLayout[] RESPONSE_LAYOUTS = ResponseLayout.values();
+    private static final DataType[] DATA_TYPES = DataType.values();
+    private static final DisplayStatus[] DISPLAY_STATUSES = DisplayStatus.values();
+
+    /**
+     * Resolved {@link #getSimpleConditionalDisplay()} referencing the response option of the controlling item.
+     */
+    private ConditionalDisplay conditionalDisplay;
+
+    /**
+     * Items whose conditional display depends on the response options of this item. Together with
+     * {@link #conditionalDisplay} they form the graph of the conditional display references which is kept up to date
+     * when the conditional display or the response options change.
+     */
+    private Set<Item> controlledItems;
+
+    /**
+     * Bit field holding the enumerations as their ordinals increased by one, the {@link #getPhi()} and
+     * {@link #getRequired()} flags and the {@link #FROZEN} flag which is set if the item belongs to a frozen form.
+     * The flags are stored as zero for null, one for zero, two for one and three for any other value kept in the side
+     * table.
+     */
+    private int flags = (DisplayStatus.SHOW.ordinal() + 1) << DISPLAY_STATUS_SHIFT;
+
+    /**
+     * Sparse side table of the rarely used attributes. Only the attributes which are set are stored in the array in
+     * the order of their slots and the bits of the {@link #extrasMask} tell which slots are present.
+     */
+    private Object[] extras;
+    private int extrasMask;
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void setName(String name) {
+        checkNotFrozen();
+        markDirty();
+        this.name = name;
+    }
+
+    @Override
+    public String getDescriptionLabel() {
+        return descriptionLabel;
+    }
+
+    @Override
+    public void setDescriptionLabel(String descriptionLabel) {
+        checkNotFrozen();
+        markDirty();
+        this.descriptionLabel = descriptionLabel;
+    }
+
+    @Override
+    public String getLeftItemText() {
+        return leftItemText;
+    }
+
+    @Override
+    public void setLeftItemText(String leftItemText) {
+        checkNotFrozen();
+        markDirty();
+        this.leftItemText = leftItemText;
+    }
+
+    @Override
+    public String getUnits() {
+        return units;
+    }
+
+    @Override
+    public void setUnits(String units) {
+        checkNotFrozen();
+        markDirty();
+        this.units = intern(units);
+    }
+
+    /**
+     * Descriptive text that appears to the right of the form input on the CRF, and to the right of any UNITS that are
+     * specified too. Often phrased in the form of a question, or supporting instructions for the form field input.
+     *
+     * HTML elements are allowed; however, only a limited subset of tags is officially supported (bold &lt;b&gt;,
+     * italics &lt;i&gt;, underline &lt;u&gt;, superscript &lt;sup&gt;, subscript &lt;sub&gt;, line break &lt;br/&gt;,
+     * link &lt;a href=""&gt;, image &lt;img src=""&gt;).
+     *
+     * This field can be used as a way of describing the expected input to users entering or for field-specific
+     * instructions. The value of RIGHT_ITEM_TEXT is displayed to the right of the form input. The text wraps after
+     * the first 20 characters.
+     *
+     * An example of use of right item text is "If other, please specify".
+     *
+     * If the item is part of a repeating group (GRID), the RIGHT_ITEM_TEXT will be ignored and never displayed.
+     */
+    @Override
+    @Size(max = 2000)
+    public String getRightItemText() {
+        return (String) getExtra(RIGHT_ITEM_TEXT);
+    }
+
+    @Override
+    public void setRightItemText(String rightItemText) {
+        checkNotFrozen();
+        markDirty();
+        setExtra(RIGHT_ITEM_TEXT, rightItemText);
+    }
+
+    @Override
+    public Section getSection() {
+        return section;
+    }
+
+    void setSection(Section section) {
+        this.section = section;
+    }
+
+    @Override
+    public Group getGroup() {
+        return group;
+    }
+
+    void setGroup(Group group) {
+        this.group = group;
+    }
+
     /**
      * Contains text that used as a header for a particular item. Using this field will break up the items with
      * a distinct line between the header information and the next set of items. The text is bolded to call greater
@@ -200,8 +391,18 @@ public class Item implements Text, Textarea, SingleSelect, Radio, MultiSelect, C
      * This field can be used as a replacement for left and right item text or as a replacement for instructions.
      * It allows a greater number of characters, along with bolding the text, to get the data entry person's attention.
      */
-    @Size(max = 2000) private String header;
+    @Override
+    @Size(max = 2000)
+    public String getHeader() {
+        return (String) getExtra(HEADER);
+    }
 
+    @Override
+    public void setHeader(String header) {
+        checkNotFrozen();
+        markDirty();
+        setExtra(HEADER, intern(header));
+    }
 
     /**
      * This field can contain text that will be used underneath the HEADER, or independently of a HEADER being provided.
@@ -215,7 +416,18 @@ public class Item implements Text, Textarea, SingleSelect, Radio, MultiSelect, C
      * replacement/augmentation for section/group instructions.  It allows a greater number of characters, along with
      * providing a grey background to the text in order to get the data entry user's attention.
      */
-    @Size(max = 240) private String subheader;
+    @Override
+    @Size(max = 240)
+    public String getSubheader() {
+        return (String) getExtra(SUBHEADER);
+    }
+
+    @Override
+    public void setSubheader(String subheader) {
+        checkNotFrozen();
+        markDirty();
+        setExtra(SUBHEADER, intern(subheader));
+    }
 
     /**
      * Assigns items to an item group.  If the group is repeating, the items need to have the same SECTION_LABEL as all
@@ -228,45 +440,57 @@ public class Item implements Text, Textarea, SingleSelect, Radio, MultiSelect, C
      *
      * Use of COLUMN_NUMBERS greater than 3 is not recommended due to typical screen width limitations.
      */
-    @Min(1) private Integer columnNumber;
+    @Override
+    @Min(1)
+    public Integer getColumnNumber() {
+        return (Integer) getExtra(COLUMN_NUMBER);
+    }
 
-    /**
-     * The page number on which the section begins. If using paper source documents and have a multi-page CRF,
-     * put in the printed page number.
-     *
-     * For the most part, this field is only used in studies collecting data on multi-page paper forms and then having
-     * the data keyed in at a central location performing double data entry.
-     */
-    @Size(max = 5) @AlphaNumeric private String pageNumber;
+    @Override
+    public void setColumnNumber(Integer columnNumber) {
+        checkNotFrozen();
+        markDirty();
+        setExtra(COLUMN_NUMBER, columnNumber);
+    }
 
-    /**
-     * This field is used to specify an identifier for each item or question in the Items worksheet.  It appears to the
-     * left of the LEFT_ITEM_TEXT field, or if that field was left blank, to the left of the form input.
-     *
-     * This field allows you to specify questions as 1, 2, 2a etc. in a field.
-     */
-    @Size(max = 20) @AlphaNumeric private String questionNumber;
+    @Override
+    public String getPageNumber() {
+        return pageNumber;
+    }
 
-    /**
-     * The types of responses are based on standard HTML elements web browsers can display in a form. Allowed use of
-     * the available RESPONSE_TYPEs depends on the item DATA_TYPE and use of Response Sets.
-     */
-    @NotNull private final ResponseType responseType;
+    @Override
+    public void setPageNumber(String pageNumber) {
+        checkNotFrozen();
+        markDirty();
+        this.pageNumber = intern(pageNumber);
+    }
 
-    /**
-     * Create a custom label associated with a response set. This label must be defined once and may be reused by other i
-     * tems with the same responses (e.g. Yes, No) and values.
-     *
-     * In order to facilitate the creation of a CRF, unnecessary duplication of RESPONSE_OPTIONS_TEXT and
-     * RESPONSE_VALUES_OR_CALCULATIONS values can be mitigated by the RESPONSE_LABEL.
-     *
-     * If the same options and values are going to be used for multiple items like Yes, No and 1,2, provide
-     * the information once and enter a unique response label.  This label can be used throughout the rest of the Items
-     * worksheet so other items will use the exact same options and values. If a RESPONSE_LABEL is reused within a CRF,
-     * the RESPONSE_OPTIONS_TEXT and RESPONSE_VALUES_OR_CALCULATIONS must be left blank or exactly match the values of
-     * the original RESPONSE_LABEL in the CRF.
-     */
-    @Size(max = 80) @AlphaNumeric private String responseLabel;
+    @Override
+    public String getQuestionNumber() {
+        return questionNumber;
+    }
+
+    @Override
+    public void setQuestionNumber(String questionNumber) {
+        checkNotFrozen();
+        markDirty();
+        this.questionNumber = questionNumber;
+    }
+
+    @Override
+    public ResponseType getResponseType() {
+        return responseType;
+    }
+
+    public String getResponseLabel() {
+        return responseLabel;
+    }
+
+    public void setResponseLabel(String responseLabel) {
+        checkNotFrozen();
+        markDirty();
+        this.responseLabel = intern(responseLabel);
+    }
 
     /**
      * A comma delimited string of values that will be used as the options to be chosen by a data entry person when
@@ -275,9 +499,14 @@ public class Item implements Text, Textarea, SingleSelect, Radio, MultiSelect, C
      * This field is only used for checkbox, multi-select, radio and single-select fields.  This will be the text
      * displayed to the data entry person, which they will choose for each item.  If the options themselves contain
      * commas (,) you must escape the commas with a /
-     *
      */
-    @Size(max = 4000) private String responseOptionsText;
+    @Size(max = 4000)
+    public String getResponseOptionsText() {
+        if (responseOptions != null) {
+            return responseOptions.getTexts();
+        }
+        return (String) getExtra(RESPONSE_OPTIONS_TEXT);
+    }
 
     /**
      * If the field is not a calculation or group-calculation, this will be a comma-delimited string of values that will
@@ -301,9 +530,69 @@ public class Item implements Text, Textarea, SingleSelect, Radio, MultiSelect, C
      *
      * Instant calculation fields should use this field to define the onchange() function with arguments of an item name
      * (the trigger item) and value.
-     *
      */
-    @Size(max = 4000) private String responseValuesOrCalculations;
+    @Size(max = 4000)
+    public String getResponseValuesOrCalculations() {
+        if (responseOptions != null) {
+            return responseOptions.getValues();
+        }
+        return (String) getExtra(RESPONSE_VALUES_OR_CALCULATIONS);
+    }
+
+    /**
+     * Sets the response options of the item. The options are copied so changes to the list given do not affect the
+     * item.
+     * @param options response options of the item
+     * @throws IllegalArgumentException if any of the options has no text or value
+     */
+    @Override
+    public void setResponseOptions(List<ResponseOption> options) {
+        checkNotFrozen();
+        markDirty();
+        ResponseOptionList responseOptions = new ResponseOptionList(this, options);
+
+        if (this.responseLabel == null && this.name != null) {
+            setResponseLabel(this.name + RESPONSE_LABEL_SUFFIX);
+        }
+        this.responseOptions = responseOptions;
+        setExtra(RESPONSE_OPTIONS_TEXT, null);
+        setExtra(RESPONSE_VALUES_OR_CALCULATIONS, null);
+
+        for (Item controlled : getControlledItemsSnapshot()) {
+            controlled.resolveConditionalDisplay();
+        }
+    }
+
+    /**
+     * Returns the response options of the item. The list is immutable and the same instance is returned until the
+     * options are set again.
+     * @return response options of the item or an empty list if the item has no response options
+     */
+    @Override
+    public List<ResponseOption> getResponseOptions() {
+        if (responseOptions == null) {
+            return Collections.emptyList();
+        }
+        return responseOptions;
+    }
+
+    /**
+     * Finds the response option by its value.
+     * @param value value of the response option
+     * @return the first response option with given value or null if there is no such option
+     */
+    public ResponseOption findResponseOptionByValue(String value) {
+        return responseOptions == null ? null : responseOptions.findByValue(value);
+    }
+
+    /**
+     * Finds the response option by its text.
+     * @param text text of the response option
+     * @return the first response option with given text or null if there is no such option
+     */
+    public ResponseOption findResponseOptionByText(String text) {
+        return responseOptions == null ? null : responseOptions.findByText(text);
+    }
 
     /**
      * The layout of the options for radio and checkbox fields.
@@ -312,9 +601,18 @@ public class Item implements Text, Textarea, SingleSelect, Radio, MultiSelect, C
      *
      * Leaving the field blank and selecting Vertical display the items in a single column from top to bottom.
      * Choosing Horizontal will put the items in a single row, left to right.
-     *
      */
-    private ResponseLayout responseLayout;
+    @Override
+    public ResponseLayout getResponseLayout() {
+        return getEnum(RESPONSE_LAYOUTS, RESPONSE_LAYOUT_SHIFT, TWO_BITS);
+    }
+
+    @Override
+    public void setResponseLayout(ResponseLayout responseLayout) {
+        checkNotFrozen();
+        markDirty();
+        setEnum(RESPONSE_LAYOUT_SHIFT, TWO_BITS, responseLayout);
+    }
 
     /**
      * Default text for RESPONSE_OPTIONS_TEXT.
@@ -344,12 +642,18 @@ public class Item implements Text, Textarea, SingleSelect, Radio, MultiSelect, C
      * Be careful in using this field because if the default value corresponds to an option in the response set, it will
      * be saved to the database even if the user does not select it.
      */
-    @Size(max = 4000) private String defaultValue;
+    @Override
+    @Size(max = 4000)
+    public String getDefaultValue() {
+        return (String) getExtra(DEFAULT_VALUE);
+    }
 
-    /**
-     * The data type is the format the value should be supplied in.
-     */
-    @NotNull private DataType dataType;
+    @Override
+    public void setDefaultValue(String defaultValue) {
+        checkNotFrozen();
+        markDirty();
+        setExtra(DEFAULT_VALUE, intern(defaultValue));
+    }
 
     /**
      * Specify the width (the length of the field) and the number of decimal places to use for the field.
@@ -393,9 +697,19 @@ public class Item implements Text, Textarea, SingleSelect, Radio, MultiSelect, C
      * after decimal point. So, numbers like 1234.123456789012345589 may not be validated properly to their format.
      * For more complex scenarios where precision above 20 digits is required, it may be better to use a regular
      * expression to verify the input.
-     *
      */
-     @WidthDecimalPattern private String widthDecimal;
+    @Override
+    @WidthDecimalPattern
+    public String getWidthDecimal() {
+        return (String) getExtra(WIDTH_DECIMAL);
+    }
+
+    @Override
+    public void setWidthDecimal(String widthDecimal) {
+        checkNotFrozen();
+        markDirty();
+        setExtra(WIDTH_DECIMAL, intern(widthDecimal));
+    }
 
     /**
      * Specify a validation expression to run an edit check on this item at the point of data entry.
@@ -430,7 +744,10 @@ public class Item implements Text, Textarea, SingleSelect, Radio, MultiSelect, C
      * This example requires a number between 1 and 10
      * func: func(args) = func: range(1, 10)
      */
-    @Size(min = 1, max = 1000) private String validation;
+    @Size(min = 1, max = 1000)
+    public String getValidation() {
+        return (String) getExtra(VALIDATION);
+    }
 
     /**
      * Defines an error message provided to on the data entry screen when a user enters data that does not meet
@@ -440,7 +757,10 @@ public class Item implements Text, Textarea, SingleSelect, Radio, MultiSelect, C
      * If there is a VALIDATION stating the number must be between 1-10, write that message in this field for the user
      * to see if they enter 11 or 0.
      */
-    @Size(min = 1, max = 255) private String validationErrorMessage;
+    @Size(min = 1, max = 255)
+    public String getValidationErrorMessage() {
+        return (String) getExtra(VALIDATION_ERROR_MESSAGE);
+    }
 
     /**
      * Signifies whether this item would be considered Protected Health Information.
@@ -455,7 +775,18 @@ public class Item implements Text, Textarea, SingleSelect, Radio, MultiSelect, C
      * This field should not be changed in any subsequent versions of the CRF. If you do change it and you are
      * an owner of the CRF the PHI attribute for this item will be changed for all versions of the CRF.
      */
-    @Min(0) @Max(1) private Integer phi;
+    @Override
+    @Min(0) @Max(1)
+    public Integer getPhi() {
+        return getFlag(PHI_SHIFT, PHI);
+    }
+
+    @Override
+    public void setPhi(Integer phi) {
+        checkNotFrozen();
+        markDirty();
+        setFlag(PHI_SHIFT, PHI, phi);
+    }
 
     /**
      * This field determines whether the user must provide a value for it before saving the section the item appears in.
@@ -463,9 +794,19 @@ public class Item implements Text, Textarea, SingleSelect, Radio, MultiSelect, C
      * Leaving the field blank or selecting 0 means the item would be optional so the data entry person does not have to
      * provide a value for it.  If 1 is selected, the data entry person must provide a value, or enter a discrepancy
      * note explaining why the field is left blank. This can be used for any RESPONSE_TYPE
-     *
      */
-    @Min(0) @Max(1) private Integer required;
+    @Override
+    @Min(0) @Max(1)
+    public Integer getRequired() {
+        return getFlag(REQUIRED_SHIFT, REQUIRED);
+    }
+
+    @Override
+    public void setRequired(Integer required) {
+        checkNotFrozen();
+        markDirty();
+        setFlag(REQUIRED_SHIFT, REQUIRED, required);
+    }
 
     /**
      * Used in conjunction with Dynamics in Rules or SIMPLE_CONDITIONAL_DISPLAY. If set to HIDE, the item will not
@@ -481,7 +822,18 @@ public class Item implements Text, Textarea, SingleSelect, Radio, MultiSelect, C
      * Instead of Rules, you can also use the SIMPLE_CONDITIONAL_DISPLAY field to decide when this item should be shown.
      * SIMPLE_CONDITIONAL_DISPLAY only works with items set to HIDE.
      */
-    @NotNull private DisplayStatus displayStatus = DisplayStatus.SHOW;
+    @Override
+    @NotNull
+    public DisplayStatus getDisplayStatus() {
+        return getEnum(DISPLAY_STATUSES, DISPLAY_STATUS_SHIFT, TWO_BITS);
+    }
+
+    @Override
+    public void setDisplayStatus(DisplayStatus displayStatus) {
+        checkNotFrozen();
+        markDirty();
+        setEnum(DISPLAY_STATUS_SHIFT, TWO_BITS, displayStatus);
+    }
 
     /**
      * Contains 3 parts, all separated by a comma:  ITEM_NAME, RESPONSE_VALUE, Message.
@@ -509,320 +861,320 @@ public class Item implements Text, Textarea, SingleSelect, Radio, MultiSelect, C
      *
      * Note that radio button controls cannot be deselected, meaning there is no way to delete it's value once it has
      * been selected.
-     *
      */
-    private String simpleConditionalDisplay;
-
-    @Override
-    public String getName() {
-        return name;
-    }
-
-    @Override
-    public void setName(String name) {
-        this.name = name;
-    }
-
-    @Override
-    public String getDescriptionLabel() {
-        return descriptionLabel;
-    }
-
-    @Override
-    public void setDescriptionLabel(String descriptionLabel) {
-        this.descriptionLabel = descriptionLabel;
-    }
-
-    @Override
-    public String getLeftItemText() {
-        return leftItemText;
-    }
-
-    @Override
-    public void setLeftItemText(String leftItemText) {
-        this.leftItemText = leftItemText;
-    }
-
-    @Override
-    public String getUnits() {
-        return units;
-    }
-
-    @Override
-    public void setUnits(String units) {
-        this.units = units;
-    }
-
-    @Override
-    public String getRightItemText() {
-        return rightItemText;
+    public String getSimpleConditionalDisplay() {
+        return (String) getExtra(SIMPLE_CONDITIONAL_DISPLAY);
     }
 
+    /**
+     * Returns the conditional display of the item. The response of the conditional display is the current response
+     * option of the controlling item with the value selected when the conditional display has been set.
+     * @return the conditional display of the item or null if the item is always displayed
+     */
     @Override
-    public void setRightItemText(String rightItemText) {
-        this.rightItemText = rightItemText;
+    public ConditionalDisplay getConditionalDisplay() {
+        return conditionalDisplay;
     }
 
+    /**
+     * Sets the conditional display of the item and registers the item as controlled by the item of the response.
+     * The item is left unchanged if the conditional display is rejected.
+     * @param conditionalDisplay the conditional display or null to remove the existing one
+     * @throws IllegalArgumentException if the controlling item belongs to a frozen form
+     */
     @Override
-    public Section getSection() {
-        return section;
-    }
+    public void setConditionalDisplay(ConditionalDisplay conditionalDisplay) {
+        checkNotFrozen();
+        Item controlling = conditionalDisplay == null ? null : conditionalDisplay.getResponse().getItem();
+        if (controlling != null && (controlling.flags & FROZEN) != 0) {
+            throw new IllegalArgumentException("Item " + controlling.getName() + " belongs to a frozen form and cannot control item " + name);
+        }
 
-    void setSection(Section section) {
-        this.section = section;
-    }
+        markDirty();
+        if (this.conditionalDisplay != null) {
+            this.conditionalDisplay.getResponse().getItem().removeControlledItem(this);
+        }
 
-    @Override
-    public Group getGroup() {
-        return group;
-    }
+        if (controlling == null) {
+            this.conditionalDisplay = null;
+            setExtra(SIMPLE_CONDITIONAL_DISPLAY, null);
+            return;
+        }
 
-    void setGroup(Group group) {
-        this.group = group;
-    }
+        List<String> values = new ArrayList<String>();
+        values.add(controlling.getName());
+        values.add(conditionalDisplay.getResponse().getValue());
+        values.add(conditionalDisplay.getMessage());
+        setExtra(SIMPLE_CONDITIONAL_DISPLAY, storeResponseOptions(values));
 
-    @Override
-    public String getHeader() {
-        return header;
-    }
+        controlling.addControlledItem(this);
 
-    @Override
-    public void setHeader(String header) {
-        this.header = header;
+        this.conditionalDisplay = conditionalDisplay;
+        resolveConditionalDisplay();
     }
 
-    @Override
-    public String getSubheader() {
-        return subheader;
+    /**
+     * @return items whose conditional display depends on the response options of this item
+     */
+    public Set<Item> getControlledItems() {
+        if (controlledItems == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(controlledItems);
     }
 
-    @Override
-    public void setSubheader(String subheader) {
-        this.subheader = subheader;
+    /**
+     * Items from different sections may control each other so the set is only changed under the lock of this item when
+     * the form is being built concurrently.
+     */
+    private void addControlledItem(Item controlled) {
+        if (isConcurrent()) {
+            synchronized (this) {
+                doAddControlledItem(controlled);
+            }
+        } else {
+            doAddControlledItem(controlled);
+        }
     }
 
-    @Override
-    public Integer getColumnNumber() {
-        return columnNumber;
+    private void doAddControlledItem(Item controlled) {
+        if (controlledItems == null) {
+            controlledItems = new LinkedHashSet<Item>();
+        }
+        controlledItems.add(controlled);
     }
 
-    @Override
-    public void setColumnNumber(Integer columnNumber) {
-        this.columnNumber = columnNumber;
+    private void removeControlledItem(Item controlled) {
+        if (isConcurrent()) {
+            synchronized (this) {
+                controlledItems.remove(controlled);
+            }
+        } else {
+            controlledItems.remove(controlled);
+        }
     }
 
-    @Override
-    public String getPageNumber() {
-        return pageNumber;
+    private Collection<Item> getControlledItemsSnapshot() {
+        if (isConcurrent()) {
+            synchronized (this) {
+                return controlledItems == null ? Collections.<Item>emptySet() : new ArrayList<Item>(controlledItems);
+            }
+        }
+        return controlledItems == null ? Collections.<Item>emptySet() : controlledItems;
     }
 
-    @Override
-    public void setPageNumber(String pageNumber) {
-        this.pageNumber = pageNumber;
+    private boolean isConcurrent() {
+        return section != null && section.isConcurrent();
     }
 
-    @Override
-    public String getQuestionNumber() {
-        return questionNumber;
+    /**
+     * Points the conditional display to the current response option of the controlling item with the same value.
+     * If there is no such option the previous response is kept.
+     */
+    private void resolveConditionalDisplay() {
+        ResponseOption response = conditionalDisplay.getResponse();
+        ResponseOption current = response.getItem().findResponseOptionByValue(response.getValue());
+        if (current != null && current != response) {
+            conditionalDisplay = new ConditionalDisplay(current, conditionalDisplay.getMessage());
+        }
     }
 
+    /**
+     * The data type is the format the value should be supplied in.
+     */
     @Override
-    public void setQuestionNumber(String questionNumber) {
-        this.questionNumber = questionNumber;
+    @NotNull
+    public DataType getDataType() {
+        return getEnum(DATA_TYPES, DATA_TYPE_SHIFT, FOUR_BITS);
     }
 
     @Override
-    public ResponseType getResponseType() {
-        return responseType;
-    }
-
-    public String getResponseLabel() {
-        return responseLabel;
-    }
-
-    public void setResponseLabel(String responseLabel) {
-        this.responseLabel = responseLabel;
-    }
-
-    public String getResponseOptionsText() {
-        return responseOptionsText;
-    }
-
-    public String getResponseValuesOrCalculations() {
-        return responseValuesOrCalculations;
+    public void setDataType(DataType dataType) {
+        checkNotFrozen();
+        markDirty();
+        setEnum(DATA_TYPE_SHIFT, FOUR_BITS, dataType);
     }
 
     @Override
-    public void setResponseOptions(List<ResponseOption> options) {
-        List<String> texts = new ArrayList<String>();
-        List<String> values = new ArrayList<String>();
-
-        for (ResponseOption option : options) {
-            option.setItem(this);
-            texts.add(option.getText());
-            values.add(option.getValue());
+    public void setCalculation(String calculation) {
+        checkNotFrozen();
+        markDirty();
+        if (!Arrays.asList(ResponseType.CALCULATION, ResponseType.GROUP_CALCULATION, ResponseType.INSTANT_CALCULATION).contains(responseType)) {
+            throw new IllegalStateException("Cannot set calculation for non-calculation response types.");
         }
-
         if (this.responseLabel == null && this.name != null) {
             setResponseLabel(this.name + RESPONSE_LABEL_SUFFIX);
         }
-        this.responseOptionsText = storeResponseOptions(texts);
-        this.responseValuesOrCalculations = storeResponseOptions(values);
-    }
-
-    @Override
-    public List<ResponseOption> getResponseOptions() {
-        List<String> texts = parseResponseOptions(this.responseOptionsText);
-        List<String> values = parseResponseOptions(this.responseValuesOrCalculations);
-        List<ResponseOption> options = new ArrayList<ResponseOption>();
+        this.responseOptions = null;
+        setExtra(RESPONSE_OPTIONS_TEXT, CALCULATION_RESPONSE_OPTIONS_TEXT);
+        setExtra(RESPONSE_VALUES_OR_CALCULATIONS, calculation);
 
-        for (int i = 0; i < texts.size(); i++) {
-            options.add(new ResponseOption(this, values.get(i), texts.get(i)));
+        for (Item controlled : getControlledItemsSnapshot()) {
+            controlled.resolveConditionalDisplay();
         }
-
-        return options;
-    }
-
-    @Override
-    public ResponseLayout getResponseLayout() {
-        return responseLayout;
-    }
-
-    @Override
-    public void setResponseLayout(ResponseLayout responseLayout) {
-        this.responseLayout = responseLayout;
-    }
-
-    @Override
-    public String getDefaultValue() {
-        return defaultValue;
-    }
-
-    @Override
-    public void setDefaultValue(String defaultValue) {
-        this.defaultValue = defaultValue;
-    }
-
-    @Override
-    public String getWidthDecimal() {
-        return widthDecimal;
-    }
-
-    @Override
-    public void setWidthDecimal(String widthDecimal) {
-        this.widthDecimal = widthDecimal;
-    }
-
-    public String getValidation() {
-        return validation;
-    }
-
-    public String getValidationErrorMessage() {
-        return validationErrorMessage;
     }
 
     @Override
-    public Integer getPhi() {
-        return phi;
+    public String getCalculation() {
+        return (String) getExtra(RESPONSE_VALUES_OR_CALCULATIONS);
     }
 
     @Override
-    public void setPhi(Integer phi) {
-        this.phi = phi;
+    public ValidationExpression getValidationExpression() {
+        return new ValidationExpression(getValidation(), getValidationErrorMessage());
     }
 
     @Override
-    public Integer getRequired() {
-        return required;
+    public void setValidationExpression(ValidationExpression expression) {
+        checkNotFrozen();
+        markDirty();
+        setExtra(VALIDATION, intern(expression.getExpression()));
+        setExtra(VALIDATION_ERROR_MESSAGE, intern(expression.getMessage()));
     }
 
-    @Override
-    public void setRequired(Integer required) {
-        this.required = required;
+    /**
+     * Creates copy of the item. The conditional display is copied by {@link #copyConditionalDisplay(Map)} once all
+     * the items of the form have been copied.
+     * @param section section the copy belongs to
+     * @param frozen whether the copy belongs to a frozen form
+     * @return copy of the item
+     */
+    Item copy(Section section, boolean frozen) {
+        Item copy = new Item(responseType);
+        copy.name = name;
+        copy.descriptionLabel = descriptionLabel;
+        copy.leftItemText = leftItemText;
+        copy.units = units;
+        copy.section = section;
+        copy.pageNumber = pageNumber;
+        copy.questionNumber = questionNumber;
+        copy.responseLabel = responseLabel;
+        copy.responseOptions = responseOptions == null ? null : new ResponseOptionList(copy, responseOptions);
+        copy.extras = extras == null ? null : extras.clone();
+        copy.extrasMask = extrasMask;
+        copy.flags = frozen ? flags | FROZEN : flags & ~FROZEN;
+        return copy;
     }
 
-    @Override
-    public DisplayStatus getDisplayStatus() {
-        return displayStatus;
-    }
+    /**
+     * Points the conditional display of the copy of this item to the copy of the controlling item.
+     * @param copies copies of all the items being copied
+     */
+    void copyConditionalDisplay(Map<Item, Item> copies) {
+        if (conditionalDisplay == null) {
+            return;
+        }
+        Item copy = copies.get(this);
+        ResponseOption response = conditionalDisplay.getResponse();
+        Item controlling = copies.get(response.getItem());
+        if (controlling == null) {
+            // the controlling item is not being copied
+            copy.conditionalDisplay = conditionalDisplay;
+            return;
+        }
 
-    @Override
-    public void setDisplayStatus(DisplayStatus displayStatus) {
-        this.displayStatus = displayStatus;
-    }
+        ResponseOption option = controlling.findResponseOptionByValue(response.getValue());
+        if (option == null) {
+            option = new ResponseOption(controlling, response.getValue(), response.getText());
+        }
+        copy.conditionalDisplay = new ConditionalDisplay(option, conditionalDisplay.getMessage());
 
-    public String getSimpleConditionalDisplay() {
-        return simpleConditionalDisplay;
+        if (controlling.controlledItems == null) {
+            controlling.controlledItems = new LinkedHashSet<Item>();
+        }
+        controlling.controlledItems.add(copy);
     }
 
-    @Override
-    public ConditionalDisplay getConditionalDisplay() {
-        if (simpleConditionalDisplay == null) {
-            return null;
-        }
-        if (section == null) {
+    private Object getExtra(int slot) {
+        int bit = 1 << slot;
+        if ((extrasMask & bit) == 0) {
             return null;
         }
-        List<String> parts = parseResponseOptions(simpleConditionalDisplay);
+        return extras[Integer.bitCount(extrasMask & (bit - 1))];
+    }
 
-        Item item = getSection().getItems().get(parts.get(0));
+    private void setExtra(int slot, Object value) {
+        int bit = 1 << slot;
+        int position = Integer.bitCount(extrasMask & (bit - 1));
+        int size = Integer.bitCount(extrasMask);
 
-        ResponseOption option = null;
-        for (ResponseOption responseOption : item.getResponseOptions()) {
-            if (parts.get(1).equals(responseOption.getValue())) {
-                option = responseOption;
-                break;
+        if ((extrasMask & bit) != 0) {
+            if (value != null) {
+                extras[position] = value;
+                return;
             }
+            Object[] shrunk = null;
+            if (size > 1) {
+                shrunk = new Object[size - 1];
+                System.arraycopy(extras, 0, shrunk, 0, position);
+                System.arraycopy(extras, position + 1, shrunk, position, size - position - 1);
+            }
+            extras = shrunk;
+            extrasMask &= ~bit;
+            return;
         }
 
-        return new ConditionalDisplay(option, parts.get(2));
+        if (value == null) {
+            return;
+        }
+        Object[] grown = new Object[size + 1];
+        if (extras != null) {
+            System.arraycopy(extras, 0, grown, 0, position);
+            System.arraycopy(extras, position, grown, position + 1, size - position);
+        }
+        grown[position] = value;
+        extras = grown;
+        extrasMask |= bit;
     }
 
-    @Override
-    public void setConditionalDisplay(ConditionalDisplay conditionalDisplay) {
-        List<String> values = new ArrayList<String>();
-        values.add(conditionalDisplay.getResponse().getItem().getName());
-        values.add(conditionalDisplay.getResponse().getValue());
-        values.add(conditionalDisplay.getMessage());
-        this.simpleConditionalDisplay = storeResponseOptions(values);
+    private <E extends Enum<E>> E getEnum(E[] values, int shift, int bits) {
+        int code = (flags >>> shift) & bits;
+        return code == 0 ? null : values[code - 1];
     }
 
-    @Override
-    public DataType getDataType() {
-        return dataType;
+    private void setEnum(int shift, int bits, Enum<?> value) {
+        flags = (flags & ~(bits << shift)) | ((value == null ? 0 : value.ordinal() + 1) << shift);
     }
 
-    @Override
-    public void setDataType(DataType dataType) {
-        this.dataType = dataType;
+    private Integer getFlag(int shift, int slot) {
+        switch ((flags >>> shift) & TWO_BITS) {
+            case 0:
+                return null;
+            case 1:
+                return 0;
+            case 2:
+                return 1;
+            default:
+                return (Integer) getExtra(slot);
+        }
     }
 
-    @Override
-    public void setCalculation(String calculation) {
-        if (!Arrays.asList(ResponseType.CALCULATION, ResponseType.GROUP_CALCULATION, ResponseType.INSTANT_CALCULATION).contains(responseType)) {
-            throw new IllegalStateException("Cannot set calculation for non-calculation response types.");
-        }
-        if (this.responseLabel == null && this.name != null) {
-            setResponseLabel(this.name + RESPONSE_LABEL_SUFFIX);
-        }
-        this.responseOptionsText = CALCULATION_RESPONSE_OPTIONS_TEXT;
-        this.responseValuesOrCalculations = calculation;
+    private void setFlag(int shift, int slot, Integer value) {
+        int code = value == null ? 0 : value == 0 ? 1 : value == 1 ? 2 : 3;
+        flags = (flags & ~(TWO_BITS << shift)) | (code << shift);
+        setExtra(slot, code == 3 ? value : null);
     }
 
-    @Override
-    public String getCalculation() {
-        return this.responseValuesOrCalculations;
+    /**
+     * Replaces the repeated value with the same string already used by the other items of the form.
+     */
+    private String intern(String value) {
+        if (value == null || section == null || section.getCaseReportForm() == null) {
+            return value;
+        }
+        return section.getCaseReportForm().intern(value);
     }
 
-    @Override
-    public ValidationExpression getValidationExpression() {
-        return new ValidationExpression(validation, validationErrorMessage);
+    private void checkNotFrozen() {
+        if ((flags & FROZEN) != 0) {
+            throw new IllegalStateException(CaseReportForm.FROZEN_MESSAGE);
+        }
     }
 
-    @Override
-    public void setValidationExpression(ValidationExpression expression) {
-        this.validation = expression.getExpression();
-        this.validationErrorMessage = expression.getMessage();
+    private void markDirty() {
+        if (section != null) {
+            section.markDirty(this);
+        }
     }
 
     @Override
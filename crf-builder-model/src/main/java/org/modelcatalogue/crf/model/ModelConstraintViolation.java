@@ -0,0 +1,182 @@
+package org.modelcatalogue.crf.model;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.ElementKind;
+import javax.validation.Path;
+import javax.validation.ValidationException;
+import javax.validation.metadata.ConstraintDescriptor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Violation of the constraint reported by the validators generated from the constraint annotations of the model, see
+ * {@link ModelConstraints}.
+ *
+ * The violations are reported against the object itself, so the root and the leaf bean are the same and the path
+ * consists of single node, the property node or the bean node for the constraints of the whole object. The message
+ * template is the same as the interpolated message and there is no constraint descriptor.
+ */
+final class ModelConstraintViolation implements ConstraintViolation<Object> {
+
+    private final Object bean;
+    private final PropertyPath path;
+    private final Object invalidValue;
+    private final String message;
+
+    ModelConstraintViolation(Object bean, String property, Object invalidValue, String message) {
+        this.bean = bean;
+        this.path = new PropertyPath(property);
+        this.invalidValue = invalidValue;
+        this.message = message;
+    }
+
+    /**
+     * Adds new violation to the list used by the generated validators.
+     * @param violations violations found so far or <code>null</code> if none has been found
+     * @param property name of the property or empty string for the constraints of the whole object
+     * @return the list with the new violation
+     */
+    static List<ConstraintViolation<Object>> add(List<ConstraintViolation<Object>> violations, Object bean, String property, Object invalidValue, String message) {
+        if (violations == null) {
+            violations = new ArrayList<ConstraintViolation<Object>>(4);
+        }
+        violations.add(new ModelConstraintViolation(bean, property, invalidValue, message));
+        return violations;
+    }
+
+    @Override
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String getMessageTemplate() {
+        return message;
+    }
+
+    @Override
+    public Object getRootBean() {
+        return bean;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Class<Object> getRootBeanClass() {
+        return (Class<Object>) bean.getClass();
+    }
+
+    @Override
+    public Object getLeafBean() {
+        return bean;
+    }
+
+    @Override
+    public Object[] getExecutableParameters() {
+        return null;
+    }
+
+    @Override
+    public Object getExecutableReturnValue() {
+        return null;
+    }
+
+    @Override
+    public Path getPropertyPath() {
+        return path;
+    }
+
+    @Override
+    public Object getInvalidValue() {
+        return invalidValue;
+    }
+
+    @Override
+    public ConstraintDescriptor<?> getConstraintDescriptor() {
+        return null;
+    }
+
+    @Override
+    public <U> U unwrap(Class<U> type) {
+        if (type.isInstance(this)) {
+            return type.cast(this);
+        }
+        throw new ValidationException("Type " + type.getName() + " is not supported");
+    }
+
+    @Override
+    public String toString() {
+        return "ModelConstraintViolation{property=" + path + ", message=" + message + "}";
+    }
+
+    private static final class PropertyPath implements Path {
+
+        private final SingleNode node;
+
+        PropertyPath(String property) {
+            this.node = new SingleNode(property);
+        }
+
+        @Override
+        public Iterator<Node> iterator() {
+            return Collections.<Node>singletonList(node).iterator();
+        }
+
+        @Override
+        public String toString() {
+            return node.toString();
+        }
+    }
+
+    private static final class SingleNode implements Path.PropertyNode, Path.BeanNode {
+
+        /**
+         * Name of the property, <code>null</code> for the bean node.
+         */
+        private final String name;
+
+        SingleNode(String property) {
+            this.name = property.isEmpty() ? null : property;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean isInIterable() {
+            return false;
+        }
+
+        @Override
+        public Integer getIndex() {
+            return null;
+        }
+
+        @Override
+        public Object getKey() {
+            return null;
+        }
+
+        @Override
+        public ElementKind getKind() {
+            return name == null ? ElementKind.BEAN : ElementKind.PROPERTY;
+        }
+
+        @Override
+        public <T extends Path.Node> T as(Class<T> nodeType) {
+            Class<?> expected = name == null ? Path.BeanNode.class : Path.PropertyNode.class;
+            if (nodeType == Path.Node.class || nodeType == expected) {
+                return nodeType.cast(this);
+            }
+            throw new ClassCastException("Node of kind " + getKind() + " cannot be cast to " + nodeType.getName());
+        }
+
+        @Override
+        public String toString() {
+            return name == null ? "" : name;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.modelcatalogue.crf.model;
+
+/**
+ * Parsed question number used to sort the items.
+ *
+ * The question number is split by dots into segments of any depth such as <code>1.2.3</code>. Each segment consists of
+ * optional number followed by optional suffix such as <code>4a</code> or <code>b</code>. The segments are compared
+ * one by one, numbers by their value of any length and suffixes alphabetically. Segments with a number go before the
+ * segments without any, and the question number goes before all the question numbers it is prefix of, so
+ * <code>2 &lt; 2.1 &lt; 2.1a &lt; 2.b &lt; 10</code>.
+ */
+final class QuestionNumber implements Comparable<QuestionNumber> {
+
+    private final String[] numbers;
+    private final String[] suffixes;
+
+    private QuestionNumber(String[] numbers, String[] suffixes) {
+        this.numbers = numbers;
+        this.suffixes = suffixes;
+    }
+
+    static QuestionNumber parse(String questionNumber) {
+        String trimmed = questionNumber.trim();
+
+        int segments = 1;
+        for (int i = 0; i < trimmed.length(); i++) {
+            if (trimmed.charAt(i) == '.') {
+                segments++;
+            }
+        }
+
+        String[] numbers = new String[segments];
+        String[] suffixes = new String[segments];
+
+        int start = 0;
+        for (int segment = 0; segment < segments; segment++) {
+            int end = trimmed.indexOf('.', start);
+            if (end < 0) {
+                end = trimmed.length();
+            }
+
+            int digitsStart = start;
+            while (digitsStart < end - 1 && trimmed.charAt(digitsStart) == '0' && isDigit(trimmed.charAt(digitsStart + 1))) {
+                digitsStart++;
+            }
+            int digitsEnd = start;
+            while (digitsEnd < end && isDigit(trimmed.charAt(digitsEnd))) {
+                digitsEnd++;
+            }
+
+            numbers[segment] = digitsEnd > start ? trimmed.substring(digitsStart, digitsEnd) : null;
+            suffixes[segment] = trimmed.substring(digitsEnd, end);
+            start = end + 1;
+        }
+
+        return new QuestionNumber(numbers, suffixes);
+    }
+
+    @Override
+    public int compareTo(QuestionNumber other) {
+        int common = Math.min(numbers.length, other.numbers.length);
+        for (int i = 0; i < common; i++) {
+            int result = compareNumbers(numbers[i], other.numbers[i]);
+            if (result != 0) {
+                return result;
+            }
+            result = suffixes[i].compareToIgnoreCase(other.suffixes[i]);
+            if (result != 0) {
+                return result;
+            }
+            result = suffixes[i].compareTo(other.suffixes[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return numbers.length - other.numbers.length;
+    }
+
+    /**
+     * Compares the numbers without leading zeros by their length first so they can be of any size.
+     */
+    private static int compareNumbers(String number, String other) {
+        if (number == null) {
+            return other == null ? 0 : 1;
+        }
+        if (other == null) {
+            return -1;
+        }
+        if (number.length() != other.length()) {
+            return number.length() - other.length();
+        }
+        return number.compareTo(other);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
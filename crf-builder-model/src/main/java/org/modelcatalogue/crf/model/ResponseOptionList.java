@@ -0,0 +1,95 @@
+package org.modelcatalogue.crf.model;
+
+import java.util.*;
+
+/**
+ * Immutable list of the response options of single item.
+ *
+ * The options are indexed by their texts and values when the list is created. The encoded RESPONSE_OPTIONS_TEXT and
+ * RESPONSE_VALUES_OR_CALCULATIONS strings are only created when they are requested for the first time, usually by the
+ * serializer.
+ */
+final class ResponseOptionList extends AbstractList<ResponseOption> implements RandomAccess {
+
+    private final ResponseOption[] options;
+    private final Map<String, ResponseOption> byText;
+    private final Map<String, ResponseOption> byValue;
+
+    private String texts;
+    private String values;
+
+    /**
+     * Creates new list of copies of given options belonging to given item.
+     * @param item item the options belong to
+     * @param options the response options
+     * @throws IllegalArgumentException if any of the options has no text or value
+     */
+    ResponseOptionList(Item item, List<ResponseOption> options) {
+        this.options = new ResponseOption[options.size()];
+        this.byText = new HashMap<String, ResponseOption>(options.size() * 2);
+        this.byValue = new HashMap<String, ResponseOption>(options.size() * 2);
+
+        int i = 0;
+        for (ResponseOption option : options) {
+            if (option.getText() == null || option.getValue() == null) {
+                throw new IllegalArgumentException("Response option must have both text and value: " + option.getText() + " = " + option.getValue());
+            }
+            ResponseOption copy = new ResponseOption(item, option.getValue(), option.getText());
+            this.options[i++] = copy;
+
+            // the first option wins if the texts or values are not unique
+            if (!byText.containsKey(copy.getText())) {
+                byText.put(copy.getText(), copy);
+            }
+            if (!byValue.containsKey(copy.getValue())) {
+                byValue.put(copy.getValue(), copy);
+            }
+        }
+    }
+
+    @Override
+    public ResponseOption get(int index) {
+        return options[index];
+    }
+
+    @Override
+    public int size() {
+        return options.length;
+    }
+
+    ResponseOption findByText(String text) {
+        return byText.get(text);
+    }
+
+    ResponseOption findByValue(String value) {
+        return byValue.get(value);
+    }
+
+    /**
+     * @return texts of the options as stored in RESPONSE_OPTIONS_TEXT column
+     */
+    String getTexts() {
+        if (texts == null) {
+            List<String> list = new ArrayList<String>(options.length);
+            for (ResponseOption option : options) {
+                list.add(option.getText());
+            }
+            texts = Item.storeResponseOptions(list);
+        }
+        return texts;
+    }
+
+    /**
+     * @return values of the options as stored in RESPONSE_VALUES_OR_CALCULATIONS column
+     */
+    String getValues() {
+        if (values == null) {
+            List<String> list = new ArrayList<String>(options.length);
+            for (ResponseOption option : options) {
+                list.add(option.getValue());
+            }
+            values = Item.storeResponseOptions(list);
+        }
+        return values;
+    }
+}
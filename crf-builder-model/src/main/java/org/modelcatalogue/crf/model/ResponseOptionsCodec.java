@@ -0,0 +1,107 @@
+package org.modelcatalogue.crf.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Encodes and decodes the comma separated lists used in RESPONSE_OPTIONS_TEXT, RESPONSE_VALUES_OR_CALCULATIONS and
+ * SIMPLE_CONDITIONAL_DISPLAY columns.
+ *
+ * Commas inside the values are escaped with two backslashes. The separator is any comma not preceded by a backslash
+ * and the whitespace around the separators is dropped. Empty values at the end of the list are dropped as well. This
+ * is exactly what the former regular expression based implementation did but the strings are scanned only once and
+ * no patterns are compiled.
+ */
+final class ResponseOptionsCodec {
+
+    private static final String ESCAPED_COMMA = "\\\\,";
+
+    private ResponseOptionsCodec() {}
+
+    static String encode(Iterable<String> options) {
+        StringBuilder encoded = new StringBuilder();
+        boolean first = true;
+        for (String option : options) {
+            if (!first) {
+                encoded.append(',');
+            }
+            first = false;
+
+            for (int i = 0; i < option.length(); i++) {
+                char c = option.charAt(i);
+                if (c == ',') {
+                    encoded.append(ESCAPED_COMMA);
+                } else {
+                    encoded.append(c);
+                }
+            }
+        }
+        return encoded.toString();
+    }
+
+    static List<String> decode(String options) {
+        List<String> decoded = new ArrayList<String>();
+        int length = options.length();
+        int start = 0;
+        int lastNonEmpty = 0;
+
+        for (int i = 0; i < length; i++) {
+            if (options.charAt(i) != ',' || i > 0 && options.charAt(i - 1) == '\\') {
+                continue;
+            }
+            int end = i;
+            while (end > start && isWhitespace(options.charAt(end - 1))) {
+                end--;
+            }
+            decoded.add(unescape(options, start, end));
+            if (end > start) {
+                lastNonEmpty = decoded.size();
+            }
+
+            start = i + 1;
+            while (start < length && isWhitespace(options.charAt(start))) {
+                start++;
+            }
+            i = start - 1;
+        }
+
+        if (decoded.isEmpty()) {
+            // no separator at all, the whole string is the only value even if it is empty
+            return Collections.singletonList(unescape(options, 0, length));
+        }
+
+        if (start < length) {
+            decoded.add(unescape(options, start, length));
+            lastNonEmpty = decoded.size();
+        }
+
+        return Collections.unmodifiableList(decoded.subList(0, lastNonEmpty));
+    }
+
+    private static String unescape(String options, int start, int end) {
+        int escape = options.indexOf(ESCAPED_COMMA, start);
+        if (escape < 0 || escape + ESCAPED_COMMA.length() > end) {
+            return options.substring(start, end);
+        }
+
+        StringBuilder value = new StringBuilder(end - start);
+        int i = start;
+        while (i < end) {
+            if (i + ESCAPED_COMMA.length() <= end && options.startsWith(ESCAPED_COMMA, i)) {
+                value.append(',');
+                i += ESCAPED_COMMA.length();
+            } else {
+                value.append(options.charAt(i++));
+            }
+        }
+        return value.toString();
+    }
+
+    /**
+     * Same characters as matched by \s in regular expressions.
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -69,10 +69,29 @@ public class Section extends AbstractItemsContainer implements HasPageNumber {
 
     private CaseReportForm caseReportForm;
 
+    /**
+     * Number of the changes of the section, its groups and items.
+     */
+    private long modificationCount;
+
     protected Item addItem(Item item) {
+        if (isConcurrent()) {
+            // groups of the section might be populated by different threads
+            synchronized (this) {
+                return addItemToSection(item);
+            }
+        }
+        return addItemToSection(item);
+    }
+
+    private Item addItemToSection(Item item) {
+        if (caseReportForm != null) {
+            caseReportForm.registerItem(item);
+        }
         if (!items.containsKey(item.getName())) {
             items.put(item.getName(), item);
             item.setSection(this);
+            markDirty(item);
         }
         return item;
     }
@@ -85,9 +104,19 @@ public class Section extends AbstractItemsContainer implements HasPageNumber {
      * @return new non-repeating group with given label.
      */
     public Group group(String label) {
+        if (isConcurrent()) {
+            synchronized (this) {
+                return getOrCreateGroup(label);
+            }
+        }
+        return getOrCreateGroup(label);
+    }
+
+    private Group getOrCreateGroup(String label) {
         if (groups.containsKey(label)) {
             return groups.get(label);
         }
+        checkNotFrozen();
         Group group = new Group();
         group.setLabel(label);
         addGroup(group);
@@ -100,6 +129,15 @@ public class Section extends AbstractItemsContainer implements HasPageNumber {
      * @return new repeating grid group with given label.
      */
     public GridGroup grid(String label) {
+        if (isConcurrent()) {
+            synchronized (this) {
+                return getOrCreateGrid(label);
+            }
+        }
+        return getOrCreateGrid(label);
+    }
+
+    private GridGroup getOrCreateGrid(String label) {
         if (groups.containsKey(label)) {
             Group group = groups.get(label);
             if (group instanceof GridGroup) {
@@ -107,6 +145,7 @@ public class Section extends AbstractItemsContainer implements HasPageNumber {
             }
             throw new IllegalArgumentException("Group " + label + " already exists but it's not grid!");
         }
+        checkNotFrozen();
         GridGroup group = new GridGroup();
         group.setLabel(label);
         addGroup(group);
@@ -117,11 +156,15 @@ public class Section extends AbstractItemsContainer implements HasPageNumber {
         if (!groups.containsKey(group.getLabel())) {
             groups.put(group.getLabel(), group);
             group.setSection(this);
+            markDirty(group);
         }
         return group;
     }
 
     public Map<String, Group> getGroups() {
+        if (frozen) {
+            return groups;
+        }
         return Collections.unmodifiableMap(groups);
     }
 
@@ -130,7 +173,9 @@ public class Section extends AbstractItemsContainer implements HasPageNumber {
     }
 
     public void setLabel(String label) {
+        checkNotFrozen();
         this.label = label;
+        markDirty(this);
     }
 
     public String getTitle() {
@@ -138,7 +183,9 @@ public class Section extends AbstractItemsContainer implements HasPageNumber {
     }
 
     public void setTitle(String title) {
+        checkNotFrozen();
         this.title = title;
+        markDirty(this);
     }
 
     public String getSubtitle() {
@@ -146,7 +193,9 @@ public class Section extends AbstractItemsContainer implements HasPageNumber {
     }
 
     public void setSubtitle(String subtitle) {
+        checkNotFrozen();
         this.subtitle = subtitle;
+        markDirty(this);
     }
 
     public String getInstructions() {
@@ -154,7 +203,9 @@ public class Section extends AbstractItemsContainer implements HasPageNumber {
     }
 
     public void setInstructions(String instructions) {
+        checkNotFrozen();
         this.instructions = instructions;
+        markDirty(this);
     }
 
     public String getPageNumber() {
@@ -162,9 +213,17 @@ public class Section extends AbstractItemsContainer implements HasPageNumber {
     }
 
     public void setPageNumber(String pageNumber) {
+        checkNotFrozen();
         this.pageNumber = pageNumber;
+        markDirty(this);
     }
 
+    /**
+     * Returns the form the section belongs to. The sections shared by the versions created by
+     * {@link CaseReportForm#newVersion()} belong to the frozen version they have been copied in, so for the shared
+     * section this is an earlier version than the one the section has been obtained from.
+     * @return the form the section belongs to
+     */
     public CaseReportForm getCaseReportForm() {
         return caseReportForm;
     }
@@ -172,4 +231,70 @@ public class Section extends AbstractItemsContainer implements HasPageNumber {
     void setCaseReportForm(CaseReportForm caseReportForm) {
         this.caseReportForm = caseReportForm;
     }
+
+    @Override
+    boolean isConcurrent() {
+        return caseReportForm != null && caseReportForm.isConcurrent();
+    }
+
+    @Override
+    void markReordered() {
+        markDirty(this);
+    }
+
+    /**
+     * Returns the number of the changes of the section, its groups and items. The number is increased by each of
+     * their setters, by adding a group or an item and by sorting the items, so any value derived from the section can
+     * be checked to be still current by comparing the number instead of reading the section again. The changes made
+     * by multiple threads at the same time may be counted only once.
+     * @return the number of the changes of the section since it has been created
+     */
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Records the section, its group or item as dirty if the form tracks the changes and counts the change.
+     * @see CaseReportForm#markDirty(Object)
+     */
+    void markDirty(Object changed) {
+        modificationCount++;
+        if (caseReportForm != null) {
+            caseReportForm.markDirty(changed);
+        }
+    }
+
+    /**
+     * Creates copy of the section with copies of all its items and groups.
+     * @param caseReportForm form the copy belongs to
+     * @param copies map to which the copies of the items are put under the original items
+     * @param frozen whether the copy belongs to a frozen form
+     * @return copy of the section
+     */
+    Section copy(CaseReportForm caseReportForm, Map<Item, Item> copies, boolean frozen) {
+        Section copy = new Section();
+        copy.label = label;
+        copy.title = title;
+        copy.subtitle = subtitle;
+        copy.instructions = instructions;
+        copy.pageNumber = pageNumber;
+        copy.caseReportForm = caseReportForm;
+
+        Map<String, Item> itemCopies = new LinkedHashMap<String, Item>(items.size() * 2);
+        for (Item item : items.values()) {
+            Item itemCopy = item.copy(copy, frozen);
+            copies.put(item, itemCopy);
+            itemCopies.put(item.getName(), itemCopy);
+        }
+        copy.items = frozen ? new ArrayMap<Item>(itemCopies) : itemCopies;
+
+        Map<String, Group> groupCopies = new LinkedHashMap<String, Group>(groups.size() * 2);
+        for (Group group : groups.values()) {
+            groupCopies.put(group.getLabel(), group.copy(copy, copies, frozen));
+        }
+        copy.groups = frozen ? new ArrayMap<Group>(groupCopies) : groupCopies;
+
+        copy.frozen = frozen;
+        return copy;
+    }
 }
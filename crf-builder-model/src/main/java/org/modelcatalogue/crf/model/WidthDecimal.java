@@ -0,0 +1,236 @@
+package org.modelcatalogue.crf.model;
+
+/**
+ * Parsed WIDTH_DECIMAL attribute of the item (see {@link Item#getWidthDecimal()}).
+ *
+ * The value has the form <code>w(d)</code> where either part is replaced by up to four digits, e.g. <code>20(d)</code>,
+ * <code>w(4)</code> or <code>5(1)</code>. The letters stand for the default width and the default number of decimal
+ * places of OpenClinica and they are reported as {@link #UNSPECIFIED}.
+ *
+ * The value is scanned by hand into a single int so the static {@link #isWellFormed(String)} and
+ * {@link #isValid(String, DataType)} do not allocate anything, the validation calls them for every item.
+ */
+public final class WidthDecimal {
+
+    /**
+     * Width or number of decimal places given by the letter instead of the digits.
+     */
+    public static final int UNSPECIFIED = -1;
+
+    /**
+     * Maximal width of the INT and REAL items in OpenClinica, also used for the REAL items without the width.
+     */
+    public static final int MAX_NUMBER_WIDTH = 26;
+
+    /**
+     * Maximal width of the ST items in OpenClinica.
+     */
+    public static final int MAX_STRING_WIDTH = 4000;
+
+    /**
+     * Maximal number of decimal places of the REAL items in OpenClinica.
+     */
+    public static final int MAX_DECIMAL = 20;
+
+    private static final int MAX_DIGITS = 4;
+    private static final int MALFORMED = -1;
+    private static final int DECIMAL_BITS = 16;
+    private static final int DECIMAL_MASK = (1 << DECIMAL_BITS) - 1;
+
+    private final int width;
+    private final int decimal;
+
+    private WidthDecimal(int width, int decimal) {
+        this.width = width;
+        this.decimal = decimal;
+    }
+
+    /**
+     * @param width width or {@link #UNSPECIFIED}
+     * @param decimal number of decimal places or {@link #UNSPECIFIED}
+     * @return new width decimal value
+     */
+    public static WidthDecimal of(int width, int decimal) {
+        if (width < UNSPECIFIED || decimal < UNSPECIFIED) {
+            throw new IllegalArgumentException("Width and decimal must not be negative: " + width + "(" + decimal + ")");
+        }
+        return new WidthDecimal(width, decimal);
+    }
+
+    /**
+     * @param widthDecimal the value such as <code>5(1)</code>
+     * @return parsed value or <code>null</code> if the value is null or it is not in the <code>w(d)</code> format
+     */
+    public static WidthDecimal parse(String widthDecimal) {
+        int scanned = scan(widthDecimal);
+        if (scanned == MALFORMED) {
+            return null;
+        }
+        return new WidthDecimal(width(scanned), decimal(scanned));
+    }
+
+    /**
+     * @param widthDecimal the value such as <code>5(1)</code>
+     * @return true if the value is in the <code>w(d)</code> format
+     */
+    public static boolean isWellFormed(String widthDecimal) {
+        return scan(widthDecimal) != MALFORMED;
+    }
+
+    /**
+     * @param widthDecimal the value such as <code>5(1)</code>
+     * @param dataType data type of the item
+     * @return true if the value is in the <code>w(d)</code> format and it is valid for the given data type
+     */
+    public static boolean isValid(String widthDecimal, DataType dataType) {
+        int scanned = scan(widthDecimal);
+        return scanned != MALFORMED && isValid(width(scanned), decimal(scanned), dataType);
+    }
+
+    /**
+     * @return the width or {@link #UNSPECIFIED}
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the number of decimal places or {@link #UNSPECIFIED}
+     */
+    public int getDecimal() {
+        return decimal;
+    }
+
+    public boolean hasWidth() {
+        return width != UNSPECIFIED;
+    }
+
+    public boolean hasDecimal() {
+        return decimal != UNSPECIFIED;
+    }
+
+    /**
+     * Only ST, INT and REAL items may have the width decimal. The width of the numbers can be up to 26 characters and
+     * the width of the strings up to 4000 characters. Only the REAL numbers can have the number of decimal places
+     * which can be up to 20 but not more than the width.
+     *
+     * @param dataType data type of the item
+     * @return true if this value is valid for the given data type
+     */
+    public boolean isValidFor(DataType dataType) {
+        return isValid(width, decimal, dataType);
+    }
+
+    private static boolean isValid(int width, int decimal, DataType dataType) {
+        if (dataType == null) {
+            return false;
+        }
+        switch (dataType) {
+            case INT:
+                return decimal == UNSPECIFIED && isValidWidth(width, MAX_NUMBER_WIDTH);
+            case ST:
+                return decimal == UNSPECIFIED && isValidWidth(width, MAX_STRING_WIDTH);
+            case REAL:
+                if (!isValidWidth(width, MAX_NUMBER_WIDTH)) {
+                    return false;
+                }
+                return decimal == UNSPECIFIED || decimal <= MAX_DECIMAL && decimal <= (width == UNSPECIFIED ? MAX_NUMBER_WIDTH : width);
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isValidWidth(int width, int max) {
+        return width == UNSPECIFIED || width >= 1 && width <= max;
+    }
+
+    /**
+     * Scans the value into the width and decimal packed into single int, both increased by one so the unspecified
+     * ones are stored as zero.
+     *
+     * @return packed width and decimal or {@link #MALFORMED}
+     */
+    private static int scan(String widthDecimal) {
+        if (widthDecimal == null) {
+            return MALFORMED;
+        }
+
+        int length = widthDecimal.length();
+        int position = 0;
+
+        int width = UNSPECIFIED;
+        if (position < length && widthDecimal.charAt(position) == 'w') {
+            position++;
+        } else {
+            int start = position;
+            width = 0;
+            while (position < length && position - start < MAX_DIGITS && isDigit(widthDecimal.charAt(position))) {
+                width = width * 10 + widthDecimal.charAt(position++) - '0';
+            }
+            if (position == start) {
+                return MALFORMED;
+            }
+        }
+
+        if (position >= length || widthDecimal.charAt(position++) != '(') {
+            return MALFORMED;
+        }
+
+        int decimal = UNSPECIFIED;
+        if (position < length && widthDecimal.charAt(position) == 'd') {
+            position++;
+        } else {
+            int start = position;
+            decimal = 0;
+            while (position < length && position - start < MAX_DIGITS && isDigit(widthDecimal.charAt(position))) {
+                decimal = decimal * 10 + widthDecimal.charAt(position++) - '0';
+            }
+            if (position == start) {
+                return MALFORMED;
+            }
+        }
+
+        if (position != length - 1 || widthDecimal.charAt(position) != ')') {
+            return MALFORMED;
+        }
+
+        return (width + 1) << DECIMAL_BITS | (decimal + 1);
+    }
+
+    private static int width(int scanned) {
+        return (scanned >>> DECIMAL_BITS) - 1;
+    }
+
+    private static int decimal(int scanned) {
+        return (scanned & DECIMAL_MASK) - 1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof WidthDecimal)) {
+            return false;
+        }
+        WidthDecimal other = (WidthDecimal) o;
+        return width == other.width && decimal == other.decimal;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * width + decimal;
+    }
+
+    /**
+     * @return the value in the <code>w(d)</code> format
+     */
+    @Override
+    public String toString() {
+        return (hasWidth() ? String.valueOf(width) : "w") + "(" + (hasDecimal() ? String.valueOf(decimal) : "d") + ")";
+    }
+}
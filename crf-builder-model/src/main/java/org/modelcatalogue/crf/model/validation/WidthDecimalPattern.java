@@ -2,7 +2,6 @@ package org.modelcatalogue.crf.model.validation;
 
 import javax.validation.Constraint;
 import javax.validation.Payload;
-import javax.validation.constraints.Pattern;
 import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
@@ -10,10 +9,9 @@ import java.lang.annotation.Target;
 import static java.lang.annotation.ElementType.*;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 
-@Pattern(regexp = "[w(\\d{1,4})]\\([d(\\d{1,2})]\\)", message = "should look like number(d|number)")
 @Target( { METHOD, FIELD, ANNOTATION_TYPE })
 @Retention(RUNTIME)
-@Constraint(validatedBy = {})
+@Constraint(validatedBy = WidthDecimalPatternConstraint.class)
 @Documented
 public @interface WidthDecimalPattern {
     String message() default "should look like number(d|number)";
@@ -0,0 +1,16 @@
+package org.modelcatalogue.crf.model.validation;
+
+import org.modelcatalogue.crf.model.WidthDecimal;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+
+public class WidthDecimalPatternConstraint implements ConstraintValidator<WidthDecimalPattern, String> {
+
+    @Override public void initialize(WidthDecimalPattern constraintAnnotation) {}
+
+    @Override
+    public boolean isValid(String value, ConstraintValidatorContext context) {
+        return value == null || WidthDecimal.isWellFormed(value);
+    }
+}
@@ -3,6 +3,11 @@ package org.modelcatalogue.crf.model
 import org.modelcatalogue.crf.model.validation.ValidationHelper
 import org.springframework.validation.Errors
 import spock.lang.Specification
+import spock.lang.Unroll
+
+import javax.validation.Validation
+import javax.validation.Validator
+import java.util.concurrent.ForkJoinPool
 
 class CaseReportFormSpec extends Specification {
 
@@ -16,4 +21,359 @@ class CaseReportFormSpec extends Specification {
 
     }
 
+    def "find items in all sections and groups"() {
+        CaseReportForm form = new CaseReportForm()
+        Section first = form.section('First')
+        Item text = first.text('TEXT')
+        Item grouped = first.group('Group').radio('GROUPED')
+        Item gridded = form.section('Second').grid('Grid').checkbox('GRIDDED')
+
+        expect:
+        form.findItem('TEXT').is(text)
+        form.findItem('GROUPED').is(grouped)
+        form.findItem('GRIDDED').is(gridded)
+        form.findItem('MISSING') == null
+    }
+
+    def "items are found after sorting"() {
+        CaseReportForm form = new CaseReportForm()
+        Section section = form.section('Section')
+        Item second = section.text('SECOND')
+        second.questionNumber = '2'
+        Item first = section.text('FIRST')
+        first.questionNumber = '1'
+
+        when:
+        section.sortItemsByQuestionNumber()
+
+        then:
+        section.items.keySet().toList() == ['FIRST', 'SECOND']
+        form.findItem('FIRST').is(first)
+        form.findItem('SECOND').is(second)
+    }
+
+    def "item names must be unique within the form"() {
+        CaseReportForm form = new CaseReportForm()
+        form.section('First').text('TEXT')
+
+        when:
+        form.section('Second').text('TEXT')
+
+        then:
+        IllegalArgumentException e = thrown(IllegalArgumentException)
+        e.message.contains('TEXT')
+        e.message.contains('First')
+        !form.sections['Second'].items.containsKey('TEXT')
+
+        when:
+        form.section('First').group('Group').text('TEXT')
+
+        then:
+        thrown(IllegalArgumentException)
+        form.sections['First'].groups['Group'].items.isEmpty()
+    }
+
+    def "frozen form is an immutable copy"() {
+        CaseReportForm form = new CaseReportForm(name: 'Form', version: '1', versionDescription: 'Description', revisionNotes: 'Notes')
+        Section section = form.section('Section')
+        Item sex = section.radio('SEX') as Item
+        sex.responseOptions = [new ResponseOption('Male', 'm'), new ResponseOption('Female', 'f')]
+        GridGroup grid = section.grid('Pregnancy')
+        grid.header = 'Pregnancies'
+        Item pregnant = grid.text('PREGNANT') as Item
+        pregnant.conditionalDisplay = new ConditionalDisplay(sex.findResponseOptionByValue('f'), 'Only for women')
+
+        when:
+        CaseReportForm frozen = form.freeze()
+        Section frozenSection = frozen.sections['Section']
+        Item frozenSex = frozen.findItem('SEX')
+        Item frozenPregnant = frozen.findItem('PREGNANT')
+        GridGroup frozenGrid = frozenSection.groups['Pregnancy'] as GridGroup
+
+        then:
+        frozen.frozen
+        !form.frozen
+        frozen.freeze().is(frozen)
+        frozen.name == form.name
+        frozen.sections.keySet().toList() == ['Section']
+        frozenSection.caseReportForm.is(frozen)
+        frozenSection.items.keySet().toList() == ['SEX', 'PREGNANT']
+        frozenSection.items['PREGNANT'].is(frozenPregnant)
+        frozenGrid.header == 'Pregnancies'
+        frozenGrid.items['PREGNANT'].is(frozenPregnant)
+        frozenPregnant.group.is(frozenGrid)
+        frozenPregnant.section.is(frozenSection)
+        !frozenSex.is(sex)
+        frozenSex.responseOptions*.value == ['m', 'f']
+        frozenSex.responseOptions.every { it.item.is(frozenSex) }
+        frozenPregnant.conditionalDisplay.response.is(frozenSex.responseOptions[1])
+        frozenPregnant.simpleConditionalDisplay == pregnant.simpleConditionalDisplay
+        frozenSex.controlledItems == [frozenPregnant] as Set
+        frozen.sections.is(frozen.sections)
+        frozenSection.items.is(frozenSection.items)
+
+        when:
+        sex.responseOptions = [new ResponseOption('Male', 'm')]
+        section.text('LATER')
+
+        then:
+        frozenSex.responseOptions.size() == 2
+        !frozenSection.items.containsKey('LATER')
+        frozen.findItem('LATER') == null
+    }
+
+    @Unroll
+    def "frozen form cannot be modified by #description"() {
+        CaseReportForm form = new CaseReportForm()
+        Section section = form.section('Section')
+        section.group('Group').text('GROUPED')
+        section.grid('Grid')
+        (section.radio('SEX') as Item).responseOptions = [new ResponseOption('Male', 'm')]
+        CaseReportForm frozen = form.freeze()
+
+        when:
+        modification(frozen)
+
+        then:
+        thrown(IllegalStateException)
+
+        where:
+        description             | modification
+        'renaming the form'     | { CaseReportForm it -> it.name = 'Other' }
+        'adding section'        | { CaseReportForm it -> it.section('Other') }
+        'changing section'      | { CaseReportForm it -> it.sections['Section'].title = 'Other' }
+        'adding item'           | { CaseReportForm it -> it.sections['Section'].text('OTHER') }
+        'adding grouped item'   | { CaseReportForm it -> it.sections['Section'].groups['Group'].text('OTHER') }
+        'adding group'          | { CaseReportForm it -> it.sections['Section'].group('Other') }
+        'changing grid'         | { CaseReportForm it -> (it.sections['Section'].groups['Grid'] as GridGroup).repeatMax = 2 }
+        'sorting items'         | { CaseReportForm it -> it.sections['Section'].sortItemsByQuestionNumber() }
+        'changing item'         | { CaseReportForm it -> it.findItem('GROUPED').leftItemText = 'Other' }
+        'changing options'      | { CaseReportForm it -> it.findItem('SEX').responseOptions = [] }
+    }
+
+    @Unroll
+    def "modification count of the section is increased by #description"() {
+        CaseReportForm form = new CaseReportForm()
+        Section section = form.section('Section')
+        section.group('Group').text('GROUPED')
+        section.grid('Grid')
+        (section.radio('SEX') as Item).responseOptions = [new ResponseOption('Male', 'm')]
+        Section other = form.section('Other')
+        long count = section.modificationCount
+        long otherCount = other.modificationCount
+
+        when:
+        modification(form)
+
+        then:
+        section.modificationCount > count
+        other.modificationCount == otherCount
+
+        where:
+        description             | modification
+        'changing section'      | { CaseReportForm it -> it.sections['Section'].title = 'Other' }
+        'adding item'           | { CaseReportForm it -> it.sections['Section'].text('OTHER') }
+        'adding grouped item'   | { CaseReportForm it -> it.sections['Section'].groups['Group'].text('OTHER') }
+        'adding group'          | { CaseReportForm it -> it.sections['Section'].group('Other') }
+        'changing grid'         | { CaseReportForm it -> (it.sections['Section'].groups['Grid'] as GridGroup).repeatMax = 2 }
+        'sorting items'         | { CaseReportForm it -> it.sections['Section'].sortItemsByQuestionNumber() }
+        'sorting grouped items' | { CaseReportForm it -> it.sections['Section'].groups['Group'].sortItemsByQuestionNumber() }
+        'changing item'         | { CaseReportForm it -> it.findItem('GROUPED').leftItemText = 'Other' }
+        'changing options'      | { CaseReportForm it -> it.findItem('SEX').responseOptions = [] }
+    }
+
+    def "frozen form is validated same as the original"() {
+        CaseReportForm form = new CaseReportForm(name: 'Form', version: '')
+        form.section('Section').text('TEXT')
+        Validator validator = Validation.buildDefaultValidatorFactory().validator
+
+        expect:
+        validator.validate(form.freeze())*.propertyPath*.toString().sort() == validator.validate(form)*.propertyPath*.toString().sort()
+    }
+
+    def "build sections in parallel"() {
+        CaseReportForm form = new CaseReportForm(name: 'Form')
+        List<String> labels = (0..<50).collect { "Section $it".toString() }
+        ForkJoinPool pool = new ForkJoinPool(8)
+
+        when:
+        form.buildSections(labels, { Section section ->
+            String prefix = section.label.replace(' ', '_').toUpperCase()
+            Group group = section.group('Group')
+            200.times {
+                if (it % 2) {
+                    group.text("${prefix}_$it")
+                } else {
+                    section.textarea("${prefix}_$it")
+                }
+            }
+        } as CaseReportForm.SectionBuilder, pool)
+
+        then:
+        !form.concurrent
+        form.sections.keySet().toList() == labels
+        form.sections.values().every { Section section ->
+            String prefix = section.label.replace(' ', '_').toUpperCase()
+            section.items.keySet().toList() == (0..<200).collect { "${prefix}_$it".toString() }
+        }
+        labels.size() * 200 == form.sections.values().sum { Section section -> section.items.size() }
+        form.findItem('SECTION_49_199').group.label == 'Group'
+
+        cleanup:
+        pool.shutdown()
+    }
+
+    def "items of the same name cannot be created in different sections built in parallel"() {
+        CaseReportForm form = new CaseReportForm(name: 'Form')
+
+        when:
+        form.buildSections(['First', 'Second'], { Section section ->
+            section.text('SHARED')
+        } as CaseReportForm.SectionBuilder)
+
+        then:
+        IllegalArgumentException e = thrown(IllegalArgumentException)
+        e.message.contains('Item SHARED already exists in section')
+        !form.concurrent
+        form.sections.keySet().toList() == ['First', 'Second']
+    }
+
+    def "new version shares the sections which have not been modified"() {
+        CaseReportForm form = new CaseReportForm(name: 'Form', version: '1')
+        form.section('A').text('A_ITEM')
+        form.section('B').text('B_ITEM')
+        form.section('C').grid('Grid').text('C_ITEM')
+        CaseReportForm first = form.freeze()
+
+        when:
+        CaseReportForm draft = first.newVersion()
+        draft.version = '2'
+        draft.section('B').text('B_NEW').units = 'kg'
+        draft.editItem('C_ITEM').leftItemText = 'Changed'
+        CaseReportForm second = draft.freeze()
+
+        then:
+        !draft.frozen
+        second.frozen
+        second.version == '2'
+        first.version == '1'
+        second.sections.keySet().toList() == ['A', 'B', 'C']
+        second.sections['A'].is(first.sections['A'])
+        !second.sections['B'].is(first.sections['B'])
+        !second.sections['C'].is(first.sections['C'])
+        second.findItem('A_ITEM').is(first.findItem('A_ITEM'))
+        second.findItem('B_NEW').units == 'kg'
+        second.findItem('B_NEW').section.is(second.sections['B'])
+        second.findItem('C_ITEM').leftItemText == 'Changed'
+        second.findItem('C_ITEM').group.is(second.sections['C'].groups['Grid'])
+        first.findItem('B_NEW') == null
+        first.findItem('C_ITEM').leftItemText == null
+
+        when:
+        second.sections['A'].text('OTHER')
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def "items of shared sections are found without copying the sections"() {
+        CaseReportForm form = new CaseReportForm(name: 'Form')
+        form.section('A').text('A_ITEM')
+        form.section('B').text('B_ITEM')
+        CaseReportForm first = form.freeze()
+        CaseReportForm draft = first.newVersion()
+
+        when:
+        Item shared = draft.findItem('A_ITEM')
+
+        then:
+        shared.is(first.findItem('A_ITEM'))
+        draft.sections['A'].is(first.sections['A'])
+
+        when:
+        shared.leftItemText = 'Changed'
+
+        then:
+        thrown(IllegalStateException)
+
+        when:
+        Item edited = draft.editItem('A_ITEM')
+        edited.leftItemText = 'Changed'
+
+        then:
+        !edited.is(shared)
+        draft.findItem('A_ITEM').is(edited)
+        draft.editItem('A_ITEM').is(edited)
+        !draft.sections['A'].is(first.sections['A'])
+        draft.sections['B'].is(first.sections['B'])
+        draft.editItem('MISSING') == null
+        first.findItem('A_ITEM').leftItemText == null
+    }
+
+    def "items of frozen form cannot be edited"() {
+        when:
+        new CaseReportForm(name: 'Form').with { section('A').text('A_ITEM'); it }.freeze().editItem('A_ITEM')
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def "sections bound by conditional display are copied together"() {
+        CaseReportForm form = new CaseReportForm(name: 'Form')
+        Item sex = form.section('A').radio('SEX') as Item
+        sex.responseOptions = [new ResponseOption('Male', 'm'), new ResponseOption('Female', 'f')]
+        form.section('B').text('OTHER')
+        Item pregnant = form.section('C').radio('PREGNANT') as Item
+        pregnant.conditionalDisplay = new ConditionalDisplay(new ResponseOption(sex, 'f', 'Female'), 'Only for women')
+        CaseReportForm first = form.freeze()
+
+        when:
+        CaseReportForm draft = first.newVersion()
+        draft.section('C').items['PREGNANT'].leftItemText = 'Are you pregnant?'
+        CaseReportForm second = draft.freeze()
+
+        then:
+        second.sections['B'].is(first.sections['B'])
+        !second.sections['A'].is(first.sections['A'])
+        second.findItem('PREGNANT').conditionalDisplay.response.is(second.findItem('SEX').responseOptions[1])
+        second.findItem('SEX').controlledItems == [second.findItem('PREGNANT')] as Set
+        first.findItem('SEX').controlledItems == [first.findItem('PREGNANT')] as Set
+    }
+
+    def "items of shared sections cannot be added again in new version"() {
+        CaseReportForm form = new CaseReportForm(name: 'Form')
+        form.section('A').text('A_ITEM')
+        form.section('B').text('B_ITEM')
+
+        when:
+        form.newVersion().section('B').text('A_ITEM')
+
+        then:
+        IllegalArgumentException e = thrown(IllegalArgumentException)
+        e.message.startsWith('Item A_ITEM already exists in section A')
+    }
+
+    def "all the versions stay readable"() {
+        CaseReportForm form = new CaseReportForm(name: 'Form', version: '0')
+        10.times { form.section("S$it").text("ITEM_$it") }
+        List<CaseReportForm> versions = [form.freeze()]
+
+        when:
+        30.times { v ->
+            CaseReportForm draft = versions.last().newVersion()
+            draft.version = "${v + 1}"
+            draft.section("S${v % 10}").text("ITEM_${v % 10}").leftItemText = "Version ${v + 1}"
+            versions << draft.freeze()
+        }
+
+        then:
+        versions.size() == 31
+        versions.every { CaseReportForm version -> (0..<10).every { version.findItem("ITEM_$it") } }
+        versions.last().findItem('ITEM_9').leftItemText == 'Version 30'
+        versions[15].findItem('ITEM_4').leftItemText == 'Version 15'
+        versions[15].findItem('ITEM_5').leftItemText == 'Version 6'
+        versions[0].findItem('ITEM_4').leftItemText == null
+        versions.last().sections['S0'].is(versions[21].sections['S0'])
+    }
+
 }
@@ -0,0 +1,106 @@
+package org.modelcatalogue.crf.model
+
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import javax.validation.ConstraintViolation
+import javax.validation.Validation
+import javax.validation.ValidatorFactory
+import java.util.concurrent.ForkJoinPool
+
+class FormValidatorSpec extends Specification {
+
+    @Shared ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory()
+    @Shared ForkJoinPool pool = new ForkJoinPool(8)
+
+    def cleanupSpec() {
+        pool.shutdown()
+    }
+
+    def "violations are the same as of the validation of the whole form reported once for each object"() {
+        CaseReportForm form = createForm(5, 40)
+
+        when:
+        FormValidator.Report report = new FormValidator(validatorFactory).validate(form)
+        Set<ConstraintViolation<CaseReportForm>> expected = validatorFactory.validator.validate(form)
+
+        then:
+        !report.valid
+        !report.limitReached
+        report.violations.size() < expected.size()
+        report.violations.collect { [System.identityHashCode(it.invalidObject), it.property, it.message] } as Set == expected.collect {
+            String property = it.propertyPath.last().name ?: ''
+            [System.identityHashCode(it.leafBean), property, it.message]
+        } as Set
+    }
+
+    def "violations are reported by sheet and row"() {
+        CaseReportForm form = new CaseReportForm(name: 'Form', version: '1', versionDescription: 'Form', revisionNotes: 'Notes')
+        Section first = form.section('First')
+        first.title = 'First'
+        first.text('FIRST').with { descriptionLabel = 'First'; dataType = DataType.ST }
+        first.group('Group').text('SECOND').with { descriptionLabel = 'Second'; dataType = DataType.ST }
+        Section second = form.section('Second')
+        second.title = 'Second'
+        second.text('THIRD').with { descriptionLabel = 'x' * 4001; dataType = DataType.ST }
+        GridGroup grid = second.grid('Grid')
+        grid.header = 'Grid'
+        grid.repeatNum = 5
+        grid.repeatMax = 2
+
+        when:
+        List<String> violations = new FormValidator(validatorFactory).validate(form).violations*.toString()
+
+        then:
+        violations.size() == 2
+        violations[0].startsWith('Groups[1]: ')
+        violations[1].startsWith('Items[2].descriptionLabel: ')
+    }
+
+    @Unroll
+    def "parallel validation reports the same as sequential with limit #limit"() {
+        CaseReportForm form = createForm(20, 100)
+        FormValidator validator = new FormValidator(validatorFactory)
+
+        when:
+        FormValidator.Report sequential = validator.validate(form, limit, null)
+        FormValidator.Report parallel = validator.validate(form, limit, pool)
+
+        then:
+        parallel.violations*.toString() == sequential.violations*.toString()
+        parallel.limitReached == sequential.limitReached
+        sequential.violations.size() == Math.min(limit, validator.validate(form).violations.size())
+        sequential.limitReached == limit < Integer.MAX_VALUE
+
+        where:
+        limit << [1, 7, 500, Integer.MAX_VALUE]
+    }
+
+    def "error limit must be positive"() {
+        when:
+        new FormValidator(validatorFactory).validate(new CaseReportForm(), 0, null)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private static CaseReportForm createForm(int sections, int items) {
+        CaseReportForm form = new CaseReportForm(name: 'Form', version: '', revisionNotes: 'Notes')
+        sections.times { s ->
+            Section section = form.section("Section $s")
+            section.title = s % 3 ? "Section $s" : 'x' * 2001
+            GridGroup grid = section.grid("Grid_$s")
+            grid.repeatNum = s % 2 ? 3 : 10
+            grid.repeatMax = 5
+            items.times { i ->
+                Item item = (i % 4 ? section : grid).text("ITEM_${s}_$i")
+                item.descriptionLabel = i % 5 ? "Item $i" : null
+                item.dataType = DataType.INT
+                item.widthDecimal = i % 7 ? '5(d)' : '5(2)'
+                item.units = i % 11 ? 'kg' : 'x' * 65
+            }
+        }
+        form
+    }
+}
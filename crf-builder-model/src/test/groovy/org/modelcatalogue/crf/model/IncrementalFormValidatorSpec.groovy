@@ -0,0 +1,193 @@
+package org.modelcatalogue.crf.model
+
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import javax.validation.Validation
+import javax.validation.ValidatorFactory
+
+class IncrementalFormValidatorSpec extends Specification {
+
+    @Shared ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory()
+
+    @Unroll
+    def "report after #description is the same as of the full validation"() {
+        CaseReportForm form = createForm()
+        IncrementalFormValidator validator = new IncrementalFormValidator(form, validatorFactory)
+
+        expect:
+        report(validator.report) == report(new FormValidator(validatorFactory).validate(form))
+
+        when:
+        modification(form)
+        validator.revalidate()
+        List<String> expected = report(new FormValidator(validatorFactory).validate(form))
+
+        then:
+        report(validator.report) == expected
+        validator.violationCount == expected.size()
+        validator.valid == expected.isEmpty()
+
+        where:
+        description             | modification
+        'fixing the form'       | { CaseReportForm it -> it.version = '1' }
+        'breaking the section'  | { CaseReportForm it -> it.sections['First'].title = null }
+        'fixing the grid'       | { CaseReportForm it -> (it.sections['First'].groups['Grid'] as GridGroup).repeatMax = 10 }
+        'breaking the item'     | { CaseReportForm it -> it.findItem('PREGNANT').widthDecimal = '5(2)' }
+        'adding item'           | { CaseReportForm it -> it.sections['Second'].text('OTHER') }
+        'adding section'        | { CaseReportForm it -> it.section('Third').text('THIRD') }
+        'changing options'      | { CaseReportForm it -> it.findItem('SEX').responseOptions = [new ResponseOption('Male', 'm')] }
+    }
+
+    def "only the changed objects and the items they control are validated again"() {
+        CaseReportForm form = createForm()
+        IncrementalFormValidator validator = new IncrementalFormValidator(form, validatorFactory)
+        Item sex = form.findItem('SEX')
+        Item pregnant = form.findItem('PREGNANT')
+
+        expect:
+        validator.revalidate().isEmpty()
+
+        when:
+        sex.units = 'x' * 65
+
+        then:
+        validator.revalidate() == [sex, pregnant] as Set
+        validator.getViolations(sex)*.propertyPath*.toString() == ['units']
+        validator.revalidate().isEmpty()
+
+        when:
+        sex.units = null
+        pregnant.dataType = DataType.ST
+
+        then:
+        validator.revalidate() == [sex, pregnant] as Set
+        validator.getViolations(sex).isEmpty()
+        validator.getViolations(pregnant).isEmpty()
+    }
+
+    def "sections copied by new version replace the shared ones"() {
+        CaseReportForm form = createForm().newVersion()
+        IncrementalFormValidator validator = new IncrementalFormValidator(form, validatorFactory)
+        Item shared = form.sections['Second'].items['PREGNANT']
+
+        expect:
+        form.findItem('PREGNANT').is(shared)
+        validator.revalidate().isEmpty()
+
+        when:
+        form.editItem('PREGNANT').descriptionLabel = null
+        Set<Object> revalidated = validator.revalidate()
+        List<String> expected = report(new FormValidator(validatorFactory).validate(form))
+
+        then:
+        shared in revalidated
+        !form.findItem('PREGNANT').is(shared)
+        form.findItem('PREGNANT') in revalidated
+        validator.getViolations(shared).isEmpty()
+        validator.getViolations(form.findItem('PREGNANT'))*.propertyPath*.toString().contains('descriptionLabel')
+        report(validator.report) == expected
+        validator.violationCount == expected.size()
+    }
+
+    def "generated validators report the same as Bean Validation"() {
+        CaseReportForm form = createForm()
+        IncrementalFormValidator validator = new IncrementalFormValidator(form)
+
+        expect:
+        report(validator.report) == report(new IncrementalFormValidator(createForm(), validatorFactory).report)
+
+        when:
+        form.findItem('SEX').units = 'x' * 65
+        validator.revalidate()
+
+        then:
+        report(validator.report) == report(new FormValidator(validatorFactory).validate(form))
+    }
+
+    def "each validator tracks the changes on its own"() {
+        CaseReportForm form = createForm()
+        IncrementalFormValidator first = new IncrementalFormValidator(form, validatorFactory)
+        IncrementalFormValidator second = new IncrementalFormValidator(form)
+        Item sex = form.findItem('SEX')
+
+        when:
+        sex.units = 'x' * 65
+
+        then:
+        sex in first.revalidate()
+        sex in second.revalidate()
+        first.getViolations(sex)*.propertyPath*.toString() == ['units']
+        second.getViolations(sex)*.propertyPath*.toString() == ['units']
+    }
+
+    def "closed validator no longer tracks the changes"() {
+        CaseReportForm form = createForm()
+        IncrementalFormValidator first = new IncrementalFormValidator(form, validatorFactory)
+        IncrementalFormValidator second = new IncrementalFormValidator(form, validatorFactory)
+        int violationCount = first.violationCount
+
+        when:
+        first.close()
+        form.version = '1'
+
+        then:
+        first.violationCount == violationCount
+        form in second.revalidate()
+
+        when:
+        first.revalidate()
+
+        then:
+        thrown(IllegalStateException)
+
+        when:
+        second.close()
+        second.close()
+
+        then:
+        form.@trackers.length == 0
+    }
+
+    def "frozen form cannot be validated incrementally"() {
+        when:
+        new IncrementalFormValidator(createForm().freeze(), validatorFactory)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private static CaseReportForm createForm() {
+        CaseReportForm form = new CaseReportForm(name: 'Form', version: '', versionDescription: 'Form', revisionNotes: 'Notes')
+
+        Section first = form.section('First')
+        first.title = 'First'
+        Item sex = first.radio('SEX')
+        sex.descriptionLabel = 'Sex'
+        sex.dataType = DataType.ST
+        sex.responseOptions = [new ResponseOption('Male', 'm'), new ResponseOption('Female', 'f')]
+        GridGroup grid = first.grid('Grid')
+        grid.header = 'Grid'
+        grid.repeatNum = 5
+        grid.repeatMax = 2
+        Item gridded = grid.text('GRIDDED')
+        gridded.descriptionLabel = 'Gridded'
+        gridded.dataType = DataType.INT
+
+        Section second = form.section('Second')
+        second.title = 'Second'
+        Item pregnant = second.radio('PREGNANT')
+        pregnant.descriptionLabel = 'Pregnant'
+        pregnant.dataType = DataType.DATE
+        pregnant.widthDecimal = '5(d)'
+        pregnant.responseOptions = [new ResponseOption('Yes', '1'), new ResponseOption('No', '0')]
+        pregnant.conditionalDisplay = new ConditionalDisplay(sex.findResponseOptionByValue('f'), 'Only for women')
+
+        form
+    }
+
+    private static List<String> report(FormValidator.Report report) {
+        report.violations*.toString()
+    }
+}
@@ -56,6 +56,136 @@ class ItemSpec extends Specification {
         item.responseValuesOrCalculations == ',m,f'
     }
 
+    def "response options are kept as immutable list"() {
+        Item item = new Item(ResponseType.RADIO)
+        List<ResponseOption> options = [
+                new ResponseOption('Please, select', ''),
+                new ResponseOption('Male', 'm'),
+                new ResponseOption('Female', 'f')
+        ]
+        item.responseOptions = options
+        options.clear()
+
+        expect:
+        item.responseOptions.is(item.responseOptions)
+        item.responseOptions*.text == ['Please, select', 'Male', 'Female']
+        item.responseOptions*.value == ['', 'm', 'f']
+        item.responseOptions.every { it.item == item }
+        item.findResponseOptionByValue('f').is(item.responseOptions[2])
+        item.findResponseOptionByText('Please, select').is(item.responseOptions[0])
+        item.findResponseOptionByValue('x') == null
+        item.responseOptionsText.is(item.responseOptionsText)
+
+        when:
+        item.responseOptions.add(new ResponseOption('Other', 'o'))
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    def "item without response options"() {
+        Item item = new Item(ResponseType.CALCULATION)
+        item.calculation = 'sum(A, B)'
+
+        expect:
+        item.responseOptions.isEmpty()
+        item.findResponseOptionByValue('sum(A') == null
+        item.responseOptionsText == 'calculation'
+        item.responseValuesOrCalculations == 'sum(A, B)'
+    }
+
+    def "response options must have text and value"() {
+        Item item = new Item(ResponseType.RADIO)
+
+        when:
+        item.responseOptions = [new ResponseOption('Male', null)]
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "encoded response options are validated"() {
+        Errors errors = ValidationHelper.validate(Item, responseType: ResponseType.RADIO, responseOptions: [new ResponseOption('x' * 4001, '1')])
+
+        expect:
+        errors.getFieldError('responseOptionsText')?.code == 'Size'
+        !errors.getFieldError('responseValuesOrCalculations')
+    }
+
+    def "conditional display references the current response option"() {
+        CaseReportForm form = new CaseReportForm()
+        Item sex = form.section('First').radio('SEX') as Item
+        sex.responseOptions = [new ResponseOption('Male', 'm'), new ResponseOption('Female', 'f')]
+        Item pregnant = form.section('Second').radio('PREGNANT') as Item
+
+        when:
+        pregnant.conditionalDisplay = new ConditionalDisplay(new ResponseOption(sex, 'f', 'Woman'), 'Only for women')
+
+        then:
+        pregnant.simpleConditionalDisplay == 'SEX,f,Only for women'
+        pregnant.conditionalDisplay.is(pregnant.conditionalDisplay)
+        pregnant.conditionalDisplay.response.is(sex.responseOptions[1])
+        pregnant.conditionalDisplay.message == 'Only for women'
+        sex.controlledItems == [pregnant] as Set
+
+        when:
+        sex.responseOptions = [new ResponseOption('Female', 'f'), new ResponseOption('Male', 'm')]
+
+        then:
+        pregnant.conditionalDisplay.response.is(sex.responseOptions[0])
+        pregnant.simpleConditionalDisplay == 'SEX,f,Only for women'
+
+        when:
+        pregnant.conditionalDisplay = null
+
+        then:
+        pregnant.conditionalDisplay == null
+        pregnant.simpleConditionalDisplay == null
+        sex.controlledItems.isEmpty()
+    }
+
+    def "rejected conditional display keeps the controlled items intact"() {
+        CaseReportForm form = new CaseReportForm()
+        Item sex = form.section('First').radio('SEX') as Item
+        sex.responseOptions = [new ResponseOption('Male', 'm'), new ResponseOption('Female', 'f')]
+        Item pregnant = form.section('Second').radio('PREGNANT') as Item
+        pregnant.conditionalDisplay = new ConditionalDisplay(new ResponseOption(sex, 'f', 'Woman'), 'Only for women')
+        Item frozenSex = form.freeze().findItem('SEX')
+
+        when:
+        pregnant.conditionalDisplay = new ConditionalDisplay(new ResponseOption(frozenSex, 'm', 'Man'), 'Only for men')
+
+        then:
+        thrown(IllegalArgumentException)
+        pregnant.conditionalDisplay.response.is(sex.responseOptions[1])
+        pregnant.simpleConditionalDisplay == 'SEX,f,Only for women'
+        sex.controlledItems == [pregnant] as Set
+        !frozenSex.controlledItems.any { it.is(pregnant) }
+    }
+
+    def "conditional display is resolved again when the controlling item becomes calculation and back"() {
+        CaseReportForm form = new CaseReportForm()
+        Item score = form.section('First').calculation('SCORE') as Item
+        score.responseOptions = [new ResponseOption('Low', '1'), new ResponseOption('High', '2')]
+        Item comment = form.section('First').text('COMMENT') as Item
+        comment.conditionalDisplay = new ConditionalDisplay(new ResponseOption(score, '2', 'High'), 'Only for high score')
+
+        when:
+        score.calculation = 'A + B'
+
+        then:
+        score.responseOptions.isEmpty()
+        comment.conditionalDisplay.response.value == '2'
+        score.controlledItems == [comment] as Set
+
+        when:
+        score.responseOptions = [new ResponseOption('High', '2')]
+
+        then:
+        comment.conditionalDisplay.response.is(score.responseOptions[0])
+        comment.simpleConditionalDisplay == 'SCORE,2,Only for high score'
+    }
+
     def "test supported value failed"() {
         Errors errors = ValidationHelper.validate(Item, defaultValue: "Foo", responseType: ResponseType.FILE)
 
@@ -113,6 +243,9 @@ class ItemSpec extends Specification {
         '4(d)'    | true  | DataType.INT
         '27(d)'   | false | DataType.INT
         '4(2)'    | true  | DataType.REAL
+        '10(2)'   | true  | DataType.REAL
+        '27(2)'   | false | DataType.REAL
+        'w(4)'    | true  | DataType.REAL
         '2(4)'    | false | DataType.REAL
         '4(d)'    | true  | DataType.REAL
         'w(d)'    | true  | DataType.REAL
@@ -122,6 +255,71 @@ class ItemSpec extends Specification {
         '4001(d)' | false | DataType.ST
     }
 
+    @Unroll
+    def "compact item keeps #property set to #value"() {
+        Item item = new Item(ResponseType.TEXT)
+        item.header = 'Header'
+        item.defaultValue = 'Default'
+        item.phi = 1
+
+        when:
+        item[property] = value
+
+        then:
+        item[property] == value
+        item.header == (property == 'header' ? value : 'Header')
+        item.defaultValue == (property == 'defaultValue' ? value : 'Default')
+        item.phi == (property == 'phi' ? value : 1)
+
+        where:
+        property                | value
+        'rightItemText'         | 'Right'
+        'header'                | null
+        'subheader'             | 'Subheader'
+        'columnNumber'          | 3
+        'defaultValue'          | null
+        'widthDecimal'          | '5(d)'
+        'phi'                   | 0
+        'phi'                   | null
+        'phi'                   | 42
+        'required'              | 1
+        'required'              | -1
+        'dataType'              | DataType.PDATE
+        'dataType'              | null
+        'displayStatus'         | DisplayStatus.HIDE
+        'displayStatus'         | null
+        'responseLayout'        | ResponseLayout.VERTICAL
+    }
+
+    def "invalid flags are kept for the validation"() {
+        Errors errors = ValidationHelper.validate(Item, phi: 2, required: -1, columnNumber: 0, displayStatus: null)
 
+        expect:
+        errors.getFieldError('phi')?.code == 'Max'
+        errors.getFieldError('required')?.code == 'Min'
+        errors.getFieldError('columnNumber')?.code == 'Min'
+        errors.getFieldError('displayStatus')?.code == 'NotNull'
+    }
+
+    def "repeated values are shared by the items of the form"() {
+        CaseReportForm form = new CaseReportForm()
+        Item first = form.section('First').text('FIRST') as Item
+        Item second = form.section('Second').text('SECOND') as Item
+
+        when:
+        [first, second].each {
+            it.units = new String('kg')
+            it.widthDecimal = new String('5(d)')
+            it.validationExpression = new ValidationExpression(new String('gt(0)'), new String('Must be positive'))
+        }
+
+        then:
+        first.units == 'kg'
+        first.units.is(second.units)
+        first.widthDecimal.is(second.widthDecimal)
+        first.validation.is(second.validation)
+        first.validationErrorMessage.is(second.validationErrorMessage)
+        form.freeze().findItem('SECOND').units.is(first.units)
+    }
 
 }
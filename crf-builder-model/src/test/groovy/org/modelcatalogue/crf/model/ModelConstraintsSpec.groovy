@@ -0,0 +1,136 @@
+package org.modelcatalogue.crf.model
+
+import org.modelcatalogue.crf.model.validation.ValidationExpression
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import javax.validation.ConstraintViolation
+import javax.validation.ElementKind
+import javax.validation.Path
+import javax.validation.Validation
+import javax.validation.Validator
+import javax.validation.ValidatorFactory
+
+class ModelConstraintsSpec extends Specification {
+
+    @Shared ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory()
+    @Shared Validator validator = FormValidator.createNonCascadingValidator(validatorFactory)
+
+    @Unroll
+    def "generated validators report the same violations as Bean Validation for #description"() {
+        Object object = factory()
+
+        when:
+        Set<List<Object>> violations = describe(ModelConstraints.validate(object))
+
+        then:
+        violations == describe(validator.validate(object))
+        violations.size() == expected
+
+        where:
+        description         | expected | factory
+        'empty form'        | 5        | { new CaseReportForm() }
+        'valid form'        | 0        | { createForm() }
+        'invalid form'      | 3        | { new CaseReportForm(name: 'Form?', version: 'x' * 256, versionDescription: '', revisionNotes: 'Notes').with { section('First'); it } }
+        'valid section'     | 0        | { createForm().sections['First'] }
+        'invalid section'   | 4        | { createForm().section('Second').with { subtitle = 'x' * 2001; instructions = 'x' * 2001; pageNumber = '123456'; it } }
+        'valid group'       | 0        | { createForm().sections['First'].group('Group') }
+        'invalid group'     | 2        | { createForm().sections['First'].group('Group?').with { displayStatus = null; it } }
+        'valid grid'        | 0        | { createForm().sections['First'].grid('Grid').with { header = 'Grid'; repeatNum = 2; repeatMax = 5; it } }
+        'invalid grid'      | 4        | { createForm().sections['First'].grid('Grid').with { header = ''; repeatNum = 0; repeatMax = -1; it } }
+        'valid item'        | 0        | { createForm().sections['First'].items['FIRST'] }
+        'invalid item'      | 19       | { createInvalidItem() }
+    }
+
+    def "violations of the whole form are the same as reported using Bean Validation"() {
+        CaseReportForm form = createForm()
+        form.version = ''
+        createInvalidItem(form)
+        form.sections['First'].grid('Grid').with { header = 'Grid'; repeatNum = 5; repeatMax = 2 }
+
+        when:
+        FormValidator.Report report = new FormValidator().validate(form)
+
+        then:
+        report.violations*.toString() == new FormValidator(validatorFactory).validate(form).violations*.toString()
+        report.violations.size() == 21
+    }
+
+    def "violations are reported against the object itself"() {
+        GridGroup grid = createForm().sections['First'].grid('Grid')
+        grid.repeatNum = 5
+        grid.repeatMax = 2
+
+        when:
+        List<ConstraintViolation<Object>> violations = ModelConstraints.validate(grid)
+        ConstraintViolation<Object> header = violations.find { it.propertyPath.toString() == 'header' }
+        ConstraintViolation<Object> repeat = violations.find { it.propertyPath.toString() == '' }
+
+        then:
+        violations.size() == 2
+
+        header.rootBean.is grid
+        header.leafBean.is grid
+        header.rootBeanClass == GridGroup
+        header.invalidValue == null
+        header.message == 'may not be null'
+        header.propertyPath.size() == 1
+        header.propertyPath.first().name == 'header'
+        header.propertyPath.first().kind == ElementKind.PROPERTY
+        header.propertyPath.first().as(Path.PropertyNode)
+
+        repeat.invalidValue.is grid
+        repeat.message == 'Maximum number of repeats must be greater or equal to repeat count.'
+        repeat.propertyPath.first().name == null
+        repeat.propertyPath.first().kind == ElementKind.BEAN
+        repeat.propertyPath.first().as(Path.BeanNode)
+    }
+
+    def "objects without constraints have no violations"() {
+        expect:
+        ModelConstraints.validate(new ResponseOption('Male', 'm')).isEmpty()
+    }
+
+    def "null cannot be validated"() {
+        when:
+        ModelConstraints.validate(null)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private static Set<List<Object>> describe(Collection<? extends ConstraintViolation<?>> violations) {
+        violations.collect { [it.propertyPath.toString(), it.message, it.invalidValue] } as Set
+    }
+
+    private static CaseReportForm createForm() {
+        CaseReportForm form = new CaseReportForm(name: 'Form', version: '1', versionDescription: 'Form', revisionNotes: 'Notes')
+        Section section = form.section('First')
+        section.title = 'First'
+        section.text('FIRST').with { descriptionLabel = 'First'; dataType = DataType.ST; widthDecimal = '20(d)' }
+        form
+    }
+
+    private static Item createInvalidItem(CaseReportForm form = createForm()) {
+        Item item = form.sections['First'].text('INVALID NAME') as Item
+        item.with {
+            dataType = DataType.FILE
+            leftItemText = 'x' * 2001
+            rightItemText = 'x' * 2001
+            units = 'x' * 65
+            header = 'x' * 2001
+            subheader = 'x' * 241
+            columnNumber = 0
+            pageNumber = '1?'
+            questionNumber = '1?'
+            responseLabel = 'label?'
+            defaultValue = 'x' * 4001
+            widthDecimal = '20'
+            validationExpression = new ValidationExpression('x' * 1001, '')
+            phi = 2
+            required = -1
+        }
+        item
+    }
+}
@@ -0,0 +1,89 @@
+package org.modelcatalogue.crf.model
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class QuestionNumberSpec extends Specification {
+
+    @Unroll
+    def "#first goes before #second"() {
+        expect:
+        QuestionNumber.parse(first) < QuestionNumber.parse(second)
+        QuestionNumber.parse(second) > QuestionNumber.parse(first)
+
+        where:
+        first       | second
+        '1'         | '2'
+        '2'         | '10'
+        '2'         | '2.1'
+        '2.1'       | '2.1a'
+        '2.1a'      | '2.b'
+        '2.b'       | '10'
+        '4'         | '4a'
+        '4a'        | '4b'
+        '10.a'      | '10.b'
+        '1.2.3'     | '1.2.10'
+        '1.2.3'     | '1.10'
+        '9'         | '12345678901234567890'
+        '1.2'       | '1.2.0'
+    }
+
+    @Unroll
+    def "#first is same position as #second"() {
+        expect:
+        QuestionNumber.parse(first).compareTo(QuestionNumber.parse(second)) == 0
+
+        where:
+        first       | second
+        '2'         | '02'
+        ' 3.1 '     | '3.1'
+        '0'         | '000'
+    }
+
+    def "sort items in many sequences"() {
+        Section section = new Section()
+        List<String> numbers = ['1', '2', '1', '2', '1', '2', '1', '2']
+        numbers.eachWithIndex { String number, int i ->
+            section.text("ITEM_$i").questionNumber = number
+        }
+
+        when:
+        section.sortItemsByQuestionNumber()
+
+        then:
+        section.items.keySet().toList() == (0..7).collect { "ITEM_$it".toString() }
+    }
+
+    def "sort items with letters and deeper levels"() {
+        Section section = new Section()
+        section.text('TEN_B').questionNumber = '10.b'
+        section.text('FOUR_A').questionNumber = '4a'
+        section.text('FOUR_A_COMMENT')
+        section.text('ONE_TWO_THREE').questionNumber = '1.2.3'
+        section.text('TEN_A').questionNumber = '10.a'
+        section.text('FOUR').questionNumber = '4'
+        section.text('ONE_TWO').questionNumber = '1.2'
+        section.text('FOUR_AGAIN').questionNumber = '04'
+
+        when:
+        section.sortItemsByQuestionNumber()
+
+        then:
+        section.items.keySet().toList() == ['ONE_TWO', 'ONE_TWO_THREE', 'FOUR', 'FOUR_AGAIN', 'FOUR_A', 'FOUR_A_COMMENT', 'TEN_A', 'TEN_B']
+    }
+
+    def "sort large section"() {
+        Section section = new Section()
+        Random random = new Random(42)
+        20000.times {
+            section.text("ITEM_$it").questionNumber = "${random.nextInt(100)}.${it}"
+        }
+
+        when:
+        section.sortItemsByQuestionNumber()
+
+        then:
+        section.items.size() == 20000
+        section.items.values().collect { QuestionNumber.parse(it.questionNumber) }.collate(2, 1, false).every { it[0] < it[1] }
+    }
+}
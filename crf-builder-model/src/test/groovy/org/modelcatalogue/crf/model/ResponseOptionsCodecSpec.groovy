@@ -0,0 +1,47 @@
+package org.modelcatalogue.crf.model
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ResponseOptionsCodecSpec extends Specification {
+
+    @Unroll
+    def "decode '#string' same as the regular expressions"() {
+        expect:
+        ResponseOptionsCodec.decode(string) == regexDecode(string)
+
+        where:
+        string << [
+                '', ' ', ',', ',,', ', ,', 'a', 'a,b', 'a , b', 'a ,  ,b', ' a , b ', 'a,', 'a, ', 'a,,', ',a',
+                'a\\\\,b,c', 'a\\,b', 'a\\\\, b , c\\\\,', 'a \\\\,b', 'a\\ ,b', '\\\\,', 'a\t,\nb', '\\\\\\,x', 'a\\\\,'
+        ]
+    }
+
+    def "decode random strings same as the regular expressions"() {
+        Random random = new Random(42)
+        char[] alphabet = ['a', 'b', ',', ' ', '\\', '\t'] as char[]
+
+        expect:
+        (1..5000).every {
+            StringBuilder string = new StringBuilder()
+            random.nextInt(12).times { string.append(alphabet[random.nextInt(alphabet.length)]) }
+            ResponseOptionsCodec.decode(string.toString()) == regexDecode(string.toString())
+        }
+    }
+
+    @Unroll
+    def "encode #options same as the regular expressions and decode back"() {
+        String encoded = ResponseOptionsCodec.encode(options)
+
+        expect:
+        encoded == options.collect { it.replaceAll(',', '\\\\\\\\,') }.join(',')
+        ResponseOptionsCodec.decode(encoded) == options
+
+        where:
+        options << [['a'], ['a', 'b'], ['a,b', 'c'], ['Please, select', '', 'x'], [',', ',,'], ['a,b,c,d']]
+    }
+
+    private static List<String> regexDecode(String options) {
+        options.split('\\s*(?<!\\\\),\\s*').collect { it.replaceAll('\\\\\\\\,', ',') }
+    }
+}
@@ -0,0 +1,67 @@
+package org.modelcatalogue.crf.model
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class WidthDecimalSpec extends Specification {
+
+    @Unroll
+    def "#value is parsed to width #width and decimal #decimal"() {
+        WidthDecimal widthDecimal = WidthDecimal.parse(value)
+
+        expect:
+        widthDecimal.width == width
+        widthDecimal.decimal == decimal
+        widthDecimal.toString() == value
+        widthDecimal == WidthDecimal.of(width, decimal)
+        WidthDecimal.isWellFormed(value)
+
+        where:
+        value       | width                     | decimal
+        'w(d)'      | WidthDecimal.UNSPECIFIED  | WidthDecimal.UNSPECIFIED
+        '20(d)'     | 20                        | WidthDecimal.UNSPECIFIED
+        'w(4)'      | WidthDecimal.UNSPECIFIED  | 4
+        '10(2)'     | 10                        | 2
+        '4000(d)'   | 4000                      | WidthDecimal.UNSPECIFIED
+    }
+
+    @Unroll
+    def "#value is not well formed"() {
+        expect:
+        WidthDecimal.parse(value) == null
+        !WidthDecimal.isWellFormed(value)
+        !WidthDecimal.isValid(value, DataType.ST)
+
+        where:
+        value << [null, '', 'w', '(d)', 'w()', '5(d', '5d)', '5(d))', ' 5(d)', '5 (d)', '10000(d)', '5(12345)', 'x(d)', 'w(x)', '-5(d)']
+    }
+
+    @Unroll
+    def "#value is valid=#valid for #type"() {
+        expect:
+        WidthDecimal.isValid(value, type) == valid
+        WidthDecimal.parse(value).isValidFor(type) == valid
+
+        where:
+        value       | type              | valid
+        '26(d)'     | DataType.INT      | true
+        '0(d)'      | DataType.INT      | false
+        '26(2)'     | DataType.INT      | false
+        '4000(d)'   | DataType.ST       | true
+        '10(2)'     | DataType.REAL     | true
+        '26(20)'    | DataType.REAL     | true
+        '27(2)'     | DataType.REAL     | false
+        '26(21)'    | DataType.REAL     | false
+        'w(20)'     | DataType.REAL     | true
+        '5(d)'      | DataType.DATE     | false
+        '5(d)'      | null              | false
+    }
+
+    def "negative width is rejected"() {
+        when:
+        WidthDecimal.of(-2, 1)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
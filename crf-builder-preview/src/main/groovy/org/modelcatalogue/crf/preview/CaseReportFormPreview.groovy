@@ -7,10 +7,12 @@ import org.modelcatalogue.crf.model.DisplayStatus
 import org.modelcatalogue.crf.model.GridGroup
 import org.modelcatalogue.crf.model.Group
 import org.modelcatalogue.crf.model.Item
+import org.modelcatalogue.crf.model.ModelConstraints
 import org.modelcatalogue.crf.model.ResponseLayout
 import org.modelcatalogue.crf.model.ResponseOption
 import org.modelcatalogue.crf.model.ResponseType
 import org.modelcatalogue.crf.model.Section
+import org.modelcatalogue.crf.model.WidthDecimal
 
 import javax.validation.ConstraintViolation
 import javax.validation.Validation
@@ -28,6 +30,10 @@ class CaseReportFormPreview {
     void write(OutputStream out) {
         StreamingMarkupBuilder markupBuilder = new StreamingMarkupBuilder()
 
+        // violations of the objects already validated within this render, the grid items are validated once
+        // for the header and once for every repeated row
+        Map<Object, Set<ConstraintViolation>> validated = new IdentityHashMap<Object, Set<ConstraintViolation>>()
+
         out <<  markupBuilder.bind { builder ->
             mkp.yieldUnescaped '<!DOCTYPE html>'
             html(lang:'en') {
@@ -93,7 +99,7 @@ class CaseReportFormPreview {
                             }
                         }
 
-                        renderViolations(builder, validate(caseReportForm))
+                        renderViolations(builder, validate(validated, caseReportForm))
 
                         ul(class: 'nav nav-tabs', role: 'tablist') {
                             for (Section section in caseReportForm.sections.values()) {
@@ -115,11 +121,11 @@ class CaseReportFormPreview {
                                 }
                                 div(args) {
                                     div(class: "col-md-12") {
-                                        renderViolations(builder, validate(section))
+                                        renderViolations(builder, validate(validated, section))
 
                                         for (Group group in section.groups.values()) {
                                             if (!(group instanceof GridGroup)) {
-                                                Set<ConstraintViolation> errors = validate(group)
+                                                Set<ConstraintViolation> errors = validate(validated, group)
                                                 if (errors) {
                                                     div(class: 'alert alert-danger', "There are errors in $group.label group")
                                                     renderViolations(builder, errors)
@@ -153,7 +159,7 @@ class CaseReportFormPreview {
                                                         }
                                                     }
                                                 }
-                                                renderViolations(builder, validate(grid))
+                                                renderViolations(builder, validate(validated, grid))
                                             }
 
                                             if (item.header) {
@@ -182,7 +188,7 @@ class CaseReportFormPreview {
                                                     thead {
                                                         tr {
                                                             for (Item gridItem in grid.items.values()) {
-                                                                Set<ConstraintViolation> violations = validate(gridItem)
+                                                                Set<ConstraintViolation> violations = validate(validated, gridItem)
                                                                 th(addDataItemPopover(gridItem, violations, class: getCellClassForCount(grid.items.size()))) {
                                                                     div (class: violations ? 'form-group has-feedback has-error' : 'form-group'){
                                                                         renderLabel(builder, gridItem, 'col-md-12')
@@ -195,7 +201,7 @@ class CaseReportFormPreview {
                                                         (grid.repeatNum ?: 1).times {
                                                             builder.tr {
                                                                 for (Item gridItem in grid.items.values()) {
-                                                                    Set<ConstraintViolation> violations = validate(gridItem)
+                                                                    Set<ConstraintViolation> violations = validate(validated, gridItem)
                                                                     td class: getCellClassForCount(grid.items.size()), {
                                                                         div (class: violations ? 'form-group has-feedback has-error' : 'form-group'){
                                                                             renderInput(builder, gridItem, 'col-md-9')
@@ -221,7 +227,7 @@ class CaseReportFormPreview {
                                             div(class: getCellClassForCount(count)) {
                                                 form(class: 'form-horizontal') {
                                                     String itemClass = 'form-group form-group-sm'
-                                                    Set<ConstraintViolation> violations = validate(item)
+                                                    Set<ConstraintViolation> violations = validate(validated, item)
                                                     if (violations) {
                                                         itemClass = "$itemClass has-feedback has-error"
                                                     }
@@ -268,21 +274,41 @@ class CaseReportFormPreview {
         }
     }
 
-    private static Set<ConstraintViolation> validate(Object what) {
-        try {
-            Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
-            return validator.validate(what).findAll { it.rootBean == it.leafBean }
-        } catch (e) {
-            System.err.println """
-                Cannot create validator: $e
-                Is there any Java Validation API implementation present in your application?
-
-                You can add for example following libaries to you project to enable validaton:
-                    compile 'javax.el:javax.el-api:2.2.5'
-                    compile 'org.glassfish.web:javax.el:2.2.4'
-                    compile 'org.hibernate:hibernate-validator:5.1.3.Final'
-            """.stripIndent().trim()
-            return Collections.emptySet()
+    private static Set<ConstraintViolation> validate(Map<Object, Set<ConstraintViolation>> validated, Object what) {
+        Set<ConstraintViolation> result = validated.get(what)
+        if (result == null) {
+            Validator validator = ValidatorHolder.VALIDATOR
+            // without any provider the constraints are checked by the validators generated for the model
+            result = validator ? validator.validate(what).findAll { it.rootBean == it.leafBean } : new LinkedHashSet<ConstraintViolation>(ModelConstraints.validate(what))
+            validated.put(what, result)
+        }
+        return result
+    }
+
+    /**
+     * Holds the validator shared by all the previews, it is created with the first preview rendered. Bootstrapping
+     * the validation provider is much more expensive than rendering the whole form.
+     */
+    private static class ValidatorHolder {
+
+        static final Validator VALIDATOR = createValidator()
+
+        private static Validator createValidator() {
+            try {
+                return Validation.buildDefaultValidatorFactory().getValidator()
+            } catch (e) {
+                System.err.println """
+                    Cannot create validator: $e
+                    Is there any Java Validation API implementation present in your application?
+                    The constraints are checked without it, the messages are always in English.
+
+                    You can add for example following libaries to you project to use Bean Validation:
+                        compile 'javax.el:javax.el-api:2.2.5'
+                        compile 'org.glassfish.web:javax.el:2.2.4'
+                        compile 'org.hibernate:hibernate-validator:5.1.3.Final'
+                """.stripIndent().trim()
+                return null
+            }
         }
     }
 
@@ -447,9 +473,9 @@ class CaseReportFormPreview {
             } else if (item.dataType == DataType.INT) {
                 builder << '<span class="fa fa-fw fa-hashtag"></span> The number can contain <code>' << item.widthDecimal[0..-4] << '</code> digits\n'
             } else if (item.dataType == DataType.REAL) {
-                def match = item.widthDecimal =~ /(\d+)\((\d+)\)/
-                if (match) {
-                    builder << '<span class="fa fa-fw fa-hashtag"></span> The number can contain <code>' << match[0][1] << '</code> digits (with <code>' << match[0][2] << ' digit(s) after decimal point.</code> \n'
+                WidthDecimal widthDecimal = WidthDecimal.parse(item.widthDecimal)
+                if (widthDecimal?.hasWidth() && widthDecimal.hasDecimal()) {
+                    builder << '<span class="fa fa-fw fa-hashtag"></span> The number can contain <code>' << widthDecimal.width << '</code> digits (with <code>' << widthDecimal.decimal << ' digit(s) after decimal point.</code> \n'
                 }
             }
         }
@@ -3,6 +3,9 @@ package org.modelcatalogue.crf.preview
 import org.jsoup.Jsoup
 import org.jsoup.nodes.Document
 import org.modelcatalogue.crf.model.CaseReportForm
+import org.modelcatalogue.crf.model.DataType
+import org.modelcatalogue.crf.model.Item
+import org.modelcatalogue.crf.model.Section
 import org.modelcatalogue.crf.serializer.CaseReportFormSerializer
 import spock.lang.Specification
 import spock.lang.Unroll
@@ -60,4 +63,45 @@ class CaseReportFormPreviewSpec extends Specification {
         8       | 'invalid'
     }
 
+    def "violations are not kept between the renders"() {
+        CaseReportForm form = CaseReportForm.load(new File(CaseReportFormPreviewSpec.getResource('invalid.crf').toURI()))
+        CaseReportFormPreview preview = new CaseReportFormPreview(form)
+
+        expect:
+        render(preview).select('.alert-danger').size() == 8
+        render(preview).select('.alert-danger').size() == 8
+
+        when:
+        form.revisionNotes = null
+
+        then:
+        render(preview).select('.alert-danger').size() == 9
+    }
+
+    def "width of #dataType is shown for #widthDecimal"() {
+        CaseReportForm form = new CaseReportForm(name: 'Form', version: '1', versionDescription: 'Form', revisionNotes: 'Notes')
+        Section section = form.section('Section')
+        section.title = 'Section'
+        Item item = section.text('VALUE')
+        item.dataType = dataType
+        item.widthDecimal = widthDecimal
+
+        expect:
+        Jsoup.parse(render(new CaseReportFormPreview(form)).select('[data-content]').first().attr('data-content')).text().contains(text)
+
+        where:
+        dataType        | widthDecimal  | text
+        DataType.ST     | '20(d)'       | 'The string can contain up to 20 characters'
+        DataType.INT    | '5(d)'        | 'The number can contain 5 digits'
+        DataType.INT    | '5(0)'        | 'The number can contain 5 digits'
+        DataType.INT    | '12345(d)'    | 'The number can contain 12345 digits'
+        DataType.REAL   | '10(2)'       | 'The number can contain 10 digits (with 2 digit(s) after decimal point.'
+    }
+
+    private static Document render(CaseReportFormPreview preview) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream()
+        preview.write(out)
+        Jsoup.parse(out.toString())
+    }
+
 }
@@ -0,0 +1,245 @@
+package org.modelcatalogue.crf.processor;
+
+import javax.lang.model.element.TypeElement;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * The constraints of single model type compiled into the checks and the source of the validator generated for it.
+ */
+final class ConstrainedType {
+
+    static final String VIOLATION = "ModelConstraintViolation";
+    static final String SUFFIX = "Constraints";
+
+    /**
+     * Single check of the constraint.
+     */
+    static final class Check {
+
+        /**
+         * Java expression which is true if the value is not valid.
+         */
+        final String invalid;
+        final String message;
+
+        Check(String invalid, String message) {
+            this.invalid = invalid;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Property with at least one constraint.
+     */
+    static final class Property {
+
+        final String name;
+        final String accessor;
+        final String type;
+        final List<Check> checks = new ArrayList<Check>();
+
+        Property(String name, String accessor, String type) {
+            this.name = name;
+            this.accessor = accessor;
+            this.type = type;
+        }
+
+        String getVariable() {
+            return name + "Value";
+        }
+    }
+
+    final TypeElement type;
+    final int depth;
+    final Map<String, Property> properties = new LinkedHashMap<String, Property>();
+    final List<Check> typeChecks = new ArrayList<Check>();
+
+    /**
+     * Compiled patterns and validator instances shared by the checks, keyed by the regular expression or by the class.
+     */
+    private final Map<String, String> patterns = new LinkedHashMap<String, String>();
+    private final Map<String, String> validators = new LinkedHashMap<String, String>();
+
+    ConstrainedType(TypeElement type, int depth) {
+        this.type = type;
+        this.depth = depth;
+    }
+
+    boolean isEmpty() {
+        if (!typeChecks.isEmpty()) {
+            return false;
+        }
+        for (Property property : properties.values()) {
+            if (!property.checks.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String getSimpleName() {
+        return type.getSimpleName().toString();
+    }
+
+    String getValidatorName() {
+        return getSimpleName() + SUFFIX;
+    }
+
+    /**
+     * @return name of the constant holding the compiled pattern
+     */
+    String pattern(String regexp) {
+        String name = patterns.get(regexp);
+        if (name == null) {
+            name = "PATTERN_" + patterns.size();
+            patterns.put(regexp, name);
+        }
+        return name;
+    }
+
+    /**
+     * @return name of the constant holding the instance of the constraint validator
+     */
+    String validator(String className) {
+        String name = validators.get(className);
+        if (name == null) {
+            name = toConstantName(className.substring(className.lastIndexOf('.') + 1));
+            validators.put(className, name);
+        }
+        return name;
+    }
+
+    void write(String packageName, Writer writer) throws IOException {
+        String simpleName = getSimpleName();
+        String violations = "java.util.List<javax.validation.ConstraintViolation<Object>>";
+
+        writer.write("package " + packageName + ";\n\n");
+        writer.write("/**\n");
+        writer.write(" * Checks the constraints of {@link " + simpleName + "} without reflection.\n");
+        writer.write(" *\n");
+        writer.write(" * Generated by " + ConstraintsProcessor.class.getName() + " from the constraint annotations, do not edit.\n");
+        writer.write(" */\n");
+        writer.write("final class " + getValidatorName() + " {\n\n");
+
+        for (Map.Entry<String, String> pattern : patterns.entrySet()) {
+            writer.write("    private static final java.util.regex.Pattern " + pattern.getValue() + " = java.util.regex.Pattern.compile(" + literal(pattern.getKey()) + ");\n");
+        }
+        for (Map.Entry<String, String> validator : validators.entrySet()) {
+            writer.write("    private static final " + validator.getKey() + " " + validator.getValue() + " = new " + validator.getKey() + "();\n");
+        }
+        if (!patterns.isEmpty() || !validators.isEmpty()) {
+            writer.write("\n");
+        }
+
+        writer.write("    private " + getValidatorName() + "() {}\n\n");
+        writer.write("    /**\n");
+        writer.write("     * @param object the object to be validated\n");
+        writer.write("     * @param violations violations found so far or <code>null</code> if none has been found\n");
+        writer.write("     * @return violations found so far including the ones of the object or <code>null</code> if none has been found\n");
+        writer.write("     */\n");
+        writer.write("    static " + violations + " validate(" + simpleName + " object, " + violations + " violations) {\n");
+
+        for (Property property : properties.values()) {
+            if (property.checks.isEmpty()) {
+                continue;
+            }
+            writer.write("        " + property.type + " " + property.getVariable() + " = object." + property.accessor + "();\n");
+            for (Check check : property.checks) {
+                writeCheck(writer, check, literal(property.name), property.getVariable());
+            }
+        }
+        for (Check check : typeChecks) {
+            writeCheck(writer, check, "\"\"", "object");
+        }
+
+        writer.write("        return violations;\n");
+        writer.write("    }\n");
+        writer.write("}\n");
+    }
+
+    private static void writeCheck(Writer writer, Check check, String property, String value) throws IOException {
+        writer.write("        if (" + check.invalid + ") {\n");
+        writer.write("            violations = " + VIOLATION + ".add(violations, object, " + property + ", " + value + ", " + literal(check.message) + ");\n");
+        writer.write("        }\n");
+    }
+
+    /**
+     * Writes the validator dispatching the objects to the validators of their types.
+     * @param types validators of the types ordered so the subclasses come before their superclasses
+     */
+    static void writeDispatcher(String packageName, String simpleName, List<ConstrainedType> types, Writer writer) throws IOException {
+        String violations = "java.util.List<javax.validation.ConstraintViolation<Object>>";
+
+        writer.write("package " + packageName + ";\n\n");
+        writer.write("/**\n");
+        writer.write(" * Checks the constraints of the model without reflection and without any Bean Validation provider.\n");
+        writer.write(" *\n");
+        writer.write(" * Only the constraints of the object itself are checked, the cascading is not supported. The messages are the\n");
+        writer.write(" * default English messages of the Bean Validation constraints and the messages of the custom constraints.\n");
+        writer.write(" *\n");
+        writer.write(" * Generated by " + ConstraintsProcessor.class.getName() + " from the constraint annotations, do not edit.\n");
+        writer.write(" */\n");
+        writer.write("public final class " + simpleName + " {\n\n");
+        writer.write("    private " + simpleName + "() {}\n\n");
+        writer.write("    /**\n");
+        writer.write("     * @param object the object to be validated\n");
+        writer.write("     * @return violations of the constraints of the object itself in the order of declaration, empty if there are none\n");
+        writer.write("     */\n");
+        writer.write("    public static " + violations + " validate(Object object) {\n");
+        writer.write("        if (object == null) {\n");
+        writer.write("            throw new IllegalArgumentException(\"Object to be validated must not be null\");\n");
+        writer.write("        }\n");
+        writer.write("        " + violations + " violations = null;\n");
+        String prefix = "        ";
+        for (ConstrainedType type : types) {
+            String name = type.getSimpleName();
+            writer.write(prefix + "if (object instanceof " + name + ") {\n");
+            writer.write("            violations = " + type.getValidatorName() + ".validate((" + name + ") object, violations);\n");
+            prefix = "        } else ";
+        }
+        if (!types.isEmpty()) {
+            writer.write("        }\n");
+        }
+        writer.write("        if (violations == null) {\n");
+        writer.write("            return java.util.Collections.emptyList();\n");
+        writer.write("        }\n");
+        writer.write("        return violations;\n");
+        writer.write("    }\n");
+        writer.write("}\n");
+    }
+
+    static String literal(String value) {
+        StringBuilder literal = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': literal.append("\\\""); break;
+                case '\\': literal.append("\\\\"); break;
+                case '\n': literal.append("\\n"); break;
+                case '\r': literal.append("\\r"); break;
+                case '\t': literal.append("\\t"); break;
+                default:
+                    if (c < ' ' || c > '~') {
+                        literal.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        literal.append(c);
+                    }
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private static String toConstantName(String simpleName) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < simpleName.length(); i++) {
+            char c = simpleName.charAt(i);
+            if (i > 0 && Character.isUpperCase(c)) {
+                name.append('_');
+            }
+            name.append(Character.toUpperCase(c));
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,457 @@
+package org.modelcatalogue.crf.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates plain Java validators of the Bean Validation constraints of the model classes.
+ *
+ * For each concrete class declaring or inheriting any constraint, a package-private class with the <code>Constraints</code>
+ * suffix is generated into the same package. It reads the constrained properties using their getters and checks them
+ * without any reflection. The package also gets public <code>ModelConstraints</code> class dispatching the objects
+ * to the validators of their types. The generated code relies on package-private <code>ModelConstraintViolation</code>
+ * class which has to be present in the package.
+ *
+ * The built-in constraints <code>NotNull</code>, <code>Size</code>, <code>Min</code>, <code>Max</code> and
+ * <code>Pattern</code> are compiled into the expressions reporting the default English messages. The custom constraints
+ * are checked by their composing constraints and by instances of their validators. The validators are never initialized
+ * and they are given <code>null</code> context, so they must ignore both. Anything else, such as the groups or the
+ * interpolated custom messages, fails the compilation rather than being checked differently than by the provider.
+ */
+@SupportedAnnotationTypes("*")
+public class ConstraintsProcessor extends AbstractProcessor {
+
+    static final String DISPATCHER = "ModelConstraints";
+
+    private static final String CONSTRAINTS_PACKAGE = "javax.validation.constraints.";
+    private static final String CONSTRAINT = "javax.validation.Constraint";
+    private static final String REPORT_AS_SINGLE_VIOLATION = "javax.validation.ReportAsSingleViolation";
+    private static final String OVERRIDES_ATTRIBUTE = "javax.validation.OverridesAttribute";
+
+    /**
+     * Default messages of the built-in constraints as interpolated by the providers for the English locale.
+     */
+    private static final Map<String, String> DEFAULT_MESSAGES = new HashMap<String, String>();
+
+    static {
+        DEFAULT_MESSAGES.put("NotNull", "may not be null");
+        DEFAULT_MESSAGES.put("Size", "size must be between {min} and {max}");
+        DEFAULT_MESSAGES.put("Min", "must be greater than or equal to {value}");
+        DEFAULT_MESSAGES.put("Max", "must be less than or equal to {value}");
+        DEFAULT_MESSAGES.put("Pattern", "must match \"{regexp}\"");
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Map<String, List<ConstrainedType>> byPackage = new TreeMap<String, List<ConstrainedType>>();
+        for (Element element : roundEnv.getRootElements()) {
+            if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)) {
+                continue;
+            }
+            ConstrainedType type = collect((TypeElement) element);
+            if (type.isEmpty()) {
+                continue;
+            }
+            String packageName = processingEnv.getElementUtils().getPackageOf(element).getQualifiedName().toString();
+            List<ConstrainedType> types = byPackage.get(packageName);
+            if (types == null) {
+                types = new ArrayList<ConstrainedType>();
+                byPackage.put(packageName, types);
+            }
+            types.add(type);
+        }
+
+        for (Map.Entry<String, List<ConstrainedType>> entry : byPackage.entrySet()) {
+            List<ConstrainedType> types = entry.getValue();
+            Collections.sort(types, new Comparator<ConstrainedType>() {
+                @Override
+                public int compare(ConstrainedType first, ConstrainedType second) {
+                    if (first.depth != second.depth) {
+                        return second.depth - first.depth;
+                    }
+                    return first.getSimpleName().compareTo(second.getSimpleName());
+                }
+            });
+            try {
+                List<Element> originating = new ArrayList<Element>();
+                for (ConstrainedType type : types) {
+                    originating.add(type.type);
+                    JavaFileObject file = processingEnv.getFiler().createSourceFile(entry.getKey() + "." + type.getValidatorName(), type.type);
+                    Writer writer = file.openWriter();
+                    try {
+                        type.write(entry.getKey(), writer);
+                    } finally {
+                        writer.close();
+                    }
+                }
+                JavaFileObject file = processingEnv.getFiler().createSourceFile(entry.getKey() + "." + DISPATCHER, originating.toArray(new Element[originating.size()]));
+                Writer writer = file.openWriter();
+                try {
+                    ConstrainedType.writeDispatcher(entry.getKey(), DISPATCHER, types, writer);
+                } finally {
+                    writer.close();
+                }
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write the validators of package " + entry.getKey() + ": " + e);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collects the constraints of the class, its superclasses and all the interfaces they implement.
+     */
+    private ConstrainedType collect(TypeElement element) {
+        List<TypeElement> hierarchy = new ArrayList<TypeElement>();
+        int depth = 0;
+        for (TypeElement current = element; current != null; current = superclass(current)) {
+            addWithInterfaces(hierarchy, current);
+            depth++;
+        }
+
+        ConstrainedType type = new ConstrainedType(element, depth);
+        for (TypeElement current : hierarchy) {
+            for (AnnotationMirror annotation : current.getAnnotationMirrors()) {
+                addChecks(type, null, annotation, current);
+            }
+            for (Element member : current.getEnclosedElements()) {
+                if (member.getKind() == ElementKind.FIELD) {
+                    collectField(type, element, (VariableElement) member);
+                } else if (member.getKind() == ElementKind.METHOD) {
+                    collectMethod(type, (ExecutableElement) member);
+                }
+            }
+        }
+        return type;
+    }
+
+    private void collectField(ConstrainedType type, TypeElement element, VariableElement field) {
+        List<AnnotationMirror> constraints = constraints(field);
+        if (constraints.isEmpty()) {
+            return;
+        }
+        String name = field.getSimpleName().toString();
+        ExecutableElement getter = findGetter(element, name);
+        if (getter == null) {
+            error(field, "Constrained field " + name + " must have a getter to be validated");
+            return;
+        }
+        ConstrainedType.Property property = property(type, name, getter);
+        for (AnnotationMirror annotation : constraints) {
+            addChecks(type, property, annotation, field);
+        }
+    }
+
+    private void collectMethod(ConstrainedType type, ExecutableElement method) {
+        List<AnnotationMirror> constraints = constraints(method);
+        if (constraints.isEmpty()) {
+            return;
+        }
+        String name = propertyName(method);
+        if (name == null) {
+            error(method, "Only the getters can be constrained");
+            return;
+        }
+        ConstrainedType.Property property = property(type, name, method);
+        for (AnnotationMirror annotation : constraints) {
+            addChecks(type, property, annotation, method);
+        }
+    }
+
+    private static ConstrainedType.Property property(ConstrainedType type, String name, ExecutableElement getter) {
+        ConstrainedType.Property property = type.properties.get(name);
+        if (property == null) {
+            property = new ConstrainedType.Property(name, getter.getSimpleName().toString(), getter.getReturnType().toString());
+            type.properties.put(name, property);
+        }
+        return property;
+    }
+
+    /**
+     * Adds the checks of the constraint and of all its composing constraints.
+     * @param property constrained property or <code>null</code> for the constraint of the whole type
+     */
+    private void addChecks(ConstrainedType type, ConstrainedType.Property property, AnnotationMirror annotation, Element element) {
+        TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+        AnnotationMirror constraint = getAnnotation(annotationType, CONSTRAINT);
+        if (constraint == null) {
+            return;
+        }
+        String name = annotationType.getQualifiedName().toString();
+        Map<String, Object> values = values(annotation);
+
+        if (!((List<?>) values.get("groups")).isEmpty()) {
+            error(element, "Groups are not supported by the generated validators: @" + name);
+            return;
+        }
+        if (getAnnotation(annotationType, REPORT_AS_SINGLE_VIOLATION) != null) {
+            error(element, "Constraints reported as single violation are not supported by the generated validators: @" + name);
+            return;
+        }
+        for (Element attribute : annotationType.getEnclosedElements()) {
+            if (getAnnotation(attribute, OVERRIDES_ATTRIBUTE) != null) {
+                error(element, "Overridden attributes are not supported by the generated validators: @" + name);
+                return;
+            }
+        }
+
+        List<?> validatedBy = (List<?>) values(constraint).get("validatedBy");
+        if (name.startsWith(CONSTRAINTS_PACKAGE)) {
+            addBuiltInCheck(type, property, name.substring(CONSTRAINTS_PACKAGE.length()), values, element);
+        } else if (validatedBy.size() == 1) {
+            String message = message(values, name, element);
+            if (message == null) {
+                return;
+            }
+            String validator = type.validator(((DeclaredType) ((AnnotationValue) validatedBy.get(0)).getValue()).toString());
+            String value = property == null ? "object" : property.getVariable();
+            add(type, property, new ConstrainedType.Check("!" + validator + ".isValid(" + value + ", null)", message));
+        } else if (validatedBy.size() > 1) {
+            error(element, "Constraints with multiple validators are not supported by the generated validators: @" + name);
+            return;
+        }
+
+        for (AnnotationMirror composing : annotationType.getAnnotationMirrors()) {
+            addChecks(type, property, composing, element);
+        }
+    }
+
+    private void addBuiltInCheck(ConstrainedType type, ConstrainedType.Property property, String constraint, Map<String, Object> values, Element element) {
+        if (!DEFAULT_MESSAGES.containsKey(constraint)) {
+            error(element, "Constraint @" + constraint + " is not supported by the generated validators");
+            return;
+        }
+        if (property == null) {
+            error(element, "Constraint @" + constraint + " can only be applied to the properties");
+            return;
+        }
+        String message = message(values, constraint, element);
+        if (message == null) {
+            return;
+        }
+
+        TypeMirror propertyType = propertyType(element);
+        boolean primitive = propertyType.getKind().isPrimitive();
+        String value = property.getVariable();
+        String notNull = primitive ? "" : value + " != null && ";
+
+        if ("NotNull".equals(constraint)) {
+            if (!primitive) {
+                add(type, property, new ConstrainedType.Check(value + " == null", message));
+            }
+        } else if ("Size".equals(constraint)) {
+            String size = size(propertyType, value);
+            if (size == null) {
+                error(element, "Constraint @Size is not supported by the generated validators for " + propertyType);
+                return;
+            }
+            int min = (Integer) values.get("min");
+            int max = (Integer) values.get("max");
+            List<String> conditions = new ArrayList<String>();
+            if (min > 0) {
+                conditions.add(size + " < " + min);
+            }
+            if (max < Integer.MAX_VALUE) {
+                conditions.add(size + " > " + max);
+            }
+            if (conditions.size() == 1) {
+                add(type, property, new ConstrainedType.Check(notNull + conditions.get(0), message));
+            } else if (conditions.size() == 2) {
+                add(type, property, new ConstrainedType.Check(notNull + "(" + conditions.get(0) + " || " + conditions.get(1) + ")", message));
+            }
+        } else if ("Min".equals(constraint) || "Max".equals(constraint)) {
+            if (!isIntegral(propertyType)) {
+                error(element, "Constraint @" + constraint + " is not supported by the generated validators for " + propertyType);
+                return;
+            }
+            String number = primitive ? value : value + ".longValue()";
+            String operator = "Min".equals(constraint) ? " < " : " > ";
+            add(type, property, new ConstrainedType.Check(notNull + number + operator + values.get("value") + "L", message));
+        } else if ("Pattern".equals(constraint)) {
+            if (!((List<?>) values.get("flags")).isEmpty()) {
+                error(element, "Flags of @Pattern are not supported by the generated validators");
+                return;
+            }
+            String pattern = type.pattern((String) values.get("regexp"));
+            add(type, property, new ConstrainedType.Check(notNull + "!" + pattern + ".matcher(" + value + ").matches()", message));
+        }
+    }
+
+    private static void add(ConstrainedType type, ConstrainedType.Property property, ConstrainedType.Check check) {
+        if (property == null) {
+            type.typeChecks.add(check);
+        } else {
+            property.checks.add(check);
+        }
+    }
+
+    /**
+     * @return the message with the attributes of the constraint in place of their names, <code>null</code> if the
+     * message cannot be interpolated
+     */
+    private String message(Map<String, Object> values, String constraint, Element element) {
+        String message = (String) values.get("message");
+        String defaultKey = "{" + CONSTRAINTS_PACKAGE + constraint + ".message}";
+        if (defaultKey.equals(message)) {
+            message = DEFAULT_MESSAGES.get(constraint);
+            for (Map.Entry<String, Object> value : values.entrySet()) {
+                message = message.replace("{" + value.getKey() + "}", String.valueOf(value.getValue()));
+            }
+        }
+        if (message.contains("{") || message.contains("$")) {
+            error(element, "Only the default messages and the messages without any expressions are supported by the generated validators: " + message);
+            return null;
+        }
+        return message;
+    }
+
+    /**
+     * @return attributes of the annotation including the default ones, the arrays are converted to lists
+     */
+    private Map<String, Object> values(AnnotationMirror annotation) {
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : processingEnv.getElementUtils().getElementValuesWithDefaults(annotation).entrySet()) {
+            values.put(entry.getKey().getSimpleName().toString(), entry.getValue().getValue());
+        }
+        return values;
+    }
+
+    private List<AnnotationMirror> constraints(Element element) {
+        List<AnnotationMirror> constraints = new ArrayList<AnnotationMirror>();
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (getAnnotation(annotation.getAnnotationType().asElement(), CONSTRAINT) != null) {
+                constraints.add(annotation);
+            }
+        }
+        return constraints;
+    }
+
+    private static AnnotationMirror getAnnotation(Element element, String name) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(name)) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    private TypeMirror propertyType(Element element) {
+        if (element instanceof ExecutableElement) {
+            return ((ExecutableElement) element).getReturnType();
+        }
+        return element.asType();
+    }
+
+    private String size(TypeMirror propertyType, String value) {
+        if (propertyType.getKind() == TypeKind.ARRAY) {
+            return value + ".length";
+        }
+        if (isAssignable(propertyType, "java.lang.CharSequence")) {
+            return value + ".length()";
+        }
+        if (isAssignable(propertyType, "java.util.Collection") || isAssignable(propertyType, "java.util.Map")) {
+            return value + ".size()";
+        }
+        return null;
+    }
+
+    private boolean isIntegral(TypeMirror propertyType) {
+        switch (propertyType.getKind()) {
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+                return true;
+            case DECLARED:
+                String name = ((TypeElement) ((DeclaredType) propertyType).asElement()).getQualifiedName().toString();
+                return "java.lang.Byte".equals(name) || "java.lang.Short".equals(name) || "java.lang.Integer".equals(name) || "java.lang.Long".equals(name);
+            default:
+                return false;
+        }
+    }
+
+    private boolean isAssignable(TypeMirror propertyType, String name) {
+        TypeElement target = processingEnv.getElementUtils().getTypeElement(name);
+        return processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(propertyType), processingEnv.getTypeUtils().erasure(target.asType()));
+    }
+
+    private ExecutableElement findGetter(TypeElement element, String property) {
+        for (TypeElement current = element; current != null; current = superclass(current)) {
+            for (Element member : current.getEnclosedElements()) {
+                if (member.getKind() == ElementKind.METHOD && property.equals(propertyName((ExecutableElement) member)) && !member.getModifiers().contains(Modifier.PRIVATE)) {
+                    return (ExecutableElement) member;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return name of the property of the getter or <code>null</code> if the method is not a getter
+     */
+    private static String propertyName(ExecutableElement method) {
+        if (!method.getParameters().isEmpty() || method.getModifiers().contains(Modifier.STATIC) || method.getReturnType().getKind() == TypeKind.VOID) {
+            return null;
+        }
+        String name = method.getSimpleName().toString();
+        if (name.startsWith("get") && name.length() > 3) {
+            return decapitalize(name.substring(3));
+        }
+        if (name.startsWith("is") && name.length() > 2 && method.getReturnType().getKind() == TypeKind.BOOLEAN) {
+            return decapitalize(name.substring(2));
+        }
+        return null;
+    }
+
+    /**
+     * Same as {@link java.beans.Introspector#decapitalize(String)}.
+     */
+    private static String decapitalize(String name) {
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0))) {
+            return name;
+        }
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static TypeElement superclass(TypeElement element) {
+        TypeMirror superclass = element.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement superElement = (TypeElement) ((DeclaredType) superclass).asElement();
+        if (superElement.getQualifiedName().contentEquals("java.lang.Object")) {
+            return null;
+        }
+        return superElement;
+    }
+
+    private static void addWithInterfaces(List<TypeElement> hierarchy, TypeElement element) {
+        if (hierarchy.contains(element)) {
+            return;
+        }
+        hierarchy.add(element);
+        for (TypeMirror implemented : element.getInterfaces()) {
+            addWithInterfaces(hierarchy, (TypeElement) ((DeclaredType) implemented).asElement());
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,243 @@
+package org.modelcatalogue.crf.serializer;
+
+import org.modelcatalogue.crf.model.CaseReportForm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * This class exports multiple forms into single zip archive containing one excel file per form.
+ *
+ * The forms are serialized concurrently on a fixed number of threads, each form into its own workbook. Only a bounded
+ * number of forms are serialized ahead of the writer so the memory consumption does not grow with the number of forms.
+ * The entries are written to the archive in order in which the forms have finished, not in the order of the collection.
+ *
+ * Form which cannot be serialized does not stop the batch. The failure is reported to the {@link Listener} and
+ * collected in the {@link Result}. Only the failures writing to the output stream itself are rethrown.
+ */
+public class CaseReportFormBatchSerializer {
+
+    /**
+     * Callback notified about the progress of the batch. The methods are always called from the thread which has
+     * called {@link #write(OutputStream, int, Listener)}.
+     */
+    public interface Listener {
+
+        /**
+         * Called when the form has been written to the archive.
+         * @param form form which has been written
+         * @param entryName name of the archive entry containing the form
+         * @param completed number of forms completed so far including the failed ones
+         * @param total total number of forms in the batch
+         */
+        void formWritten(CaseReportForm form, String entryName, int completed, int total);
+
+        /**
+         * Called when the form could not be serialized.
+         * @param form form which has failed
+         * @param failure exception thrown during the serialization
+         * @param completed number of forms completed so far including the failed ones
+         * @param total total number of forms in the batch
+         */
+        void formFailed(CaseReportForm form, Exception failure, int completed, int total);
+    }
+
+    /**
+     * Outcome of the batch.
+     */
+    public static final class Result {
+
+        private final Map<CaseReportForm, String> entries = new LinkedHashMap<CaseReportForm, String>();
+        private final Map<CaseReportForm, Exception> failures = new LinkedHashMap<CaseReportForm, Exception>();
+
+        private Result() {}
+
+        /**
+         * @return archive entry names of the written forms in the order they have been written
+         */
+        public Map<CaseReportForm, String> getEntries() {
+            return Collections.unmodifiableMap(entries);
+        }
+
+        /**
+         * @return exceptions of the forms which could not be serialized in the order they have failed
+         */
+        public Map<CaseReportForm, Exception> getFailures() {
+            return Collections.unmodifiableMap(failures);
+        }
+
+        /**
+         * @return true if all the forms have been written
+         */
+        public boolean isSuccessful() {
+            return failures.isEmpty();
+        }
+    }
+
+    private static final String ENTRY_EXTENSION = ".xls";
+
+    private final List<CaseReportForm> forms;
+
+    /**
+     * Creates new batch serializer for given forms.
+     * @param forms forms to be serialized, each form can be present only once as the outcome is reported per form
+     * @throws IllegalArgumentException if the same form is present more than once
+     */
+    public CaseReportFormBatchSerializer(Collection<CaseReportForm> forms) {
+        if (forms == null) {
+            throw new IllegalArgumentException("Forms must not be null");
+        }
+        Set<CaseReportForm> unique = Collections.newSetFromMap(new IdentityHashMap<CaseReportForm, Boolean>(forms.size() * 2));
+        for (CaseReportForm form : forms) {
+            if (!unique.add(form)) {
+                throw new IllegalArgumentException("Form " + form.getName() + " " + form.getVersion() + " is present more than once in the batch");
+            }
+        }
+        this.forms = new ArrayList<CaseReportForm>(forms);
+    }
+
+    /**
+     * Writes all the forms into zip archive using as many threads as there are available processors.
+     * @param outputStream output stream to write the archive to, it is finished but not closed
+     * @return outcome of the batch
+     */
+    public Result write(OutputStream outputStream) throws IOException {
+        return write(outputStream, Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    /**
+     * Writes all the forms into zip archive.
+     * @param outputStream output stream to write the archive to, it is finished but not closed
+     * @param parallelism number of forms being serialized at the same time
+     * @param listener optional listener notified about each completed form
+     * @return outcome of the batch
+     */
+    public Result write(OutputStream outputStream, int parallelism, Listener listener) throws IOException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+
+        Result result = new Result();
+        Set<String> entryNames = new HashSet<String>();
+        ZipOutputStream zip = new ZipOutputStream(outputStream);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(forms.size(), 1)));
+        CompletionService<SerializedForm> completionService = new ExecutorCompletionService<SerializedForm>(executor);
+
+        try {
+            // keep the workers busy while the writer is copying the finished workbook but don't keep more than
+            // few serialized workbooks in memory
+            int maxInFlight = parallelism * 2;
+            int submitted = 0;
+            int completed = 0;
+
+            while (submitted < forms.size() && submitted < maxInFlight) {
+                submit(completionService, forms.get(submitted++));
+            }
+
+            while (completed < forms.size()) {
+                Future<SerializedForm> future = completionService.take();
+                completed++;
+
+                if (submitted < forms.size()) {
+                    submit(completionService, forms.get(submitted++));
+                }
+
+                SerializedForm serialized;
+                try {
+                    serialized = future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    FormSerializationException failure = (FormSerializationException) e.getCause();
+                    result.failures.put(failure.form, failure.getCause());
+                    if (listener != null) {
+                        listener.formFailed(failure.form, failure.getCause(), completed, forms.size());
+                    }
+                    continue;
+                }
+
+                String entryName = uniqueEntryName(entryNames, serialized.form);
+                zip.putNextEntry(new ZipEntry(entryName));
+                zip.write(serialized.content);
+                zip.closeEntry();
+
+                result.entries.put(serialized.form, entryName);
+                if (listener != null) {
+                    listener.formWritten(serialized.form, entryName, completed, forms.size());
+                }
+            }
+
+            zip.finish();
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the forms to be serialized");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void submit(CompletionService<SerializedForm> completionService, final CaseReportForm form) {
+        completionService.submit(new Callable<SerializedForm>() {
+            @Override
+            public SerializedForm call() throws Exception {
+                try {
+                    ByteArrayOutputStream content = new ByteArrayOutputStream();
+                    new CaseReportFormSerializer(form).write(content);
+                    return new SerializedForm(form, content.toByteArray());
+                } catch (Exception e) {
+                    throw new FormSerializationException(form, e);
+                }
+            }
+        });
+    }
+
+    static String uniqueEntryName(Set<String> entryNames, CaseReportForm form) {
+        StringBuilder baseName = new StringBuilder(form.getName() == null ? "form" : form.getName());
+        if (form.getVersion() != null) {
+            baseName.append(' ').append(form.getVersion());
+        }
+        String sanitized = baseName.toString().replaceAll("[\\\\/:*?\"<>|]", "_").trim();
+
+        String entryName = sanitized + ENTRY_EXTENSION;
+        for (int i = 2; !entryNames.add(entryName); i++) {
+            entryName = sanitized + " (" + i + ")" + ENTRY_EXTENSION;
+        }
+        return entryName;
+    }
+
+    private static final class SerializedForm {
+        final CaseReportForm form;
+        final byte[] content;
+
+        SerializedForm(CaseReportForm form, byte[] content) {
+            this.form = form;
+            this.content = content;
+        }
+    }
+
+    private static final class FormSerializationException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        final transient CaseReportForm form;
+
+        FormSerializationException(CaseReportForm form, Exception cause) {
+            super(cause);
+            this.form = form;
+        }
+
+        @Override
+        public synchronized Exception getCause() {
+            return (Exception) super.getCause();
+        }
+    }
+}
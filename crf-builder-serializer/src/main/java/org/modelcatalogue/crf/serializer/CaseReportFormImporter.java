@@ -0,0 +1,462 @@
+package org.modelcatalogue.crf.serializer;
+
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulRKRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.RKRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.usermodel.Cell;
+import org.modelcatalogue.crf.model.*;
+import org.modelcatalogue.crf.model.validation.ValidationExpression;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+import static org.modelcatalogue.crf.serializer.CaseReportFormSerializer.*;
+
+/**
+ * This class imports the excel file in the OpenClinica format (such as the one written by
+ * {@link CaseReportFormSerializer}) back to the in memory form model.
+ *
+ * The workbook is not loaded into memory. The low level records are streamed in a single pass and only the current row
+ * of the sheet being read is kept. Numbers are read from any of the records Excel stores them in, including the RK
+ * records used for the integers and the cached results of the formulas. The sheets are expected in the same order as in the OpenClinica template, i.e. the
+ * groups are defined before the items which belong to them.
+ *
+ * The Groups sheet does not say which section the group belongs to so the group is created in the section of the first
+ * item which references it. Groups which are not referenced by any item are ignored.
+ */
+public class CaseReportFormImporter {
+
+    private static final Map<String, ResponseType> RESPONSE_TYPES = new HashMap<String, ResponseType>();
+
+    static {
+        for (ResponseType type : ResponseType.values()) {
+            RESPONSE_TYPES.put(type.getExcelValue(), type);
+        }
+    }
+
+    /**
+     * Reads the form from the excel file. The file is accessed lazily so only the records being processed are read
+     * into memory.
+     * @param file excel file to be read
+     * @return form read from the file
+     */
+    public CaseReportForm read(File file) throws IOException {
+        NPOIFSFileSystem fileSystem = new NPOIFSFileSystem(file, true);
+        try {
+            return read(fileSystem);
+        } finally {
+            fileSystem.close();
+        }
+    }
+
+    /**
+     * Reads the form from the input stream, usually the FileInputStream. Prefer {@link #read(File)} for large files as
+     * the input stream needs to be buffered to access the workbook.
+     * @param inputStream input stream to read the form from
+     * @return form read from the input stream
+     */
+    public CaseReportForm read(InputStream inputStream) throws IOException {
+        NPOIFSFileSystem fileSystem = new NPOIFSFileSystem(inputStream);
+        try {
+            return read(fileSystem);
+        } finally {
+            fileSystem.close();
+        }
+    }
+
+    private static CaseReportForm read(NPOIFSFileSystem fileSystem) throws IOException {
+        FormRecordsListener listener = new FormRecordsListener();
+
+        HSSFRequest request = new HSSFRequest();
+        request.addListenerForAllRecords(listener);
+        new HSSFEventFactory().processWorkbookEvents(request, fileSystem.getRoot());
+
+        return listener.complete();
+    }
+
+    /**
+     * Collects the cells of the current row and dispatches the complete rows to the sheet specific methods.
+     */
+    private static final class FormRecordsListener implements HSSFListener {
+
+        private final CaseReportForm form = new CaseReportForm();
+        private final Map<String, GroupDefinition> groupDefinitions = new HashMap<String, GroupDefinition>();
+        private final Map<Item, String> conditionalDisplays = new LinkedHashMap<Item, String>();
+
+        private final List<BoundSheetRecord> sheetRecords = new ArrayList<BoundSheetRecord>();
+        private BoundSheetRecord[] orderedSheetRecords;
+        private int sheetIndex = -1;
+        private String sheetName;
+
+        private SSTRecord sharedStrings;
+
+        private Map<String, Integer> headings;
+        private final List<String> cells = new ArrayList<String>();
+        private int rowNumber = -1;
+
+        /**
+         * Formula whose cached string result is stored in the following string record or null.
+         */
+        private FormulaRecord pendingFormula;
+
+        @Override
+        public void processRecord(Record record) {
+            switch (record.getSid()) {
+                case BoundSheetRecord.sid:
+                    sheetRecords.add((BoundSheetRecord) record);
+                    break;
+                case BOFRecord.sid:
+                    if (((BOFRecord) record).getType() == BOFRecord.TYPE_WORKSHEET) {
+                        if (orderedSheetRecords == null) {
+                            orderedSheetRecords = BoundSheetRecord.orderByBofPosition(sheetRecords);
+                        }
+                        sheetName = orderedSheetRecords[++sheetIndex].getSheetname();
+                        headings = null;
+                        rowNumber = -1;
+                    }
+                    break;
+                case EOFRecord.sid:
+                    if (sheetName != null) {
+                        flushRow();
+                        sheetName = null;
+                    }
+                    break;
+                case SSTRecord.sid:
+                    sharedStrings = (SSTRecord) record;
+                    break;
+                case LabelSSTRecord.sid:
+                    LabelSSTRecord labelSST = (LabelSSTRecord) record;
+                    cell(labelSST.getRow(), labelSST.getColumn(), sharedStrings.getString(labelSST.getSSTIndex()).getString());
+                    break;
+                case LabelRecord.sid:
+                    LabelRecord label = (LabelRecord) record;
+                    cell(label.getRow(), label.getColumn(), label.getValue());
+                    break;
+                case NumberRecord.sid:
+                    NumberRecord number = (NumberRecord) record;
+                    cell(number.getRow(), number.getColumn(), formatNumber(number.getValue()));
+                    break;
+                case RKRecord.sid:
+                    RKRecord rk = (RKRecord) record;
+                    cell(rk.getRow(), rk.getColumn(), formatNumber(rk.getRKNumber()));
+                    break;
+                case MulRKRecord.sid:
+                    MulRKRecord mulRK = (MulRKRecord) record;
+                    for (int i = 0; i < mulRK.getNumColumns(); i++) {
+                        cell(mulRK.getRow(), mulRK.getFirstColumn() + i, formatNumber(mulRK.getRKNumberAt(i)));
+                    }
+                    break;
+                case FormulaRecord.sid:
+                    FormulaRecord formula = (FormulaRecord) record;
+                    if (formula.hasCachedResultString()) {
+                        pendingFormula = formula;
+                    } else if (formula.getCachedResultType() == Cell.CELL_TYPE_NUMERIC) {
+                        cell(formula.getRow(), formula.getColumn(), formatNumber(formula.getValue()));
+                    }
+                    break;
+                case StringRecord.sid:
+                    if (pendingFormula != null) {
+                        cell(pendingFormula.getRow(), pendingFormula.getColumn(), ((StringRecord) record).getString());
+                        pendingFormula = null;
+                    }
+                    break;
+                default:
+                    // formatting and other records are not relevant for the form
+            }
+        }
+
+        CaseReportForm complete() {
+            for (Map.Entry<Item, String> entry : conditionalDisplays.entrySet()) {
+                entry.getKey().setConditionalDisplay(parseConditionalDisplay(entry.getKey(), entry.getValue()));
+            }
+            return form;
+        }
+
+        private void cell(int row, int column, String value) {
+            if (sheetName == null) {
+                return;
+            }
+            if (row != rowNumber) {
+                flushRow();
+                rowNumber = row;
+            }
+            while (cells.size() <= column) {
+                cells.add(null);
+            }
+            cells.set(column, value);
+        }
+
+        private void flushRow() {
+            if (rowNumber < 0) {
+                return;
+            }
+            if (headings == null) {
+                headings = new HashMap<String, Integer>();
+                for (int i = 0; i < cells.size(); i++) {
+                    if (cells.get(i) != null) {
+                        headings.put(cells.get(i).trim(), i);
+                    }
+                }
+            } else if (SHEET_CRF.equals(sheetName)) {
+                readForm();
+            } else if (SHEET_SECTIONS.equals(sheetName)) {
+                readSection();
+            } else if (SHEET_GROUPS.equals(sheetName)) {
+                readGroup();
+            } else if (SHEET_ITEMS.equals(sheetName)) {
+                readItem();
+            }
+            cells.clear();
+            rowNumber = -1;
+        }
+
+        private void readForm() {
+            form.setName(get(HEADING_CRF_NAME));
+            form.setVersion(get(HEADING_CRF_VERSION));
+            form.setVersionDescription(get(HEADING_CRF_VERSION_DESCRIPTION));
+            form.setRevisionNotes(get(HEADING_CRF_REVISION_NOTES));
+        }
+
+        private void readSection() {
+            String label = get(SECTION_LABEL);
+            if (label == null) {
+                return;
+            }
+            Section section = form.section(label);
+            section.setTitle(get(SECTION_TITLE));
+            section.setSubtitle(get(SECTION_SUBTITLE));
+            section.setInstructions(get(SECTION_INSTRUCTIONS));
+            section.setPageNumber(get(SECTION_PAGE_NUMBER));
+        }
+
+        private void readGroup() {
+            String label = get(GROUP_LABEL);
+            if (label == null) {
+                return;
+            }
+            GroupDefinition definition = new GroupDefinition();
+            definition.grid = GROUP_LAYOUT_GRID.equalsIgnoreCase(get(GROUP_LAYOUT));
+            definition.header = get(GROUP_HEADER);
+            definition.repeatNum = getInteger(GROUP_REPEAT_NUMBER);
+            definition.repeatMax = getInteger(GROUP_REPEAT_MAX);
+            definition.displayStatus = getEnum(DisplayStatus.class, GROUP_DISPLAY_STATUS);
+            groupDefinitions.put(label, definition);
+        }
+
+        private void readItem() {
+            String name = get(ITEM_NAME);
+            if (name == null) {
+                return;
+            }
+
+            String responseTypeValue = get(ITEM_RESPONSE_TYPE);
+            ResponseType responseType = responseTypeValue == null ? null : RESPONSE_TYPES.get(responseTypeValue.toLowerCase());
+            if (responseType == null) {
+                throw new IllegalArgumentException("Unknown response type '" + responseTypeValue + "' of item " + name);
+            }
+
+            String sectionLabel = get(ITEM_SECTION_LABEL);
+            if (sectionLabel == null) {
+                throw new IllegalArgumentException("Item " + name + " does not belong to any section");
+            }
+
+            Section section = form.section(sectionLabel);
+            String groupLabel = get(ITEM_GROUP_LABEL);
+            ItemContainer container = groupLabel == null ? section : group(section, groupLabel);
+
+            Item item = createItem(container, responseType, name);
+            item.setDescriptionLabel(get(ITEM_DESCRIPTION_LABEL));
+            item.setLeftItemText(get(ITEM_LEFT_ITEM_TEXT));
+            item.setUnits(get(ITEM_UNITS));
+            item.setRightItemText(get(ITEM_RIGHT_ITEM_TEXT));
+            item.setHeader(get(ITEM_HEADER));
+            item.setSubheader(get(ITEM_SUBHEADER));
+            item.setColumnNumber(getInteger(ITEM_COLUMN_NUMBER));
+            item.setPageNumber(get(ITEM_PAGE_NUMBER));
+            item.setQuestionNumber(get(ITEM_QUESTION_NUMBER));
+            item.setResponseLabel(get(ITEM_RESPONSE_LABEL));
+            item.setResponseLayout(getEnum(ResponseLayout.class, ITEM_RESPONSE_LAYOUT));
+            item.setDefaultValue(get(ITEM_DEFAULT_VALUE));
+            item.setWidthDecimal(get(ITEM_WIDTH_DECIMAL));
+            item.setPhi(getInteger(ITEM_PHI));
+            item.setRequired(getInteger(ITEM_REQUIRED));
+
+            DataType dataType = getEnum(DataType.class, ITEM_DATA_TYPE);
+            if (dataType != null) {
+                item.setDataType(dataType);
+            }
+
+            DisplayStatus displayStatus = getEnum(DisplayStatus.class, ITEM_DISPLAY_STATUS);
+            if (displayStatus != null) {
+                item.setDisplayStatus(displayStatus);
+            }
+
+            String validation = get(ITEM_VALIDATION);
+            String validationErrorMessage = get(ITEM_VALIDATION_ERROR_MESSAGE);
+            if (validation != null || validationErrorMessage != null) {
+                item.setValidationExpression(new ValidationExpression(validation, validationErrorMessage));
+            }
+
+            String valuesOrCalculations = get(ITEM_RESPONSE_VALUES_OR_CALCULATIONS);
+            if (valuesOrCalculations != null) {
+                switch (responseType) {
+                    case CALCULATION:
+                    case GROUP_CALCULATION:
+                    case INSTANT_CALCULATION:
+                        item.setCalculation(valuesOrCalculations);
+                        break;
+                    default:
+                        item.setResponseOptions(parseResponseOptions(get(ITEM_RESPONSE_OPTIONS_TEXT), valuesOrCalculations));
+                }
+            }
+
+            String simpleConditionalDisplay = get(ITEM_SIMPLE_CONDITIONAL_DISPLAY);
+            if (simpleConditionalDisplay != null) {
+                // the controlling item might not have been read yet
+                conditionalDisplays.put(item, simpleConditionalDisplay);
+            }
+        }
+
+        private Group group(Section section, String label) {
+            Group existing = section.getGroups().get(label);
+            if (existing != null) {
+                return existing;
+            }
+            GroupDefinition definition = groupDefinitions.get(label);
+            if (definition == null) {
+                return section.group(label);
+            }
+            Group group;
+            if (definition.grid) {
+                GridGroup grid = section.grid(label);
+                grid.setHeader(definition.header);
+                grid.setRepeatNum(definition.repeatNum);
+                grid.setRepeatMax(definition.repeatMax);
+                group = grid;
+            } else {
+                group = section.group(label);
+            }
+            if (definition.displayStatus != null) {
+                group.setDisplayStatus(definition.displayStatus);
+            }
+            return group;
+        }
+
+        private ConditionalDisplay parseConditionalDisplay(Item item, String simpleConditionalDisplay) {
+            List<String> parts = Item.parseResponseOptions(simpleConditionalDisplay);
+            Item controllingItem = form.findItem(parts.get(0));
+            if (controllingItem == null) {
+                throw new IllegalArgumentException("Item '" + parts.get(0) + "' referenced by the conditional display of item " + item.getName() + " not found!");
+            }
+            String value = parts.size() > 1 ? parts.get(1) : "";
+            ResponseOption option = controllingItem.findResponseOptionByValue(value);
+            if (option != null) {
+                return new ConditionalDisplay(option, parts.size() > 2 ? parts.get(2) : null);
+            }
+            throw new IllegalArgumentException("Item '" + parts.get(0) + "' does not provide any option with value '" + value + "' required by the conditional display of item " + item.getName() + "!");
+        }
+
+        private String get(String heading) {
+            Integer column = headings.get(heading);
+            if (column == null || column >= cells.size()) {
+                return null;
+            }
+            String value = cells.get(column);
+            if (value == null || value.isEmpty()) {
+                return null;
+            }
+            return value;
+        }
+
+        private Integer getInteger(String heading) {
+            String value = get(heading);
+            if (value == null) {
+                return null;
+            }
+            try {
+                return Integer.valueOf(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Value '" + value + "' of column " + heading + " in sheet " + sheetName + " on row " + (rowNumber + 1) + " is not a number");
+            }
+        }
+
+        private <E extends Enum<E>> E getEnum(Class<E> type, String heading) {
+            String value = get(heading);
+            if (value == null) {
+                return null;
+            }
+            try {
+                return Enum.valueOf(type, value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Value '" + value + "' of column " + heading + " in sheet " + sheetName + " on row " + (rowNumber + 1) + " is not valid " + type.getSimpleName());
+            }
+        }
+
+        private static String formatNumber(double number) {
+            if (number == Math.rint(number) && !Double.isInfinite(number)) {
+                return String.valueOf((long) number);
+            }
+            return String.valueOf(number);
+        }
+    }
+
+    private static List<ResponseOption> parseResponseOptions(String texts, String values) {
+        List<String> parsedValues = Item.parseResponseOptions(values);
+        List<String> parsedTexts = texts == null ? parsedValues : Item.parseResponseOptions(texts);
+        List<ResponseOption> options = new ArrayList<ResponseOption>(parsedValues.size());
+        for (int i = 0; i < parsedValues.size(); i++) {
+            options.add(new ResponseOption(i < parsedTexts.size() ? parsedTexts.get(i) : parsedValues.get(i), parsedValues.get(i)));
+        }
+        return options;
+    }
+
+    static Item createItem(ItemContainer container, ResponseType responseType, String name) {
+        switch (responseType) {
+            case TEXT:
+                return (Item) container.text(name);
+            case TEXTAREA:
+                return (Item) container.textarea(name);
+            case SINGLE_SELECT:
+                return (Item) container.singleSelect(name);
+            case RADIO:
+                return (Item) container.radio(name);
+            case MULTI_SELECT:
+                return (Item) container.multiSelect(name);
+            case CHECKBOX:
+                return (Item) container.checkbox(name);
+            case CALCULATION:
+                return (Item) container.calculation(name);
+            case GROUP_CALCULATION:
+                return (Item) container.groupCalculation(name);
+            case FILE:
+                return (Item) container.file(name);
+            case INSTANT_CALCULATION:
+                return (Item) container.instantCalculation(name);
+            default:
+                throw new IllegalArgumentException("Unsupported response type " + responseType);
+        }
+    }
+
+    private static final class GroupDefinition {
+        boolean grid;
+        String header;
+        Integer repeatNum;
+        Integer repeatMax;
+        DisplayStatus displayStatus;
+    }
+}
@@ -1,125 +1,206 @@
 package org.modelcatalogue.crf.serializer;
 
-import org.apache.poi.hssf.usermodel.*;
-import org.apache.poi.hssf.util.HSSFColor;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.modelcatalogue.crf.model.*;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.*;
 
 /**
  * This class exports in memory form model to excel file.
+ *
+ * The form can be written either as legacy Excel 97 (<code>.xls</code>) workbook built completely in memory or as
+ * Office Open XML (<code>.xlsx</code>) workbook which is streamed through a sliding window of rows.
+ *
+ * The tables can be also written as plain CSV or TSV files without creating any workbook.
+ *
+ * If enabled by {@link #setReuseRows(boolean)}, the serializer remembers the rows written for each section. When the
+ * same serializer writes the form again only the sections which have changed since the previous write are read again,
+ * the rows of the other sections are reused. The serializer is not thread safe.
  */
 public class CaseReportFormSerializer {
 
 
-    private static final String SHEET_CRF = "CRF";
-    private static final String HEADING_CRF_NAME = "CRF_NAME";
-    private static final String HEADING_CRF_VERSION = "VERSION";
-    private static final String HEADING_CRF_VERSION_DESCRIPTION = "VERSION_DESCRIPTION";
-    private static final String HEADING_CRF_REVISION_NOTES = "REVISION_NOTES";
-    private static final int HEADING_CRF_NAME_INDEX = 0;
-    private static final int HEADING_CRF_VERSION_INDEX = 1;
-    private static final int HEADING_CRF_VERSION_DESCRIPTION_INDEX = 2;
-    private static final int HEADING_CRF_REVISION_NOTES_INDEX = 3;
-
-    private static final String SHEET_SECTIONS = "Sections";
-    private static final String SECTION_LABEL = "SECTION_LABEL";
-    private static final String SECTION_TITLE = "SECTION_TITLE";
-    private static final String SECTION_SUBTITLE = "SUBTITLE";
-    private static final String SECTION_INSTRUCTIONS = "INSTRUCTIONS";
-    private static final String SECTION_PAGE_NUMBER = "PAGE_NUMBER";
-    private static final String SECTION_PARENT_SECTION = "PARENT_SECTION";
-    private static final int SECTION_LABEL_INDEX = 0;
-    private static final int SECTION_TITLE_INDEX = 1;
-    private static final int SECTION_SUBTITLE_INDEX = 2;
-    private static final int SECTION_INSTRUCTIONS_INDEX = 3;
-    private static final int SECTION_PAGE_NUMBER_INDEX = 4;
-    private static final int SECTION_PARENT_SECTION_INDEX = 5;
-
-    private static final String SHEET_GROUPS = "Groups";
-    private static final String GROUP_LABEL = "GROUP_LABEL";
-    private static final String GROUP_LAYOUT = "GROUP_LAYOUT";
-    private static final String GROUP_HEADER = "GROUP_HEADER";
-    private static final String GROUP_REPEAT_NUMBER = "GROUP_REPEAT_NUMBER";
-    private static final String GROUP_REPEAT_MAX = "GROUP_REPEAT_MAX";
-    private static final String GROUP_DISPLAY_STATUS = "GROUP_DISPLAY_STATUS";
-    private static final int GROUP_LABEL_INDEX = 0;
-    private static final int GROUP_LAYOUT_INDEX = 1;
-    private static final int GROUP_HEADER_INDEX = 2;
-    private static final int GROUP_REPEAT_NUMBER_INDEX = 3;
-    private static final int GROUP_REPEAT_MAX_INDEX = 4;
-    private static final int GROUP_DISPLAY_STATUS_INDEX  = 5;
-
-    private static final String GROUP_LAYOUT_GRID = "GRID";
-
-    private static final String SHEET_ITEMS = "Items";
-    private static final String ITEM_NAME = "ITEM_NAME";
-    private static final String ITEM_DESCRIPTION_LABEL = "DESCRIPTION_LABEL";
-    private static final String ITEM_LEFT_ITEM_TEXT = "LEFT_ITEM_TEXT";
-    private static final String ITEM_UNITS = "UNITS";
-    private static final String ITEM_RIGHT_ITEM_TEXT = "RIGHT_ITEM_TEXT";
-    private static final String ITEM_SECTION_LABEL = "SECTION_LABEL";
-    private static final String ITEM_GROUP_LABEL = "GROUP_LABEL";
-    private static final String ITEM_HEADER = "HEADER";
-    private static final String ITEM_SUBHEADER = "SUBHEADER";
-    private static final String ITEM_PARENT_ITEM = "PARENT_ITEM";
-    private static final String ITEM_COLUMN_NUMBER = "COLUMN_NUMBER";
-    private static final String ITEM_PAGE_NUMBER = "PAGE_NUMBER";
-    private static final String ITEM_QUESTION_NUMBER = "QUESTION_NUMBER";
-    private static final String ITEM_RESPONSE_TYPE = "RESPONSE_TYPE";
-    private static final String ITEM_RESPONSE_LABEL = "RESPONSE_LABEL";
-    private static final String ITEM_RESPONSE_OPTIONS_TEXT = "RESPONSE_OPTIONS_TEXT";
-    private static final String ITEM_RESPONSE_VALUES_OR_CALCULATIONS = "RESPONSE_VALUES_OR_CALCULATIONS";
-    private static final String ITEM_RESPONSE_LAYOUT = "RESPONSE_LAYOUT";
-    private static final String ITEM_DEFAULT_VALUE = "DEFAULT_VALUE";
-    private static final String ITEM_DATA_TYPE = "DATA_TYPE";
-    private static final String ITEM_WIDTH_DECIMAL = "WIDTH_DECIMAL";
-    private static final String ITEM_VALIDATION = "VALIDATION";
-    private static final String ITEM_VALIDATION_ERROR_MESSAGE = "VALIDATION_ERROR_MESSAGE";
-    private static final String ITEM_PHI = "PHI";
-    private static final String ITEM_REQUIRED = "REQUIRED";
-    private static final String ITEM_DISPLAY_STATUS = "ITEM_DISPLAY_STATUS";
-    private static final String ITEM_SIMPLE_CONDITIONAL_DISPLAY = "SIMPLE_CONDITIONAL_DISPLAY";
-    private static final int ITEM_NAME_INDEX = 0;
-    private static final int ITEM_DESCRIPTION_LABEL_INDEX = 1;
-    private static final int ITEM_LEFT_ITEM_TEXT_INDEX = 2;
-    private static final int ITEM_UNITS_INDEX = 3;
-    private static final int ITEM_RIGHT_ITEM_TEXT_INDEX = 4;
-    private static final int ITEM_SECTION_LABEL_INDEX = 5;
-    private static final int ITEM_GROUP_LABEL_INDEX = 6;
-    private static final int ITEM_HEADER_INDEX = 7;
-    private static final int ITEM_SUBHEADER_INDEX = 8;
-    private static final int ITEM_PARENT_ITEM_INDEX = 9;
-    private static final int ITEM_COLUMN_NUMBER_INDEX = 10;
-    private static final int ITEM_PAGE_NUMBER_INDEX = 11;
-    private static final int ITEM_QUESTION_NUMBER_INDEX = 12;
-    private static final int ITEM_RESPONSE_TYPE_INDEX = 13;
-    private static final int ITEM_RESPONSE_LABEL_INDEX = 14;
-    private static final int ITEM_RESPONSE_OPTIONS_TEXT_INDEX = 15;
-    private static final int ITEM_RESPONSE_VALUES_OR_CALCULATIONS_INDEX = 16;
-    private static final int ITEM_RESPONSE_LAYOUT_INDEX = 17;
-    private static final int ITEM_DEFAULT_VALUE_INDEX = 18;
-    private static final int ITEM_DATA_TYPE_INDEX = 19;
-    private static final int ITEM_WIDTH_DECIMAL_INDEX = 20;
-    private static final int ITEM_VALIDATION_INDEX = 21;
-    private static final int ITEM_VALIDATION_ERROR_MESSAGE_INDEX = 22;
-    private static final int ITEM_PHI_INDEX = 23;
-    private static final int ITEM_REQUIRED_INDEX = 24;
-    private static final int ITEM_DISPLAY_STATUS_INDEX = 25;
-    private static final int ITEM_SIMPLE_CONDITIONAL_DISPLAY_INDEX = 26;
-
-    private static final String INSTRUCTIONS_SHEET = "Instructions";
-    private static final String INSTRUCTIONS_INFO = "Generated by CRF Builder (https://github.com/MetadataRegistry/crf-builder)";
-    private static final String INSTRUCTIONS_VERSION = "3.1.3";
-    private static final String INSTRUCTIONS_VERSION_VALUE = "Version: " + INSTRUCTIONS_VERSION;
-    private static final int INSTRUCTIONS_INFO_ROW = 0;
-    private static final int INSTRUCTIONS_INFO_COL = 0;
-    private static final int INSTRUCTIONS_VERSION_ROW = 1;
-    private static final int INSTRUCTIONS_VERSION_COL = 0;
+    static final String SHEET_CRF = "CRF";
+    static final String HEADING_CRF_NAME = "CRF_NAME";
+    static final String HEADING_CRF_VERSION = "VERSION";
+    static final String HEADING_CRF_VERSION_DESCRIPTION = "VERSION_DESCRIPTION";
+    static final String HEADING_CRF_REVISION_NOTES = "REVISION_NOTES";
+    static final int HEADING_CRF_NAME_INDEX = 0;
+    static final int HEADING_CRF_VERSION_INDEX = 1;
+    static final int HEADING_CRF_VERSION_DESCRIPTION_INDEX = 2;
+    static final int HEADING_CRF_REVISION_NOTES_INDEX = 3;
+
+    static final String SHEET_SECTIONS = "Sections";
+    static final String SECTION_LABEL = "SECTION_LABEL";
+    static final String SECTION_TITLE = "SECTION_TITLE";
+    static final String SECTION_SUBTITLE = "SUBTITLE";
+    static final String SECTION_INSTRUCTIONS = "INSTRUCTIONS";
+    static final String SECTION_PAGE_NUMBER = "PAGE_NUMBER";
+    static final String SECTION_PARENT_SECTION = "PARENT_SECTION";
+    static final int SECTION_LABEL_INDEX = 0;
+    static final int SECTION_TITLE_INDEX = 1;
+    static final int SECTION_SUBTITLE_INDEX = 2;
+    static final int SECTION_INSTRUCTIONS_INDEX = 3;
+    static final int SECTION_PAGE_NUMBER_INDEX = 4;
+    static final int SECTION_PARENT_SECTION_INDEX = 5;
+
+    static final String SHEET_GROUPS = "Groups";
+    static final String GROUP_LABEL = "GROUP_LABEL";
+    static final String GROUP_LAYOUT = "GROUP_LAYOUT";
+    static final String GROUP_HEADER = "GROUP_HEADER";
+    static final String GROUP_REPEAT_NUMBER = "GROUP_REPEAT_NUMBER";
+    static final String GROUP_REPEAT_MAX = "GROUP_REPEAT_MAX";
+    static final String GROUP_DISPLAY_STATUS = "GROUP_DISPLAY_STATUS";
+    static final int GROUP_LABEL_INDEX = 0;
+    static final int GROUP_LAYOUT_INDEX = 1;
+    static final int GROUP_HEADER_INDEX = 2;
+    static final int GROUP_REPEAT_NUMBER_INDEX = 3;
+    static final int GROUP_REPEAT_MAX_INDEX = 4;
+    static final int GROUP_DISPLAY_STATUS_INDEX  = 5;
+
+    static final String GROUP_LAYOUT_GRID = "GRID";
+
+    static final String SHEET_ITEMS = "Items";
+    static final String ITEM_NAME = "ITEM_NAME";
+    static final String ITEM_DESCRIPTION_LABEL = "DESCRIPTION_LABEL";
+    static final String ITEM_LEFT_ITEM_TEXT = "LEFT_ITEM_TEXT";
+    static final String ITEM_UNITS = "UNITS";
+    static final String ITEM_RIGHT_ITEM_TEXT = "RIGHT_ITEM_TEXT";
+    static final String ITEM_SECTION_LABEL = "SECTION_LABEL";
+    static final String ITEM_GROUP_LABEL = "GROUP_LABEL";
+    static final String ITEM_HEADER = "HEADER";
+    static final String ITEM_SUBHEADER = "SUBHEADER";
+    static final String ITEM_PARENT_ITEM = "PARENT_ITEM";
+    static final String ITEM_COLUMN_NUMBER = "COLUMN_NUMBER";
+    static final String ITEM_PAGE_NUMBER = "PAGE_NUMBER";
+    static final String ITEM_QUESTION_NUMBER = "QUESTION_NUMBER";
+    static final String ITEM_RESPONSE_TYPE = "RESPONSE_TYPE";
+    static final String ITEM_RESPONSE_LABEL = "RESPONSE_LABEL";
+    static final String ITEM_RESPONSE_OPTIONS_TEXT = "RESPONSE_OPTIONS_TEXT";
+    static final String ITEM_RESPONSE_VALUES_OR_CALCULATIONS = "RESPONSE_VALUES_OR_CALCULATIONS";
+    static final String ITEM_RESPONSE_LAYOUT = "RESPONSE_LAYOUT";
+    static final String ITEM_DEFAULT_VALUE = "DEFAULT_VALUE";
+    static final String ITEM_DATA_TYPE = "DATA_TYPE";
+    static final String ITEM_WIDTH_DECIMAL = "WIDTH_DECIMAL";
+    static final String ITEM_VALIDATION = "VALIDATION";
+    static final String ITEM_VALIDATION_ERROR_MESSAGE = "VALIDATION_ERROR_MESSAGE";
+    static final String ITEM_PHI = "PHI";
+    static final String ITEM_REQUIRED = "REQUIRED";
+    static final String ITEM_DISPLAY_STATUS = "ITEM_DISPLAY_STATUS";
+    static final String ITEM_SIMPLE_CONDITIONAL_DISPLAY = "SIMPLE_CONDITIONAL_DISPLAY";
+    static final int ITEM_NAME_INDEX = 0;
+    static final int ITEM_DESCRIPTION_LABEL_INDEX = 1;
+    static final int ITEM_LEFT_ITEM_TEXT_INDEX = 2;
+    static final int ITEM_UNITS_INDEX = 3;
+    static final int ITEM_RIGHT_ITEM_TEXT_INDEX = 4;
+    static final int ITEM_SECTION_LABEL_INDEX = 5;
+    static final int ITEM_GROUP_LABEL_INDEX = 6;
+    static final int ITEM_HEADER_INDEX = 7;
+    static final int ITEM_SUBHEADER_INDEX = 8;
+    static final int ITEM_PARENT_ITEM_INDEX = 9;
+    static final int ITEM_COLUMN_NUMBER_INDEX = 10;
+    static final int ITEM_PAGE_NUMBER_INDEX = 11;
+    static final int ITEM_QUESTION_NUMBER_INDEX = 12;
+    static final int ITEM_RESPONSE_TYPE_INDEX = 13;
+    static final int ITEM_RESPONSE_LABEL_INDEX = 14;
+    static final int ITEM_RESPONSE_OPTIONS_TEXT_INDEX = 15;
+    static final int ITEM_RESPONSE_VALUES_OR_CALCULATIONS_INDEX = 16;
+    static final int ITEM_RESPONSE_LAYOUT_INDEX = 17;
+    static final int ITEM_DEFAULT_VALUE_INDEX = 18;
+    static final int ITEM_DATA_TYPE_INDEX = 19;
+    static final int ITEM_WIDTH_DECIMAL_INDEX = 20;
+    static final int ITEM_VALIDATION_INDEX = 21;
+    static final int ITEM_VALIDATION_ERROR_MESSAGE_INDEX = 22;
+    static final int ITEM_PHI_INDEX = 23;
+    static final int ITEM_REQUIRED_INDEX = 24;
+    static final int ITEM_DISPLAY_STATUS_INDEX = 25;
+    static final int ITEM_SIMPLE_CONDITIONAL_DISPLAY_INDEX = 26;
+
+    static final String INSTRUCTIONS_SHEET = "Instructions";
+    static final String INSTRUCTIONS_INFO = "Generated by CRF Builder (https://github.com/MetadataRegistry/crf-builder)";
+    static final String INSTRUCTIONS_VERSION = "3.1.3";
+    static final String INSTRUCTIONS_VERSION_VALUE = "Version: " + INSTRUCTIONS_VERSION;
+    static final int INSTRUCTIONS_INFO_ROW = 0;
+    static final int INSTRUCTIONS_INFO_COL = 0;
+    static final int INSTRUCTIONS_VERSION_ROW = 1;
+    static final int INSTRUCTIONS_VERSION_COL = 0;
+
+    static final SheetTemplate CRF_SHEET = new SheetTemplate(SHEET_CRF,
+        HEADING_CRF_NAME_INDEX, HEADING_CRF_NAME,
+        HEADING_CRF_VERSION_INDEX, HEADING_CRF_VERSION,
+        HEADING_CRF_VERSION_DESCRIPTION_INDEX, HEADING_CRF_VERSION_DESCRIPTION,
+        HEADING_CRF_REVISION_NOTES_INDEX, HEADING_CRF_REVISION_NOTES
+    );
+
+    static final SheetTemplate SECTIONS_SHEET = new SheetTemplate(SHEET_SECTIONS,
+        SECTION_LABEL_INDEX, SECTION_LABEL,
+        SECTION_TITLE_INDEX, SECTION_TITLE,
+        SECTION_SUBTITLE_INDEX, SECTION_SUBTITLE,
+        SECTION_INSTRUCTIONS_INDEX, SECTION_INSTRUCTIONS,
+        SECTION_PAGE_NUMBER_INDEX, SECTION_PAGE_NUMBER,
+        SECTION_PARENT_SECTION_INDEX, SECTION_PARENT_SECTION
+    );
+
+    static final SheetTemplate GROUPS_SHEET = new SheetTemplate(SHEET_GROUPS,
+        GROUP_LABEL_INDEX, GROUP_LABEL,
+        GROUP_LAYOUT_INDEX, GROUP_LAYOUT,
+        GROUP_HEADER_INDEX, GROUP_HEADER,
+        GROUP_REPEAT_NUMBER_INDEX, GROUP_REPEAT_NUMBER,
+        GROUP_REPEAT_MAX_INDEX, GROUP_REPEAT_MAX,
+        GROUP_DISPLAY_STATUS_INDEX, GROUP_DISPLAY_STATUS
+    );
+
+    static final SheetTemplate ITEMS_SHEET = new SheetTemplate(SHEET_ITEMS,
+        ITEM_NAME_INDEX, ITEM_NAME,
+        ITEM_DESCRIPTION_LABEL_INDEX, ITEM_DESCRIPTION_LABEL,
+        ITEM_LEFT_ITEM_TEXT_INDEX, ITEM_LEFT_ITEM_TEXT,
+        ITEM_UNITS_INDEX, ITEM_UNITS,
+        ITEM_RIGHT_ITEM_TEXT_INDEX, ITEM_RIGHT_ITEM_TEXT,
+        ITEM_SECTION_LABEL_INDEX, ITEM_SECTION_LABEL,
+        ITEM_GROUP_LABEL_INDEX, ITEM_GROUP_LABEL,
+        ITEM_HEADER_INDEX, ITEM_HEADER,
+        ITEM_SUBHEADER_INDEX, ITEM_SUBHEADER,
+        ITEM_PARENT_ITEM_INDEX, ITEM_PARENT_ITEM,
+        ITEM_COLUMN_NUMBER_INDEX, ITEM_COLUMN_NUMBER,
+        ITEM_PAGE_NUMBER_INDEX, ITEM_PAGE_NUMBER,
+        ITEM_QUESTION_NUMBER_INDEX, ITEM_QUESTION_NUMBER,
+        ITEM_RESPONSE_TYPE_INDEX, ITEM_RESPONSE_TYPE,
+        ITEM_RESPONSE_LABEL_INDEX, ITEM_RESPONSE_LABEL,
+        ITEM_RESPONSE_OPTIONS_TEXT_INDEX, ITEM_RESPONSE_OPTIONS_TEXT,
+        ITEM_RESPONSE_VALUES_OR_CALCULATIONS_INDEX, ITEM_RESPONSE_VALUES_OR_CALCULATIONS,
+        ITEM_RESPONSE_LAYOUT_INDEX, ITEM_RESPONSE_LAYOUT,
+        ITEM_DEFAULT_VALUE_INDEX, ITEM_DEFAULT_VALUE,
+        ITEM_DATA_TYPE_INDEX, ITEM_DATA_TYPE,
+        ITEM_WIDTH_DECIMAL_INDEX, ITEM_WIDTH_DECIMAL,
+        ITEM_VALIDATION_INDEX, ITEM_VALIDATION,
+        ITEM_VALIDATION_ERROR_MESSAGE_INDEX, ITEM_VALIDATION_ERROR_MESSAGE,
+        ITEM_PHI_INDEX, ITEM_PHI,
+        ITEM_REQUIRED_INDEX, ITEM_REQUIRED,
+        ITEM_DISPLAY_STATUS_INDEX, ITEM_DISPLAY_STATUS,
+        ITEM_SIMPLE_CONDITIONAL_DISPLAY_INDEX, ITEM_SIMPLE_CONDITIONAL_DISPLAY
+    );
+
+    /**
+     * Default number of rows kept in memory while writing the streaming <code>.xlsx</code> workbook.
+     */
+    public static final int DEFAULT_ROW_ACCESS_WINDOW_SIZE = SXSSFWorkbook.DEFAULT_WINDOW_SIZE;
 
     private final CaseReportForm form;
 
+    /**
+     * Rows of the sections written last time, empty unless the rows are reused.
+     */
+    private Map<Section, SectionRows> sectionRows = new IdentityHashMap<Section, SectionRows>();
+
+    private boolean reuseRows;
+
+    private SerializationListener listener = SerializationListener.NONE;
+
     /**
      * Creates new serializer for given form.
      * @param form form to be serialized
@@ -128,243 +209,157 @@ public class CaseReportFormSerializer {
         this.form = form;
     }
 
+    /**
+     * Sets the listener notified about the progress of each write, e.g. {@link RecordingSerializationListener}.
+     * @param listener the listener or <code>null</code> to stop reporting
+     */
+    public void setListener(SerializationListener listener) {
+        this.listener = listener == null ? SerializationListener.NONE : listener;
+    }
+
+    /**
+     * Keeps the rows of each section after the write so the next write by this serializer only reads the sections
+     * which have changed since. The rows of the whole form then stay in memory as long as the serializer, so the rows
+     * are not kept by default and they should not be kept for the huge forms written by {@link #writeXlsx(OutputStream)}.
+     * @param reuseRows true to keep the rows between the writes
+     */
+    public void setReuseRows(boolean reuseRows) {
+        this.reuseRows = reuseRows;
+        if (!reuseRows) {
+            sectionRows = new IdentityHashMap<Section, SectionRows>();
+        }
+    }
+
     /**
      * Writes the form as excel file to the output stream, usually the FileOutputStream.
      * @param outputStream output stream to write the form to
      */
     public void write(OutputStream outputStream) throws IOException {
-        HSSFWorkbook workbook = new HSSFWorkbook();
-
-        HSSFSheet crfSheet = workbook.createSheet(SHEET_CRF);
-        HSSFRow crfHeadingsRow = crfSheet.createRow(0);
-
-        crfHeadingsRow.createCell(HEADING_CRF_NAME_INDEX).setCellValue(HEADING_CRF_NAME);
-        crfHeadingsRow.createCell(HEADING_CRF_VERSION_INDEX).setCellValue(HEADING_CRF_VERSION);
-        crfHeadingsRow.createCell(HEADING_CRF_VERSION_DESCRIPTION_INDEX).setCellValue(HEADING_CRF_VERSION_DESCRIPTION);
-        crfHeadingsRow.createCell(HEADING_CRF_REVISION_NOTES_INDEX).setCellValue(HEADING_CRF_REVISION_NOTES);
-
-        HSSFRow crfRow = crfSheet.createRow(1);
-
-        crfRow.createCell(HEADING_CRF_NAME_INDEX).setCellValue(form.getName());
-        crfRow.createCell(HEADING_CRF_VERSION_INDEX).setCellValue(form.getVersion());
-        crfRow.createCell(HEADING_CRF_VERSION_DESCRIPTION_INDEX).setCellValue(form.getVersionDescription());
-        crfRow.createCell(HEADING_CRF_REVISION_NOTES_INDEX).setCellValue(form.getRevisionNotes());
-
-        HSSFSheet sectionsSheet = workbook.createSheet(SHEET_SECTIONS);
-        HSSFRow sectionHeadingsRow = sectionsSheet.createRow(0);
-
-        sectionHeadingsRow.createCell(SECTION_LABEL_INDEX).setCellValue(SECTION_LABEL);
-        sectionHeadingsRow.createCell(SECTION_TITLE_INDEX).setCellValue(SECTION_TITLE);
-        sectionHeadingsRow.createCell(SECTION_SUBTITLE_INDEX).setCellValue(SECTION_SUBTITLE);
-        sectionHeadingsRow.createCell(SECTION_INSTRUCTIONS_INDEX).setCellValue(SECTION_INSTRUCTIONS);
-        sectionHeadingsRow.createCell(SECTION_PAGE_NUMBER_INDEX).setCellValue(SECTION_PAGE_NUMBER);
-        sectionHeadingsRow.createCell(SECTION_PARENT_SECTION_INDEX).setCellValue(SECTION_PARENT_SECTION);
-
-        HSSFSheet groupsSheet = workbook.createSheet(SHEET_GROUPS);
-        HSSFRow groupHeadingsRow = groupsSheet.createRow(0);
-        groupHeadingsRow.createCell(GROUP_LABEL_INDEX).setCellValue(GROUP_LABEL);
-        groupHeadingsRow.createCell(GROUP_LAYOUT_INDEX).setCellValue(GROUP_LAYOUT);
-        groupHeadingsRow.createCell(GROUP_HEADER_INDEX).setCellValue(GROUP_HEADER);
-        groupHeadingsRow.createCell(GROUP_REPEAT_NUMBER_INDEX).setCellValue(GROUP_REPEAT_NUMBER);
-        groupHeadingsRow.createCell(GROUP_REPEAT_MAX_INDEX).setCellValue(GROUP_REPEAT_MAX);
-        groupHeadingsRow.createCell(GROUP_DISPLAY_STATUS_INDEX ).setCellValue(GROUP_DISPLAY_STATUS);
-
-
-        HSSFSheet itemsSheet = workbook.createSheet(SHEET_ITEMS);
-        HSSFRow itemsHeadingsRow = itemsSheet.createRow(0);
-        itemsHeadingsRow.createCell(ITEM_NAME_INDEX).setCellValue(ITEM_NAME);
-        itemsHeadingsRow.createCell(ITEM_DESCRIPTION_LABEL_INDEX).setCellValue(ITEM_DESCRIPTION_LABEL);
-        itemsHeadingsRow.createCell(ITEM_LEFT_ITEM_TEXT_INDEX).setCellValue(ITEM_LEFT_ITEM_TEXT);
-        itemsHeadingsRow.createCell(ITEM_UNITS_INDEX).setCellValue(ITEM_UNITS);
-        itemsHeadingsRow.createCell(ITEM_RIGHT_ITEM_TEXT_INDEX).setCellValue(ITEM_RIGHT_ITEM_TEXT);
-        itemsHeadingsRow.createCell(ITEM_SECTION_LABEL_INDEX).setCellValue(ITEM_SECTION_LABEL);
-        itemsHeadingsRow.createCell(ITEM_GROUP_LABEL_INDEX).setCellValue(ITEM_GROUP_LABEL);
-        itemsHeadingsRow.createCell(ITEM_HEADER_INDEX).setCellValue(ITEM_HEADER);
-        itemsHeadingsRow.createCell(ITEM_SUBHEADER_INDEX).setCellValue(ITEM_SUBHEADER);
-        itemsHeadingsRow.createCell(ITEM_PARENT_ITEM_INDEX).setCellValue(ITEM_PARENT_ITEM);
-        itemsHeadingsRow.createCell(ITEM_COLUMN_NUMBER_INDEX).setCellValue(ITEM_COLUMN_NUMBER);
-        itemsHeadingsRow.createCell(ITEM_PAGE_NUMBER_INDEX).setCellValue(ITEM_PAGE_NUMBER);
-        itemsHeadingsRow.createCell(ITEM_QUESTION_NUMBER_INDEX).setCellValue(ITEM_QUESTION_NUMBER);
-        itemsHeadingsRow.createCell(ITEM_RESPONSE_TYPE_INDEX).setCellValue(ITEM_RESPONSE_TYPE);
-        itemsHeadingsRow.createCell(ITEM_RESPONSE_LABEL_INDEX).setCellValue(ITEM_RESPONSE_LABEL);
-        itemsHeadingsRow.createCell(ITEM_RESPONSE_OPTIONS_TEXT_INDEX).setCellValue(ITEM_RESPONSE_OPTIONS_TEXT);
-        itemsHeadingsRow.createCell(ITEM_RESPONSE_VALUES_OR_CALCULATIONS_INDEX).setCellValue(ITEM_RESPONSE_VALUES_OR_CALCULATIONS);
-        itemsHeadingsRow.createCell(ITEM_RESPONSE_LAYOUT_INDEX).setCellValue(ITEM_RESPONSE_LAYOUT);
-        itemsHeadingsRow.createCell(ITEM_DEFAULT_VALUE_INDEX).setCellValue(ITEM_DEFAULT_VALUE);
-        itemsHeadingsRow.createCell(ITEM_DATA_TYPE_INDEX).setCellValue(ITEM_DATA_TYPE);
-        itemsHeadingsRow.createCell(ITEM_WIDTH_DECIMAL_INDEX).setCellValue(ITEM_WIDTH_DECIMAL);
-        itemsHeadingsRow.createCell(ITEM_VALIDATION_INDEX).setCellValue(ITEM_VALIDATION);
-        itemsHeadingsRow.createCell(ITEM_VALIDATION_ERROR_MESSAGE_INDEX).setCellValue(ITEM_VALIDATION_ERROR_MESSAGE);
-        itemsHeadingsRow.createCell(ITEM_PHI_INDEX).setCellValue(ITEM_PHI);
-        itemsHeadingsRow.createCell(ITEM_REQUIRED_INDEX).setCellValue(ITEM_REQUIRED);
-        itemsHeadingsRow.createCell(ITEM_DISPLAY_STATUS_INDEX).setCellValue(ITEM_DISPLAY_STATUS);
-        itemsHeadingsRow.createCell(ITEM_SIMPLE_CONDITIONAL_DISPLAY_INDEX).setCellValue(ITEM_SIMPLE_CONDITIONAL_DISPLAY);
-
-        int sectionCounter = 1;
-        int groupCounter = 1;
-        int itemCounter = 1;
-        for (Section section : form.getSections().values()) {
-            HSSFRow sectionRow = sectionsSheet.createRow(sectionCounter);
-
-            sectionRow.createCell(SECTION_LABEL_INDEX).setCellValue(section.getLabel());
-            sectionRow.createCell(SECTION_TITLE_INDEX).setCellValue(section.getTitle());
-            sectionRow.createCell(SECTION_SUBTITLE_INDEX).setCellValue(section.getSubtitle());
-            sectionRow.createCell(SECTION_INSTRUCTIONS_INDEX).setCellValue(section.getInstructions());
-            sectionRow.createCell(SECTION_PAGE_NUMBER_INDEX).setCellValue(section.getPageNumber());
-
-            for (Group group : section.getGroups().values()) {
-                HSSFRow groupRow = groupsSheet.createRow(groupCounter);
-
-                groupRow.createCell(GROUP_LABEL_INDEX).setCellValue(group.getLabel());
-                if (DisplayStatus.HIDE.equals(group.getDisplayStatus())) {
-                    groupRow.createCell(GROUP_DISPLAY_STATUS_INDEX ).setCellValue(group.getDisplayStatus().toString());
-                }
-
-                if (group instanceof GridGroup) {
-                    GridGroup grid = (GridGroup) group;
-                    groupRow.createCell(GROUP_LAYOUT_INDEX).setCellValue(GROUP_LAYOUT_GRID);
-                    groupRow.createCell(GROUP_HEADER_INDEX).setCellValue(grid.getHeader());
-                    if (grid.getRepeatNum() != null) {
-                        groupRow.createCell(GROUP_REPEAT_NUMBER_INDEX).setCellValue(grid.getRepeatNum());
-                    } else {
-                        groupRow.createCell(GROUP_REPEAT_NUMBER_INDEX).setCellValue("");
-                    }
-                    if (grid.getRepeatMax() != null) {
-                        groupRow.createCell(GROUP_REPEAT_MAX_INDEX).setCellValue(grid.getRepeatMax());
-                    } else {
-                        groupRow.createCell(GROUP_REPEAT_MAX_INDEX).setCellValue("");
-                    }
-
-                } else {
-                    groupRow.createCell(GROUP_LAYOUT_INDEX).setCellValue("");
-                    groupRow.createCell(GROUP_HEADER_INDEX).setCellValue("");
-                    groupRow.createCell(GROUP_REPEAT_NUMBER_INDEX).setCellValue("");
-                    groupRow.createCell(GROUP_REPEAT_MAX_INDEX).setCellValue("");
-                }
-
-                groupCounter++;
-            }
+        write(new HSSFWorkbook(), outputStream);
+    }
 
-            for (Item item : section.getItems().values()) {
-                HSSFRow itemRow = itemsSheet.createRow(itemCounter);
-
-                itemRow.createCell(ITEM_NAME_INDEX).setCellValue(item.getName());
-                itemRow.createCell(ITEM_DESCRIPTION_LABEL_INDEX).setCellValue(item.getDescriptionLabel());
-                itemRow.createCell(ITEM_LEFT_ITEM_TEXT_INDEX).setCellValue(item.getLeftItemText());
-                itemRow.createCell(ITEM_UNITS_INDEX).setCellValue(item.getUnits());
-                itemRow.createCell(ITEM_RIGHT_ITEM_TEXT_INDEX).setCellValue(item.getRightItemText());
-                itemRow.createCell(ITEM_SECTION_LABEL_INDEX).setCellValue(item.getSection().getLabel());
-                itemRow.createCell(ITEM_HEADER_INDEX).setCellValue(item.getHeader());
-                itemRow.createCell(ITEM_SUBHEADER_INDEX).setCellValue(item.getSubheader());
-                itemRow.createCell(ITEM_PARENT_ITEM_INDEX).setCellValue("");
-                itemRow.createCell(ITEM_PAGE_NUMBER_INDEX).setCellValue(item.getPageNumber());
-                itemRow.createCell(ITEM_QUESTION_NUMBER_INDEX).setCellValue(item.getQuestionNumber());
-                itemRow.createCell(ITEM_RESPONSE_TYPE_INDEX).setCellValue(item.getResponseType().getExcelValue());
-                itemRow.createCell(ITEM_RESPONSE_LABEL_INDEX).setCellValue(item.getResponseLabel());
-                itemRow.createCell(ITEM_RESPONSE_OPTIONS_TEXT_INDEX).setCellValue(item.getResponseOptionsText());
-                itemRow.createCell(ITEM_RESPONSE_VALUES_OR_CALCULATIONS_INDEX).setCellValue(item.getResponseValuesOrCalculations());
-                itemRow.createCell(ITEM_DEFAULT_VALUE_INDEX).setCellValue(item.getDefaultValue());
-                itemRow.createCell(ITEM_DATA_TYPE_INDEX).setCellValue(item.getDataType().toString());
-                itemRow.createCell(ITEM_WIDTH_DECIMAL_INDEX).setCellValue(item.getWidthDecimal());
-                itemRow.createCell(ITEM_VALIDATION_INDEX).setCellValue(item.getValidation());
-                itemRow.createCell(ITEM_VALIDATION_ERROR_MESSAGE_INDEX).setCellValue(item.getValidationErrorMessage());
-                itemRow.createCell(ITEM_SIMPLE_CONDITIONAL_DISPLAY_INDEX).setCellValue(item.getSimpleConditionalDisplay());
-                itemRow.createCell(ITEM_RESPONSE_LAYOUT_INDEX).setCellValue(nullSafe(item.getResponseLayout()));
-                itemRow.createCell(ITEM_DATA_TYPE_INDEX).setCellValue(nullSafe(item.getDataType()));
-                itemRow.createCell(ITEM_DISPLAY_STATUS_INDEX).setCellValue(nullSafe(item.getDisplayStatus()));
-
-                if (item.getGroup() != null) {
-                    itemRow.createCell(ITEM_GROUP_LABEL_INDEX).setCellValue(item.getGroup().getLabel());
-                } else {
-                    itemRow.createCell(ITEM_GROUP_LABEL_INDEX).setCellValue("");
-                }
-
-                if (item.getPhi() != null) {
-                    itemRow.createCell(ITEM_PHI_INDEX).setCellValue(item.getPhi());
-                } else {
-                    itemRow.createCell(ITEM_PHI_INDEX).setCellValue("");
-                }
-
-                if (item.getRequired() != null) {
-                    itemRow.createCell(ITEM_REQUIRED_INDEX).setCellValue(item.getRequired());
-                } else {
-                    itemRow.createCell(ITEM_REQUIRED_INDEX).setCellValue("");
-                }
-
-                if (item.getColumnNumber() != null) {
-                    itemRow.createCell(ITEM_COLUMN_NUMBER_INDEX).setCellValue(item.getColumnNumber());
-                } else {
-                    itemRow.createCell(ITEM_COLUMN_NUMBER_INDEX).setCellValue("");
-                }
-
-                itemCounter++;
-            }
+    /**
+     * Writes the form as Office Open XML (<code>.xlsx</code>) file to the output stream keeping at most
+     * {@link #DEFAULT_ROW_ACCESS_WINDOW_SIZE} rows in memory.
+     * @param outputStream output stream to write the form to
+     */
+    public void writeXlsx(OutputStream outputStream) throws IOException {
+        writeXlsx(outputStream, DEFAULT_ROW_ACCESS_WINDOW_SIZE);
+    }
+
+    /**
+     * Writes the form as Office Open XML (<code>.xlsx</code>) file to the output stream. Only the last
+     * <code>rowAccessWindowSize</code> rows of each sheet are kept in memory, the older rows are flushed to temporary
+     * files so the memory consumption does not depend on the number of items in the form.
+     * @param outputStream output stream to write the form to
+     * @param rowAccessWindowSize number of rows kept in memory for each sheet
+     */
+    public void writeXlsx(OutputStream outputStream, int rowAccessWindowSize) throws IOException {
+        if (rowAccessWindowSize < 1) {
+            throw new IllegalArgumentException("Row access window size must be positive, got " + rowAccessWindowSize);
+        }
+        SXSSFWorkbook workbook = new SXSSFWorkbook(rowAccessWindowSize);
+        try {
+            write(workbook, outputStream);
+        } finally {
+            workbook.dispose();
+        }
+    }
 
-            sectionCounter++;
+    /**
+     * Writes the CRF, Sections, Groups and Items sheets as plain text files named after the sheets, e.g.
+     * <code>Items.csv</code>. This is much faster than writing the excel file if only the tables are needed.
+     * @param directory existing directory to write the files to
+     * @param format format of the files
+     */
+    public void writeText(File directory, TextFormat format) throws IOException {
+        if (!directory.isDirectory()) {
+            throw new IllegalArgumentException("Directory does not exist: " + directory);
         }
+        DelimitedTextRowSink sink = new DelimitedTextRowSink(directory, format);
+        try {
+            write(listener == SerializationListener.NONE ? sink : new InstrumentedRowSink(sink, listener));
+        } finally {
+            sink.close();
+        }
+    }
 
-        HSSFSheet instructionsSheet = workbook.createSheet(INSTRUCTIONS_SHEET);
-        HSSFRow instructionsInfoRow = instructionsSheet.createRow(INSTRUCTIONS_INFO_ROW);
-        HSSFCell instructionsInfoCell = instructionsInfoRow.createCell(INSTRUCTIONS_INFO_COL);
-        instructionsInfoCell.setCellValue(INSTRUCTIONS_INFO);
+    private void write(Workbook workbook, OutputStream outputStream) throws IOException {
+        RowSink sink = new WorkbookRowSink(workbook, outputStream, listener);
+        write(listener == SerializationListener.NONE ? sink : new InstrumentedRowSink(sink, listener));
+    }
 
-        HSSFRow instructionsVersionRow = instructionsSheet.createRow(INSTRUCTIONS_VERSION_ROW);
-        HSSFCell instructionsVersionCell = instructionsVersionRow.createCell(INSTRUCTIONS_VERSION_COL);
-        instructionsVersionCell.setCellValue(INSTRUCTIONS_VERSION_VALUE);
+    private void write(RowSink sink) throws IOException {
+        List<Object[]> crfRows = Collections.singletonList(new Object[] {
+            string(form.getName()),
+            string(form.getVersion()),
+            string(form.getVersionDescription()),
+            string(form.getRevisionNotes())
+        });
+        ColumnWidthEstimator crfWidths = null;
+        if (sink.needsWidths()) {
+            crfWidths = new ColumnWidthEstimator();
+            crfWidths.measure(crfRows.get(0));
+        }
 
-        makeHeaderRows(crfHeadingsRow, groupHeadingsRow, sectionHeadingsRow, itemsHeadingsRow);
+        sink.sheet(CRF_SHEET);
+        sink.rows(crfRows, crfWidths);
 
-        workbook.write(outputStream);
-    }
+        if (reuseRows) {
+            writeReusingRows(sink);
+        } else {
+            // each sheet is written section by section so only the rows of single section are in memory at a time
+            sink.sheet(SECTIONS_SHEET);
+            for (Section section : form.getSections().values()) {
+                SectionRows.writeSectionRow(section, sink);
+            }
 
-    private static void makeHeaderRows(HSSFRow... rows) {
-        for (HSSFRow row : rows) {
-            HSSFFont boldFont = row.getSheet().getWorkbook().createFont();
-            boldFont.setBoldweight(HSSFFont.BOLDWEIGHT_BOLD);
-            boldFont.setFontName(HSSFFont.FONT_ARIAL);
-            boldFont.setFontHeightInPoints((short)10);
-
-            HSSFCellStyle leftCellStyle = row.getSheet().getWorkbook().createCellStyle();
-            leftCellStyle.setFillPattern(HSSFCellStyle.SOLID_FOREGROUND);
-            leftCellStyle.setFillForegroundColor(HSSFColor.SKY_BLUE.index);
-            leftCellStyle.setBorderTop(HSSFCellStyle.BORDER_THIN);
-            leftCellStyle.setBorderBottom(HSSFCellStyle.BORDER_THIN);
-            leftCellStyle.setBorderLeft(HSSFCellStyle.BORDER_THIN);
-            leftCellStyle.setFont(boldFont);
-
-            HSSFCellStyle middleCellStyle = row.getSheet().getWorkbook().createCellStyle();
-            middleCellStyle.setFillPattern(HSSFCellStyle.SOLID_FOREGROUND);
-            middleCellStyle.setFillForegroundColor(HSSFColor.SKY_BLUE.index);
-            middleCellStyle.setBorderTop(HSSFCellStyle.BORDER_THIN);
-            middleCellStyle.setBorderBottom(HSSFCellStyle.BORDER_THIN);
-            middleCellStyle.setFont(boldFont);
-
-            HSSFCellStyle rightCellStyle = row.getSheet().getWorkbook().createCellStyle();
-            rightCellStyle.setFillPattern(HSSFCellStyle.SOLID_FOREGROUND);
-            rightCellStyle.setFillForegroundColor(HSSFColor.SKY_BLUE.index);
-            rightCellStyle.setBorderTop(HSSFCellStyle.BORDER_THIN);
-            rightCellStyle.setBorderBottom(HSSFCellStyle.BORDER_THIN);
-            rightCellStyle.setBorderRight(HSSFCellStyle.BORDER_THIN);
-            rightCellStyle.setFont(boldFont);
-
-            for (int i = row.getFirstCellNum() ; i < row.getLastCellNum() ; i++) {
-                HSSFCell cell = row.getCell(i);
-                if (i == row.getFirstCellNum()) {
-                    cell.setCellStyle(leftCellStyle);
-                } else if (i == row.getLastCellNum() - 1) {
-                    cell.setCellStyle(rightCellStyle);
-                } else {
-                    cell.setCellStyle(middleCellStyle);
-                }
-                row.getSheet().autoSizeColumn(i);
+            sink.sheet(GROUPS_SHEET);
+            for (Section section : form.getSections().values()) {
+                SectionRows.writeGroupRows(section, sink);
+            }
+
+            sink.sheet(ITEMS_SHEET);
+            for (Section section : form.getSections().values()) {
+                SectionRows.writeItemRows(section, sink);
             }
         }
+
+        sink.finish();
     }
 
-    private static <E extends Enum<E>> String nullSafe(Enum<E> enumValue) {
-        if (enumValue != null) {
-            return enumValue.toString();
+    private void writeReusingRows(RowSink sink) throws IOException {
+        List<SectionRows> formRows = new ArrayList<SectionRows>(form.getSections().size());
+        Map<Section, SectionRows> currentRows = new IdentityHashMap<Section, SectionRows>();
+        for (Section section : form.getSections().values()) {
+            SectionRows rows = sectionRows.get(section);
+            if (rows == null || !rows.isCurrent(section)) {
+                rows = SectionRows.of(section);
+            }
+            currentRows.put(section, rows);
+            formRows.add(rows);
+        }
+
+        // forget the sections which are no longer part of the form
+        sectionRows = currentRows;
+
+        sink.sheet(SECTIONS_SHEET);
+        for (SectionRows rows : formRows) {
+            sink.rows(rows.getSectionRows(), rows.getSectionWidths());
         }
-        return "";
+
+        sink.sheet(GROUPS_SHEET);
+        for (SectionRows rows : formRows) {
+            sink.rows(rows.getGroupRows(), rows.getGroupWidths());
+        }
+
+        sink.sheet(ITEMS_SHEET);
+        for (SectionRows rows : formRows) {
+            sink.rows(rows.getItemRows(), rows.getItemWidths());
+        }
+    }
+
+    private static Object string(String value) {
+        return value == null ? RowSink.BLANK : value;
     }
 }
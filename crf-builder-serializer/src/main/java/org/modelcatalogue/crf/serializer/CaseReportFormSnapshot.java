@@ -0,0 +1,505 @@
+package org.modelcatalogue.crf.serializer;
+
+import org.modelcatalogue.crf.model.*;
+import org.modelcatalogue.crf.model.validation.ValidationExpression;
+
+import java.io.*;
+import java.io.File;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * This class writes the in memory form model into compact binary snapshot and reads it back.
+ *
+ * Reading the snapshot is much faster than running the DSL script or importing the excel file so the snapshots can be
+ * used to cache the forms across restarts of the application (see {@link CaseReportFormSnapshotCache}).
+ *
+ * The snapshot starts with the header consisting of the magic bytes, the version of the format and the optional hash
+ * of the source the form has been loaded from. The header is followed by the table of all distinct strings used in
+ * the form and by the sections, groups, items and conditional displays. The strings are referenced by their position
+ * in the table and all the numbers are written as variable length integers so most of them take a single byte.
+ *
+ * The conditional displays are only kept if the controlling item belongs to the same form.
+ */
+public final class CaseReportFormSnapshot {
+
+    static final int VERSION = 1;
+
+    private static final byte[] MAGIC = {'C', 'R', 'F', 'S'};
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int GROUP = 0;
+    private static final int GRID = 1;
+
+    private static final int NO_RESPONSE_OPTIONS = 0;
+    private static final int CALCULATION = 1;
+    private static final int RESPONSE_OPTIONS = 2;
+
+    private static final Set<ResponseType> CALCULATIONS = EnumSet.of(ResponseType.CALCULATION, ResponseType.GROUP_CALCULATION, ResponseType.INSTANT_CALCULATION);
+
+    private static final ResponseType[] RESPONSE_TYPES = ResponseType.values();
+    private static final ResponseLayout[] RESPONSE_LAYOUTS = ResponseLayout.values();
+    private static final DataType[] DATA_TYPES = DataType.values();
+    private static final DisplayStatus[] DISPLAY_STATUSES = DisplayStatus.values();
+
+    private CaseReportFormSnapshot() {}
+
+    /**
+     * Writes the snapshot of the form.
+     * @param form form to be written
+     * @param outputStream output stream to write the snapshot to
+     */
+    public static void write(CaseReportForm form, OutputStream outputStream) throws IOException {
+        write(form, new byte[0], outputStream);
+    }
+
+    /**
+     * Writes the snapshot of the form together with the hash of the source the form has been loaded from.
+     * @param form form to be written
+     * @param sourceHash hash of the source of the form
+     * @param outputStream output stream to write the snapshot to
+     */
+    public static void write(CaseReportForm form, byte[] sourceHash, OutputStream outputStream) throws IOException {
+        Encoder body = new Encoder();
+        body.writeForm(form);
+
+        Encoder header = new Encoder();
+        header.writeBytes(MAGIC);
+        header.writeVarint(VERSION);
+        header.writeVarint(sourceHash.length);
+        header.writeBytes(sourceHash);
+        header.writeVarint(body.strings.size());
+        for (String string : body.strings.keySet()) {
+            byte[] bytes = string.getBytes(UTF_8);
+            header.writeVarint(bytes.length);
+            header.writeBytes(bytes);
+        }
+
+        header.bytes.writeTo(outputStream);
+        body.bytes.writeTo(outputStream);
+        outputStream.flush();
+    }
+
+    /**
+     * Reads the snapshot from the file. The file is memory mapped instead of being read through the stream.
+     * @param file snapshot file
+     * @return new form read from the snapshot
+     * @throws IOException if the file is not a snapshot of supported version
+     */
+    public static CaseReportForm read(File file) throws IOException {
+        return read(map(file));
+    }
+
+    /**
+     * Reads the snapshot from the buffer.
+     * @param buffer buffer containing the snapshot
+     * @return new form read from the snapshot
+     * @throws IOException if the buffer does not contain a snapshot of supported version
+     */
+    public static CaseReportForm read(ByteBuffer buffer) throws IOException {
+        try {
+            Decoder decoder = new Decoder(buffer);
+            decoder.readHeader();
+            return decoder.readForm();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("The snapshot is truncated", e);
+        }
+    }
+
+    /**
+     * Reads the snapshot from the file only if it has been written for the source of given hash.
+     * @param file snapshot file
+     * @param sourceHash expected hash of the source of the form
+     * @return new form read from the snapshot
+     * @throws IOException if the file is not a snapshot of supported version or it has been written for different source
+     */
+    static CaseReportForm read(File file, byte[] sourceHash) throws IOException {
+        try {
+            Decoder decoder = new Decoder(map(file));
+            if (!Arrays.equals(decoder.readHeader(), sourceHash)) {
+                throw new IOException("The snapshot " + file + " has been written for different source");
+            }
+            return decoder.readForm();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("The snapshot " + file + " is truncated", e);
+        }
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static final class Encoder {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+        final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+
+        void writeForm(CaseReportForm form) {
+            writeString(form.getName());
+            writeString(form.getVersion());
+            writeString(form.getVersionDescription());
+            writeString(form.getRevisionNotes());
+
+            List<Item> controlled = new ArrayList<Item>();
+
+            writeVarint(form.getSections().size());
+            for (Section section : form.getSections().values()) {
+                writeString(section.getLabel());
+                writeString(section.getTitle());
+                writeString(section.getSubtitle());
+                writeString(section.getInstructions());
+                writeString(section.getPageNumber());
+
+                Map<Group, Integer> groupIndices = new IdentityHashMap<Group, Integer>();
+                writeVarint(section.getGroups().size());
+                for (Group group : section.getGroups().values()) {
+                    groupIndices.put(group, groupIndices.size() + 1);
+                    writeGroup(group);
+                }
+
+                writeVarint(section.getItems().size());
+                for (Item item : section.getItems().values()) {
+                    Integer groupIndex = item.getGroup() == null ? null : groupIndices.get(item.getGroup());
+                    writeVarint(groupIndex == null ? 0 : groupIndex);
+                    writeItem(item);
+                    if (item.getConditionalDisplay() != null && belongsTo(form, item.getConditionalDisplay().getResponse().getItem())) {
+                        controlled.add(item);
+                    }
+                }
+            }
+
+            writeVarint(controlled.size());
+            for (Item item : controlled) {
+                ConditionalDisplay conditionalDisplay = item.getConditionalDisplay();
+                writeString(item.getName());
+                writeString(conditionalDisplay.getResponse().getItem().getName());
+                writeString(conditionalDisplay.getResponse().getText());
+                writeString(conditionalDisplay.getResponse().getValue());
+                writeString(conditionalDisplay.getMessage());
+            }
+        }
+
+        private static boolean belongsTo(CaseReportForm form, Item item) {
+            Section section = item.getSection();
+            return section != null && form.getSections().get(section.getLabel()) == section;
+        }
+
+        private void writeGroup(Group group) {
+            if (group instanceof GridGroup) {
+                GridGroup grid = (GridGroup) group;
+                writeVarint(GRID);
+                writeString(grid.getLabel());
+                writeEnum(grid.getDisplayStatus());
+                writeString(grid.getHeader());
+                writeInteger(grid.getRepeatNum());
+                writeInteger(grid.getRepeatMax());
+            } else {
+                writeVarint(GROUP);
+                writeString(group.getLabel());
+                writeEnum(group.getDisplayStatus());
+            }
+        }
+
+        private void writeItem(Item item) {
+            writeVarint(item.getResponseType().ordinal());
+            writeString(item.getName());
+            writeString(item.getDescriptionLabel());
+            writeString(item.getLeftItemText());
+            writeString(item.getUnits());
+            writeString(item.getRightItemText());
+            writeString(item.getHeader());
+            writeString(item.getSubheader());
+            writeInteger(item.getColumnNumber());
+            writeString(item.getPageNumber());
+            writeString(item.getQuestionNumber());
+            writeString(item.getResponseLabel());
+            writeEnum(item.getResponseLayout());
+            writeString(item.getDefaultValue());
+            writeEnum(item.getDataType());
+            writeString(item.getWidthDecimal());
+            writeString(item.getValidation());
+            writeString(item.getValidationErrorMessage());
+            writeInteger(item.getPhi());
+            writeInteger(item.getRequired());
+            writeEnum(item.getDisplayStatus());
+
+            if (CALCULATIONS.contains(item.getResponseType()) && item.getCalculation() != null) {
+                writeVarint(CALCULATION);
+                writeString(item.getCalculation());
+            } else if (item.getResponseOptionsText() != null) {
+                writeVarint(RESPONSE_OPTIONS);
+                writeVarint(item.getResponseOptions().size());
+                for (ResponseOption option : item.getResponseOptions()) {
+                    writeString(option.getText());
+                    writeString(option.getValue());
+                }
+            } else {
+                writeVarint(NO_RESPONSE_OPTIONS);
+            }
+        }
+
+        /**
+         * Writes the position of the string in the string table increased by one, zero stands for null.
+         */
+        void writeString(String string) {
+            if (string == null) {
+                writeVarint(0);
+                return;
+            }
+            Integer index = strings.get(string);
+            if (index == null) {
+                index = strings.size() + 1;
+                strings.put(string, index);
+            }
+            writeVarint(index);
+        }
+
+        void writeEnum(Enum<?> value) {
+            writeVarint(value == null ? 0 : value.ordinal() + 1);
+        }
+
+        /**
+         * Writes the zigzag encoded value increased by one so small negative numbers are short as well, zero stands
+         * for null.
+         */
+        void writeInteger(Integer value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            long zigzag = ((long) value << 1) ^ ((long) value >> 63);
+            writeVarint(zigzag + 1);
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                bytes.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            bytes.write((int) value);
+        }
+
+        void writeBytes(byte[] value) {
+            bytes.write(value, 0, value.length);
+        }
+    }
+
+    private static final class Decoder {
+
+        private final ByteBuffer buffer;
+        private String[] strings;
+        private byte[] scratch = new byte[256];
+
+        Decoder(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Reads the header and the string table.
+         * @return hash of the source of the form
+         */
+        byte[] readHeader() throws IOException {
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("The data are not a form snapshot");
+            }
+            long version = readVarint();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version of the form snapshot: " + version);
+            }
+            byte[] sourceHash = new byte[readSize()];
+            buffer.get(sourceHash);
+
+            strings = new String[readSize()];
+            for (int i = 0; i < strings.length; i++) {
+                int length = readSize();
+                if (scratch.length < length) {
+                    scratch = new byte[Math.max(length, scratch.length * 2)];
+                }
+                buffer.get(scratch, 0, length);
+                strings[i] = new String(scratch, 0, length, UTF_8);
+            }
+            return sourceHash;
+        }
+
+        CaseReportForm readForm() throws IOException {
+            CaseReportForm form = new CaseReportForm();
+            form.setName(readString());
+            form.setVersion(readString());
+            form.setVersionDescription(readString());
+            form.setRevisionNotes(readString());
+
+            int sectionCount = readSize();
+            for (int s = 0; s < sectionCount; s++) {
+                Section section = form.section(readString());
+                section.setTitle(readString());
+                section.setSubtitle(readString());
+                section.setInstructions(readString());
+                section.setPageNumber(readString());
+
+                Group[] groups = new Group[readSize()];
+                for (int g = 0; g < groups.length; g++) {
+                    groups[g] = readGroup(section);
+                }
+
+                int itemCount = readSize();
+                for (int i = 0; i < itemCount; i++) {
+                    int groupIndex = readLength();
+                    if (groupIndex > groups.length) {
+                        throw new IOException("Unknown group " + groupIndex + " in section " + section.getLabel());
+                    }
+                    readItem(groupIndex == 0 ? section : groups[groupIndex - 1]);
+                }
+            }
+
+            int conditionalDisplayCount = readSize();
+            for (int c = 0; c < conditionalDisplayCount; c++) {
+                Item item = form.findItem(readString());
+                Item controlling = form.findItem(readString());
+                String text = readString();
+                String value = readString();
+                String message = readString();
+                if (item == null || controlling == null) {
+                    throw new IOException("Conditional display references unknown item");
+                }
+                item.setConditionalDisplay(new ConditionalDisplay(new ResponseOption(controlling, value, text), message));
+            }
+
+            return form;
+        }
+
+        private Group readGroup(Section section) throws IOException {
+            int kind = readLength();
+            if (kind == GRID) {
+                GridGroup grid = section.grid(readString());
+                grid.setDisplayStatus(readEnum(DISPLAY_STATUSES));
+                grid.setHeader(readString());
+                grid.setRepeatNum(readInteger());
+                grid.setRepeatMax(readInteger());
+                return grid;
+            }
+            if (kind != GROUP) {
+                throw new IOException("Unknown kind of group " + kind);
+            }
+            Group group = section.group(readString());
+            group.setDisplayStatus(readEnum(DISPLAY_STATUSES));
+            return group;
+        }
+
+        private void readItem(ItemContainer container) throws IOException {
+            ResponseType responseType = readEnum(RESPONSE_TYPES, readVarint() + 1);
+            if (responseType == null) {
+                throw new IOException("Missing response type");
+            }
+            Item item = CaseReportFormImporter.createItem(container, responseType, readString());
+            item.setDescriptionLabel(readString());
+            item.setLeftItemText(readString());
+            item.setUnits(readString());
+            item.setRightItemText(readString());
+            item.setHeader(readString());
+            item.setSubheader(readString());
+            item.setColumnNumber(readInteger());
+            item.setPageNumber(readString());
+            item.setQuestionNumber(readString());
+            item.setResponseLabel(readString());
+            item.setResponseLayout(readEnum(RESPONSE_LAYOUTS));
+            item.setDefaultValue(readString());
+            item.setDataType(readEnum(DATA_TYPES));
+            item.setWidthDecimal(readString());
+            String validation = readString();
+            String validationErrorMessage = readString();
+            if (validation != null || validationErrorMessage != null) {
+                item.setValidationExpression(new ValidationExpression(validation, validationErrorMessage));
+            }
+            item.setPhi(readInteger());
+            item.setRequired(readInteger());
+            item.setDisplayStatus(readEnum(DISPLAY_STATUSES));
+
+            int responseOptionsKind = readLength();
+            if (responseOptionsKind == CALCULATION) {
+                item.setCalculation(readString());
+            } else if (responseOptionsKind == RESPONSE_OPTIONS) {
+                ResponseOption[] options = new ResponseOption[readSize()];
+                for (int o = 0; o < options.length; o++) {
+                    options[o] = new ResponseOption(readString(), readString());
+                }
+                item.setResponseOptions(Arrays.asList(options));
+            } else if (responseOptionsKind != NO_RESPONSE_OPTIONS) {
+                throw new IOException("Unknown kind of response options " + responseOptionsKind);
+            }
+        }
+
+        private String readString() throws IOException {
+            int index = readLength();
+            if (index == 0) {
+                return null;
+            }
+            if (index > strings.length) {
+                throw new IOException("Unknown string " + index);
+            }
+            return strings[index - 1];
+        }
+
+        private <E extends Enum<E>> E readEnum(E[] values) throws IOException {
+            return readEnum(values, readVarint());
+        }
+
+        private static <E extends Enum<E>> E readEnum(E[] values, long code) throws IOException {
+            if (code > values.length) {
+                throw new IOException("Unknown " + values[0].getDeclaringClass().getSimpleName() + " " + (code - 1));
+            }
+            return code == 0 ? null : values[(int) code - 1];
+        }
+
+        private Integer readInteger() {
+            long encoded = readVarint();
+            if (encoded == 0) {
+                return null;
+            }
+            long zigzag = encoded - 1;
+            return (int) ((zigzag >>> 1) ^ -(zigzag & 1));
+        }
+
+        /**
+         * Reads the number of the bytes or the elements which follow. Each element takes at least one byte so any size
+         * greater than the number of the remaining bytes means the data are corrupt and nothing is allocated for it.
+         */
+        private int readSize() throws IOException {
+            int size = readLength();
+            if (size > buffer.remaining()) {
+                throw new IOException("Invalid size " + size + ", only " + buffer.remaining() + " bytes remaining");
+            }
+            return size;
+        }
+
+        private int readLength() throws IOException {
+            long length = readVarint();
+            if (length < 0 || length > Integer.MAX_VALUE) {
+                throw new IOException("Invalid length " + length);
+            }
+            return (int) length;
+        }
+
+        private long readVarint() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0 && shift < 64);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.modelcatalogue.crf.serializer;
+
+import org.modelcatalogue.crf.model.CaseReportForm;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * This class caches the forms loaded from the source files such as the DSL scripts as binary snapshots
+ * (see {@link CaseReportFormSnapshot}).
+ *
+ * The snapshots are named after the SHA-256 hash of the content of the source file so the cached snapshot is used only
+ * if the source has not changed since the snapshot has been written. Otherwise the form is loaded from the source using
+ * the loader and the new snapshot is written. Snapshots which cannot be read, e.g. because they have been written by
+ * an older version of the format, are replaced as well.
+ *
+ * The snapshots are written into temporary files first and then moved to their place so multiple processes can share
+ * the same cache directory.
+ */
+public class CaseReportFormSnapshotCache {
+
+    /**
+     * Loads the form from the source file if there is no valid snapshot.
+     */
+    public interface Loader {
+
+        /**
+         * Loads the form from the source file.
+         * @param source source file
+         * @return form loaded from the source file
+         */
+        CaseReportForm load(File source) throws IOException;
+    }
+
+    static final String SNAPSHOT_EXTENSION = ".crfs";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File directory;
+    private final Loader loader;
+
+    /**
+     * Creates new cache.
+     * @param directory directory containing the snapshots, it is created if it does not exist
+     * @param loader loader of the forms from the source files
+     */
+    public CaseReportFormSnapshotCache(File directory, Loader loader) {
+        this.directory = directory;
+        this.loader = loader;
+    }
+
+    /**
+     * Reads the form from the snapshot of the source file or loads the form from the source file and writes the
+     * snapshot if there is no valid snapshot yet.
+     * @param source source file
+     * @return form read from the snapshot or loaded from the source file
+     */
+    public CaseReportForm load(File source) throws IOException {
+        byte[] hash = hash(source);
+        File snapshot = getSnapshotFile(hash);
+        if (snapshot.isFile()) {
+            try {
+                return CaseReportFormSnapshot.read(snapshot, hash);
+            } catch (IOException ignored) {
+                // invalid snapshot is replaced below
+            }
+        }
+
+        CaseReportForm form = loader.load(source);
+        write(form, hash, snapshot);
+        return form;
+    }
+
+    /**
+     * @param source source file
+     * @return snapshot file for the current content of the source file
+     */
+    public File getSnapshotFile(File source) throws IOException {
+        return getSnapshotFile(hash(source));
+    }
+
+    private File getSnapshotFile(byte[] hash) {
+        char[] name = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            name[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            name[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new File(directory, new String(name) + SNAPSHOT_EXTENSION);
+    }
+
+    private void write(CaseReportForm form, byte[] hash, File snapshot) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        File temporary = File.createTempFile(snapshot.getName(), ".tmp", directory);
+        try {
+            OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(temporary));
+            try {
+                CaseReportFormSnapshot.write(form, hash, outputStream);
+            } finally {
+                outputStream.close();
+            }
+            Files.move(temporary.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temporary.delete();
+        }
+    }
+
+    static byte[] hash(File source) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+
+        InputStream inputStream = new FileInputStream(source);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            inputStream.close();
+        }
+        return digest.digest();
+    }
+}
@@ -0,0 +1,135 @@
+package org.modelcatalogue.crf.serializer;
+
+import org.apache.poi.ss.usermodel.Sheet;
+
+import java.util.Arrays;
+
+/**
+ * Estimates the column widths from the values written to the sheet.
+ *
+ * Instead of measuring every cell with the font metrics once the sheet is complete (which is what
+ * <code>Sheet.autoSizeColumn</code> does) the estimator remembers the longest line written to each column and converts
+ * it to the column width when the sheet is finished.
+ */
+final class ColumnWidthEstimator {
+
+    /**
+     * Column widths are set in units of 1/256th of a character width.
+     */
+    private static final int CHARACTER_WIDTH = 256;
+
+    /**
+     * Excel does not allow columns wider than 255 characters.
+     */
+    private static final int MAX_CHARACTERS = 255;
+
+    /**
+     * Extra space reserved for the cell padding and borders.
+     */
+    private static final int PADDING = CHARACTER_WIDTH / 2;
+
+    /**
+     * Bold characters of the headings are wider than the ones of the regular font.
+     */
+    private static final double BOLD_RATIO = 1.15;
+
+    private int[] widths;
+
+    ColumnWidthEstimator() {
+        widths = new int[32];
+    }
+
+    /**
+     * Creates new estimator starting with the widths measured by the other one.
+     * @param other the estimator to be copied
+     */
+    ColumnWidthEstimator(ColumnWidthEstimator other) {
+        widths = other.widths.clone();
+    }
+
+    void measure(int column, String value) {
+        if (value != null) {
+            update(column, longestLine(value) * CHARACTER_WIDTH);
+        }
+    }
+
+    void measure(int column, int value) {
+        update(column, digits(value) * CHARACTER_WIDTH);
+    }
+
+    /**
+     * Measures all the values of the row.
+     * @param row row values as described in {@link RowSink}
+     */
+    void measure(Object[] row) {
+        for (int column = 0; column < row.length; column++) {
+            Object value = row[column];
+            if (value instanceof String) {
+                measure(column, (String) value);
+            } else if (value instanceof Integer) {
+                measure(column, (Integer) value);
+            }
+        }
+    }
+
+    void measureHeading(int column, String heading) {
+        if (heading != null) {
+            update(column, (int) Math.ceil(longestLine(heading) * BOLD_RATIO * CHARACTER_WIDTH));
+        }
+    }
+
+    /**
+     * Widens the columns to fit the values measured by the other estimator as well.
+     * @param other estimator which measured part of the same sheet
+     */
+    void merge(ColumnWidthEstimator other) {
+        for (int column = other.widths.length - 1; column >= 0; column--) {
+            if (other.widths[column] > 0) {
+                update(column, other.widths[column]);
+            }
+        }
+    }
+
+    /**
+     * Sets the width of every column which has been measured.
+     * @param sheet the sheet which values have been measured
+     */
+    void apply(Sheet sheet) {
+        for (int column = 0; column < widths.length; column++) {
+            if (widths[column] > 0) {
+                sheet.setColumnWidth(column, Math.min(widths[column] + PADDING, MAX_CHARACTERS * CHARACTER_WIDTH));
+            }
+        }
+    }
+
+    private void update(int column, int width) {
+        if (column >= widths.length) {
+            widths = Arrays.copyOf(widths, Math.max(column + 1, widths.length * 2));
+        }
+        if (width > widths[column]) {
+            widths[column] = width;
+        }
+    }
+
+    private static int longestLine(String value) {
+        int longest = 0;
+        int current = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '\n') {
+                longest = Math.max(longest, current);
+                current = 0;
+            } else {
+                current++;
+            }
+        }
+        return Math.max(longest, current);
+    }
+
+    private static int digits(int value) {
+        int digits = value < 0 ? 2 : 1;
+        for (long rest = Math.abs((long) value); rest >= 10; rest /= 10) {
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,41 @@
+package org.modelcatalogue.crf.serializer;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Counts the bytes written to the underlying stream.
+ */
+final class CountingOutputStream extends FilterOutputStream {
+
+    private long count;
+
+    CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        count += len;
+    }
+
+    /**
+     * The underlying stream is only flushed, closing it is up to the caller of the serializer.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    long getCount() {
+        return count;
+    }
+}
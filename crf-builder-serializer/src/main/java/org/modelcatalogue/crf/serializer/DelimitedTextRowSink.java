@@ -0,0 +1,110 @@
+package org.modelcatalogue.crf.serializer;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Writes each sheet as delimited text file named after the sheet. The rows are streamed to the file as they come
+ * without creating any intermediate objects.
+ */
+final class DelimitedTextRowSink implements RowSink, Closeable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String LINE_SEPARATOR = "\r\n";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File directory;
+    private final TextFormat format;
+
+    private Writer writer;
+
+    DelimitedTextRowSink(File directory, TextFormat format) {
+        this.directory = directory;
+        this.format = format;
+    }
+
+    @Override
+    public void sheet(SheetTemplate template) throws IOException {
+        close();
+        File file = new File(directory, template.getName() + format.getExtension());
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), UTF_8), BUFFER_SIZE);
+        write(writer, format.getDelimiter(), template.getHeadings());
+    }
+
+    @Override
+    public boolean needsWidths() {
+        return false;
+    }
+
+    @Override
+    public void rows(List<Object[]> rows, ColumnWidthEstimator widths) throws IOException {
+        for (Object[] row : rows) {
+            write(writer, format.getDelimiter(), row);
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            Writer current = writer;
+            writer = null;
+            current.close();
+        }
+    }
+
+    /**
+     * Writes single line of values.
+     * @param writer writer to write the line to
+     * @param delimiter delimiter of the values
+     * @param values row values as described in {@link RowSink}
+     */
+    static void write(Writer writer, char delimiter, Object[] values) throws IOException {
+        for (int column = 0; column < values.length; column++) {
+            if (column > 0) {
+                writer.write(delimiter);
+            }
+            Object value = values[column];
+            if (value instanceof String) {
+                writeEscaped(writer, delimiter, (String) value);
+            } else if (value instanceof Integer) {
+                writer.write(value.toString());
+            }
+        }
+        writer.write(LINE_SEPARATOR);
+    }
+
+    private static void writeEscaped(Writer writer, char delimiter, String value) throws IOException {
+        if (!needsQuotes(value, delimiter)) {
+            writer.write(value);
+            return;
+        }
+
+        writer.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '"') {
+                writer.write(value, start, i + 1 - start);
+                writer.write('"');
+                start = i + 1;
+            }
+        }
+        writer.write(value, start, value.length() - start);
+        writer.write('"');
+    }
+
+    private static boolean needsQuotes(String value, char delimiter) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == delimiter || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,57 @@
+package org.modelcatalogue.crf.serializer;
+
+import org.apache.poi.hssf.usermodel.HSSFFont;
+import org.apache.poi.ss.usermodel.*;
+
+/**
+ * Cell styles of the heading rows. The styles are created once per workbook and shared by all sheets as the number of
+ * styles and fonts in the workbook is limited.
+ */
+final class HeaderStyles {
+
+    private final CellStyle leftCellStyle;
+    private final CellStyle middleCellStyle;
+    private final CellStyle rightCellStyle;
+
+    HeaderStyles(Workbook workbook) {
+        Font boldFont = workbook.createFont();
+        boldFont.setBoldweight(Font.BOLDWEIGHT_BOLD);
+        boldFont.setFontName(HSSFFont.FONT_ARIAL);
+        boldFont.setFontHeightInPoints((short)10);
+
+        leftCellStyle = createCellStyle(workbook, boldFont);
+        leftCellStyle.setBorderLeft(CellStyle.BORDER_THIN);
+
+        middleCellStyle = createCellStyle(workbook, boldFont);
+
+        rightCellStyle = createCellStyle(workbook, boldFont);
+        rightCellStyle.setBorderRight(CellStyle.BORDER_THIN);
+    }
+
+    /**
+     * Applies the heading styles to all the cells of given row.
+     * @param row heading row
+     */
+    void apply(Row row) {
+        for (int i = row.getFirstCellNum() ; i < row.getLastCellNum() ; i++) {
+            Cell cell = row.getCell(i);
+            if (i == row.getFirstCellNum()) {
+                cell.setCellStyle(leftCellStyle);
+            } else if (i == row.getLastCellNum() - 1) {
+                cell.setCellStyle(rightCellStyle);
+            } else {
+                cell.setCellStyle(middleCellStyle);
+            }
+        }
+    }
+
+    private static CellStyle createCellStyle(Workbook workbook, Font font) {
+        CellStyle cellStyle = workbook.createCellStyle();
+        cellStyle.setFillPattern(CellStyle.SOLID_FOREGROUND);
+        cellStyle.setFillForegroundColor(IndexedColors.SKY_BLUE.getIndex());
+        cellStyle.setBorderTop(CellStyle.BORDER_THIN);
+        cellStyle.setBorderBottom(CellStyle.BORDER_THIN);
+        cellStyle.setFont(font);
+        return cellStyle;
+    }
+}
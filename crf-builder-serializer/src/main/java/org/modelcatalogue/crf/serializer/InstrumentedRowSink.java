@@ -0,0 +1,73 @@
+package org.modelcatalogue.crf.serializer;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Counts the rows and cells written to the other sink and measures the time spent with each sheet.
+ */
+final class InstrumentedRowSink implements RowSink {
+
+    private final RowSink delegate;
+    private final SerializationListener listener;
+
+    private String sheetName;
+    private long sheetStart;
+    private int rows;
+    private int cells;
+
+    InstrumentedRowSink(RowSink delegate, SerializationListener listener) {
+        this.delegate = delegate;
+        this.listener = listener;
+    }
+
+    @Override
+    public void sheet(SheetTemplate template) throws IOException {
+        completeSheet();
+
+        sheetName = template.getName();
+        sheetStart = System.nanoTime();
+        rows = 1;
+        cells = count(template.getHeadings());
+
+        delegate.sheet(template);
+    }
+
+    @Override
+    public boolean needsWidths() {
+        return delegate.needsWidths();
+    }
+
+    @Override
+    public void rows(List<Object[]> rows, ColumnWidthEstimator widths) throws IOException {
+        delegate.rows(rows, widths);
+
+        this.rows += rows.size();
+        for (Object[] row : rows) {
+            cells += count(row);
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        completeSheet();
+        delegate.finish();
+    }
+
+    private void completeSheet() {
+        if (sheetName != null) {
+            listener.sheetCompleted(sheetName, rows, cells, System.nanoTime() - sheetStart);
+            sheetName = null;
+        }
+    }
+
+    private static int count(Object[] row) {
+        int count = 0;
+        for (Object value : row) {
+            if (value != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,116 @@
+package org.modelcatalogue.crf.serializer;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listener which keeps everything reported in memory. The listener should be used for single export only and its
+ * {@link #toString()} can be written to the log once the export is finished.
+ */
+public class RecordingSerializationListener implements SerializationListener {
+
+    /**
+     * Metrics of single sheet.
+     */
+    public static final class SheetMetrics {
+
+        private final int rows;
+        private final int cells;
+        private final long elapsedNanos;
+
+        SheetMetrics(int rows, int cells, long elapsedNanos) {
+            this.rows = rows;
+            this.cells = cells;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int getCells() {
+            return cells;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+
+    private final Map<String, SheetMetrics> sheets = new LinkedHashMap<String, SheetMetrics>();
+    private final Map<Phase, Long> phases = new EnumMap<Phase, Long>(Phase.class);
+    private int cellStyles;
+    private int fonts;
+    private long bytes;
+
+    @Override
+    public void sheetCompleted(String sheetName, int rows, int cells, long elapsedNanos) {
+        sheets.put(sheetName, new SheetMetrics(rows, cells, elapsedNanos));
+    }
+
+    @Override
+    public void phaseCompleted(Phase phase, long elapsedNanos) {
+        Long previous = phases.get(phase);
+        phases.put(phase, previous == null ? elapsedNanos : previous + elapsedNanos);
+    }
+
+    @Override
+    public void stylesCreated(int cellStyles, int fonts) {
+        this.cellStyles += cellStyles;
+        this.fonts += fonts;
+    }
+
+    @Override
+    public void bytesWritten(long bytes) {
+        this.bytes += bytes;
+    }
+
+    /**
+     * @return metrics of the sheets in the order they have been written
+     */
+    public Map<String, SheetMetrics> getSheets() {
+        return Collections.unmodifiableMap(sheets);
+    }
+
+    /**
+     * @param phase the phase
+     * @return total time spent in the phase in nanoseconds or zero if the phase has not happened
+     */
+    public long getElapsedNanos(Phase phase) {
+        Long elapsed = phases.get(phase);
+        return elapsed == null ? 0 : elapsed;
+    }
+
+    public int getCellStyles() {
+        return cellStyles;
+    }
+
+    public int getFonts() {
+        return fonts;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Serialization metrics:");
+        for (Map.Entry<String, SheetMetrics> sheet : sheets.entrySet()) {
+            builder.append("\n  sheet ").append(sheet.getKey())
+                .append(": rows=").append(sheet.getValue().getRows())
+                .append(", cells=").append(sheet.getValue().getCells())
+                .append(", time=").append(millis(sheet.getValue().getElapsedNanos())).append(" ms");
+        }
+        for (Map.Entry<Phase, Long> phase : phases.entrySet()) {
+            builder.append("\n  phase ").append(phase.getKey())
+                .append(": time=").append(millis(phase.getValue())).append(" ms");
+        }
+        builder.append("\n  styles=").append(cellStyles).append(", fonts=").append(fonts).append(", bytes=").append(bytes);
+        return builder.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
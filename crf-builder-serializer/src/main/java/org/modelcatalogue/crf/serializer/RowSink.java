@@ -0,0 +1,45 @@
+package org.modelcatalogue.crf.serializer;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination of the sheets written by {@link CaseReportFormSerializer}.
+ *
+ * The sheets are written one after another, each starting with the headings followed by the data rows. Each row is an
+ * array indexed by the column (see the <code>*_INDEX</code> constants of {@link CaseReportFormSerializer}). The value
+ * is either <code>String</code>, <code>Integer</code>, {@link #BLANK} for the cells written without any value or
+ * <code>null</code> if the cell is not written at all.
+ */
+interface RowSink {
+
+    /**
+     * Marks the cell which is written but has no value.
+     */
+    Object BLANK = new Object();
+
+    /**
+     * Starts new sheet.
+     * @param template name and headings of the sheet
+     */
+    void sheet(SheetTemplate template) throws IOException;
+
+    /**
+     * Tells whether the sink uses the widths of the columns so the values don't need to be measured otherwise.
+     * @return true if the widths have to be passed to {@link #rows(List, ColumnWidthEstimator)}
+     */
+    boolean needsWidths();
+
+    /**
+     * Writes the rows to the current sheet.
+     * @param rows rows to be written
+     * @param widths widths of the columns needed by the rows, may be <code>null</code> if {@link #needsWidths()}
+     *               returns false
+     */
+    void rows(List<Object[]> rows, ColumnWidthEstimator widths) throws IOException;
+
+    /**
+     * Completes the last sheet and writes everything which has not been written yet.
+     */
+    void finish() throws IOException;
+}
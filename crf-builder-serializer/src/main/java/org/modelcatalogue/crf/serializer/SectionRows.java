@@ -0,0 +1,221 @@
+package org.modelcatalogue.crf.serializer;
+
+import org.modelcatalogue.crf.model.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.modelcatalogue.crf.serializer.CaseReportFormSerializer.*;
+
+/**
+ * Values of the Sections, Groups and Items sheet rows belonging to a single section together with the widths of the
+ * columns they need.
+ *
+ * Each row is stored as an array indexed by the column as described in {@link RowSink}.
+ *
+ * The rows remember the modification count of the section they have been created for, so they can be checked to be
+ * still current without reading the section again.
+ */
+final class SectionRows {
+
+    static final int SECTION_COLUMNS = SECTION_PARENT_SECTION_INDEX + 1;
+    static final int GROUP_COLUMNS = GROUP_DISPLAY_STATUS_INDEX + 1;
+    static final int ITEM_COLUMNS = ITEM_SIMPLE_CONDITIONAL_DISPLAY_INDEX + 1;
+
+    private final long modificationCount;
+    private final Object[] sectionRow;
+    private final List<Object[]> groupRows;
+    private final List<Object[]> itemRows;
+
+    private final ColumnWidthEstimator sectionWidths = new ColumnWidthEstimator();
+    private final ColumnWidthEstimator groupWidths = new ColumnWidthEstimator();
+    private final ColumnWidthEstimator itemWidths = new ColumnWidthEstimator();
+
+    private SectionRows(Section section) {
+        modificationCount = section.getModificationCount();
+        sectionRow = sectionRow(section, new Object[SECTION_COLUMNS]);
+        sectionWidths.measure(sectionRow);
+
+        groupRows = new ArrayList<Object[]>(section.getGroups().size());
+        for (Group group : section.getGroups().values()) {
+            Object[] row = groupRow(group, new Object[GROUP_COLUMNS]);
+            groupWidths.measure(row);
+            groupRows.add(row);
+        }
+
+        itemRows = new ArrayList<Object[]>(section.getItems().size());
+        for (Item item : section.getItems().values()) {
+            Object[] row = itemRow(item, new Object[ITEM_COLUMNS]);
+            itemWidths.measure(row);
+            itemRows.add(row);
+        }
+    }
+
+    /**
+     * Builds the rows for given section.
+     * @param section section to be written
+     * @return rows of the section
+     */
+    static SectionRows of(Section section) {
+        return new SectionRows(section);
+    }
+
+    /**
+     * Checks whether the rows still reflect the section.
+     * @param section section the rows have been created for
+     * @return true if writing the section again would produce the same rows
+     */
+    boolean isCurrent(Section section) {
+        return section.getModificationCount() == modificationCount;
+    }
+
+    List<Object[]> getSectionRows() {
+        return Collections.singletonList(sectionRow);
+    }
+
+    List<Object[]> getGroupRows() {
+        return groupRows;
+    }
+
+    List<Object[]> getItemRows() {
+        return itemRows;
+    }
+
+    ColumnWidthEstimator getSectionWidths() {
+        return sectionWidths;
+    }
+
+    ColumnWidthEstimator getGroupWidths() {
+        return groupWidths;
+    }
+
+    ColumnWidthEstimator getItemWidths() {
+        return itemWidths;
+    }
+
+    /**
+     * Writes the Sections sheet row of the section without keeping it.
+     */
+    static void writeSectionRow(Section section, RowSink sink) throws IOException {
+        Object[] row = sectionRow(section, new Object[SECTION_COLUMNS]);
+        ColumnWidthEstimator widths = null;
+        if (sink.needsWidths()) {
+            widths = new ColumnWidthEstimator();
+            widths.measure(row);
+        }
+        sink.rows(Collections.singletonList(row), widths);
+    }
+
+    /**
+     * Writes the Groups sheet rows of the section without keeping them.
+     */
+    static void writeGroupRows(Section section, RowSink sink) throws IOException {
+        List<Object[]> rows = new ArrayList<Object[]>(section.getGroups().size());
+        ColumnWidthEstimator widths = sink.needsWidths() ? new ColumnWidthEstimator() : null;
+        for (Group group : section.getGroups().values()) {
+            Object[] row = groupRow(group, new Object[GROUP_COLUMNS]);
+            if (widths != null) {
+                widths.measure(row);
+            }
+            rows.add(row);
+        }
+        sink.rows(rows, widths);
+    }
+
+    /**
+     * Writes the Items sheet rows of the section without keeping them.
+     */
+    static void writeItemRows(Section section, RowSink sink) throws IOException {
+        List<Object[]> rows = new ArrayList<Object[]>(section.getItems().size());
+        ColumnWidthEstimator widths = sink.needsWidths() ? new ColumnWidthEstimator() : null;
+        for (Item item : section.getItems().values()) {
+            Object[] row = itemRow(item, new Object[ITEM_COLUMNS]);
+            if (widths != null) {
+                widths.measure(row);
+            }
+            rows.add(row);
+        }
+        sink.rows(rows, widths);
+    }
+
+    private static Object[] sectionRow(Section section, Object[] row) {
+        row[SECTION_LABEL_INDEX] = string(section.getLabel());
+        row[SECTION_TITLE_INDEX] = string(section.getTitle());
+        row[SECTION_SUBTITLE_INDEX] = string(section.getSubtitle());
+        row[SECTION_INSTRUCTIONS_INDEX] = string(section.getInstructions());
+        row[SECTION_PAGE_NUMBER_INDEX] = string(section.getPageNumber());
+        return row;
+    }
+
+    private static Object[] groupRow(Group group, Object[] row) {
+        row[GROUP_LABEL_INDEX] = string(group.getLabel());
+        if (DisplayStatus.HIDE.equals(group.getDisplayStatus())) {
+            row[GROUP_DISPLAY_STATUS_INDEX] = group.getDisplayStatus().toString();
+        }
+
+        if (group instanceof GridGroup) {
+            GridGroup grid = (GridGroup) group;
+            row[GROUP_LAYOUT_INDEX] = GROUP_LAYOUT_GRID;
+            row[GROUP_HEADER_INDEX] = string(grid.getHeader());
+            row[GROUP_REPEAT_NUMBER_INDEX] = number(grid.getRepeatNum());
+            row[GROUP_REPEAT_MAX_INDEX] = number(grid.getRepeatMax());
+        } else {
+            row[GROUP_LAYOUT_INDEX] = "";
+            row[GROUP_HEADER_INDEX] = "";
+            row[GROUP_REPEAT_NUMBER_INDEX] = "";
+            row[GROUP_REPEAT_MAX_INDEX] = "";
+        }
+        return row;
+    }
+
+    private static Object[] itemRow(Item item, Object[] row) {
+        row[ITEM_NAME_INDEX] = string(item.getName());
+        row[ITEM_DESCRIPTION_LABEL_INDEX] = string(item.getDescriptionLabel());
+        row[ITEM_LEFT_ITEM_TEXT_INDEX] = string(item.getLeftItemText());
+        row[ITEM_UNITS_INDEX] = string(item.getUnits());
+        row[ITEM_RIGHT_ITEM_TEXT_INDEX] = string(item.getRightItemText());
+        row[ITEM_SECTION_LABEL_INDEX] = string(item.getSection().getLabel());
+        row[ITEM_HEADER_INDEX] = string(item.getHeader());
+        row[ITEM_SUBHEADER_INDEX] = string(item.getSubheader());
+        row[ITEM_PARENT_ITEM_INDEX] = "";
+        row[ITEM_PAGE_NUMBER_INDEX] = string(item.getPageNumber());
+        row[ITEM_QUESTION_NUMBER_INDEX] = string(item.getQuestionNumber());
+        row[ITEM_RESPONSE_TYPE_INDEX] = string(item.getResponseType().getExcelValue());
+        row[ITEM_RESPONSE_LABEL_INDEX] = string(item.getResponseLabel());
+        row[ITEM_RESPONSE_OPTIONS_TEXT_INDEX] = string(item.getResponseOptionsText());
+        row[ITEM_RESPONSE_VALUES_OR_CALCULATIONS_INDEX] = string(item.getResponseValuesOrCalculations());
+        row[ITEM_DEFAULT_VALUE_INDEX] = string(item.getDefaultValue());
+        row[ITEM_WIDTH_DECIMAL_INDEX] = string(item.getWidthDecimal());
+        row[ITEM_VALIDATION_INDEX] = string(item.getValidation());
+        row[ITEM_VALIDATION_ERROR_MESSAGE_INDEX] = string(item.getValidationErrorMessage());
+        row[ITEM_SIMPLE_CONDITIONAL_DISPLAY_INDEX] = string(item.getSimpleConditionalDisplay());
+        row[ITEM_RESPONSE_LAYOUT_INDEX] = nullSafe(item.getResponseLayout());
+        row[ITEM_DATA_TYPE_INDEX] = nullSafe(item.getDataType());
+        row[ITEM_DISPLAY_STATUS_INDEX] = nullSafe(item.getDisplayStatus());
+        row[ITEM_GROUP_LABEL_INDEX] = item.getGroup() != null ? string(item.getGroup().getLabel()) : "";
+        row[ITEM_PHI_INDEX] = number(item.getPhi());
+        row[ITEM_REQUIRED_INDEX] = number(item.getRequired());
+        row[ITEM_COLUMN_NUMBER_INDEX] = number(item.getColumnNumber());
+        return row;
+    }
+
+    private static Object string(String value) {
+        return value == null ? RowSink.BLANK : value;
+    }
+
+    /**
+     * Numbers are written as empty string if the value is missing.
+     */
+    private static Object number(Integer value) {
+        return value == null ? "" : value;
+    }
+
+    private static <E extends Enum<E>> String nullSafe(Enum<E> enumValue) {
+        if (enumValue != null) {
+            return enumValue.toString();
+        }
+        return "";
+    }
+}
@@ -0,0 +1,79 @@
+package org.modelcatalogue.crf.serializer;
+
+/**
+ * Listener notified about the progress of {@link CaseReportFormSerializer} which can be used to find out which part of
+ * the export is slow.
+ *
+ * Use {@link #NONE} if nothing should be reported. The serializer does not measure anything in that case.
+ *
+ * @see RecordingSerializationListener
+ */
+public interface SerializationListener {
+
+    /**
+     * Phases of writing the workbook which are measured separately from writing the rows.
+     */
+    enum Phase {
+
+        /**
+         * Creating the cell styles and fonts of the headings and applying them.
+         */
+        STYLES,
+
+        /**
+         * Setting the widths of the columns.
+         */
+        COLUMN_WIDTHS,
+
+        /**
+         * Writing the complete workbook to the output stream.
+         */
+        WRITE
+    }
+
+    /**
+     * Listener which ignores everything.
+     */
+    SerializationListener NONE = new SerializationListener() {
+        @Override
+        public void sheetCompleted(String sheetName, int rows, int cells, long elapsedNanos) {}
+
+        @Override
+        public void phaseCompleted(Phase phase, long elapsedNanos) {}
+
+        @Override
+        public void stylesCreated(int cellStyles, int fonts) {}
+
+        @Override
+        public void bytesWritten(long bytes) {}
+    };
+
+    /**
+     * Called when all rows of the sheet have been written.
+     * @param sheetName name of the sheet
+     * @param rows number of rows written including the heading row
+     * @param cells number of cells written including the headings
+     * @param elapsedNanos time spent writing the sheet in nanoseconds
+     */
+    void sheetCompleted(String sheetName, int rows, int cells, long elapsedNanos);
+
+    /**
+     * Called when the phase has been completed. The phases might happen more than once, e.g. once for each sheet.
+     * @param phase the phase completed
+     * @param elapsedNanos time spent in the phase in nanoseconds
+     */
+    void phaseCompleted(Phase phase, long elapsedNanos);
+
+    /**
+     * Called when the cell styles and fonts have been created in the workbook.
+     * @param cellStyles number of cell styles created
+     * @param fonts number of fonts created
+     */
+    void stylesCreated(int cellStyles, int fonts);
+
+    /**
+     * Called when the workbook has been written to the output stream.
+     * @param bytes number of bytes written to the output stream
+     */
+    void bytesWritten(long bytes);
+}
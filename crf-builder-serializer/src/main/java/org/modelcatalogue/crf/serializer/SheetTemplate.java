@@ -0,0 +1,46 @@
+package org.modelcatalogue.crf.serializer;
+
+/**
+ * Name and headings of the sheet together with the column widths needed by the headings. The templates are created
+ * once and shared by all the exports so the headings are not measured again for every workbook.
+ */
+final class SheetTemplate {
+
+    private final String name;
+    private final String[] headings;
+    private final ColumnWidthEstimator headingWidths = new ColumnWidthEstimator();
+
+    /**
+     * Creates new template from pairs of column index and heading.
+     * @param name name of the sheet
+     * @param indicesAndHeadings column index followed by the heading of the column for every column
+     */
+    SheetTemplate(String name, Object... indicesAndHeadings) {
+        this.name = name;
+        this.headings = new String[indicesAndHeadings.length / 2];
+        for (int i = 0; i < indicesAndHeadings.length; i += 2) {
+            headings[(Integer) indicesAndHeadings[i]] = (String) indicesAndHeadings[i + 1];
+        }
+        for (int column = 0; column < headings.length; column++) {
+            headingWidths.measureHeading(column, headings[column]);
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return headings indexed by the column, must not be modified
+     */
+    String[] getHeadings() {
+        return headings;
+    }
+
+    /**
+     * @return new estimator initialized with the widths of the headings
+     */
+    ColumnWidthEstimator newColumnWidths() {
+        return new ColumnWidthEstimator(headingWidths);
+    }
+}
@@ -0,0 +1,36 @@
+package org.modelcatalogue.crf.serializer;
+
+/**
+ * Format of the plain text tables written by {@link CaseReportFormSerializer#writeText(java.io.File, TextFormat)}.
+ *
+ * Values containing the delimiter, quotes or line breaks are enclosed in double quotes and the quotes inside are
+ * doubled as described in RFC 4180. The lines are separated by CRLF.
+ */
+public enum TextFormat {
+
+    /**
+     * Comma separated values.
+     */
+    CSV(',', ".csv"),
+
+    /**
+     * Tab separated values.
+     */
+    TSV('\t', ".tsv");
+
+    private final char delimiter;
+    private final String extension;
+
+    TextFormat(char delimiter, String extension) {
+        this.delimiter = delimiter;
+        this.extension = extension;
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
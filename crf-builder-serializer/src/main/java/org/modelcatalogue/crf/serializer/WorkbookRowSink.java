@@ -0,0 +1,170 @@
+package org.modelcatalogue.crf.serializer;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.OPOIFSFileSystem;
+import org.apache.poi.ss.usermodel.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.modelcatalogue.crf.serializer.CaseReportFormSerializer.*;
+
+/**
+ * Writes the sheets into excel workbook. The headings are styled and the columns are sized to fit the values. The
+ * Instructions sheet is added at the end.
+ *
+ * Most of the values such as labels, data types or response types repeat on many rows. The sink keeps the rich text
+ * string created for each distinct value and shares it between all the cells with the same value so the string is
+ * only encoded once per workbook. The shared strings must not be formatted afterwards.
+ */
+final class WorkbookRowSink implements RowSink {
+
+    private static final String WORKBOOK_ENTRY = "Workbook";
+
+    private final Workbook workbook;
+    private final OutputStream outputStream;
+    private final HeaderStyles headerStyles;
+    private final CreationHelper creationHelper;
+    private final Map<String, RichTextString> strings = new HashMap<String, RichTextString>();
+    private final SerializationListener listener;
+    private final boolean instrumented;
+
+    private Sheet sheet;
+    private ColumnWidthEstimator columnWidths;
+    private int rowNumber;
+
+    WorkbookRowSink(Workbook workbook, OutputStream outputStream) {
+        this(workbook, outputStream, SerializationListener.NONE);
+    }
+
+    WorkbookRowSink(Workbook workbook, OutputStream outputStream, SerializationListener listener) {
+        this.workbook = workbook;
+        this.outputStream = outputStream;
+        this.creationHelper = workbook.getCreationHelper();
+        this.listener = listener;
+        this.instrumented = listener != SerializationListener.NONE;
+
+        long start = now();
+        int cellStyles = workbook.getNumCellStyles();
+        int fonts = workbook.getNumberOfFonts();
+        this.headerStyles = new HeaderStyles(workbook);
+        if (instrumented) {
+            listener.phaseCompleted(SerializationListener.Phase.STYLES, now() - start);
+            listener.stylesCreated(workbook.getNumCellStyles() - cellStyles, workbook.getNumberOfFonts() - fonts);
+        }
+    }
+
+    @Override
+    public void sheet(SheetTemplate template) {
+        completeSheet();
+
+        sheet = workbook.createSheet(template.getName());
+        columnWidths = template.newColumnWidths();
+        rowNumber = 0;
+
+        String[] headings = template.getHeadings();
+        Row row = sheet.createRow(rowNumber++);
+        for (int column = 0; column < headings.length; column++) {
+            row.createCell(column).setCellValue(headings[column]);
+        }
+
+        long start = now();
+        headerStyles.apply(row);
+        if (instrumented) {
+            listener.phaseCompleted(SerializationListener.Phase.STYLES, now() - start);
+        }
+    }
+
+    @Override
+    public boolean needsWidths() {
+        return true;
+    }
+
+    @Override
+    public void rows(List<Object[]> rows, ColumnWidthEstimator widths) {
+        for (Object[] values : rows) {
+            Row row = sheet.createRow(rowNumber++);
+            for (int column = 0; column < values.length; column++) {
+                Object value = values[column];
+                if (value == BLANK) {
+                    row.createCell(column).setCellValue((String) null);
+                } else if (value instanceof Integer) {
+                    row.createCell(column).setCellValue((Integer) value);
+                } else if (value != null) {
+                    row.createCell(column).setCellValue(richText((String) value));
+                }
+            }
+        }
+        columnWidths.merge(widths);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        completeSheet();
+
+        long instructionsStart = now();
+        Sheet instructionsSheet = workbook.createSheet(INSTRUCTIONS_SHEET);
+        Row instructionsInfoRow = instructionsSheet.createRow(INSTRUCTIONS_INFO_ROW);
+        Cell instructionsInfoCell = instructionsInfoRow.createCell(INSTRUCTIONS_INFO_COL);
+        instructionsInfoCell.setCellValue(INSTRUCTIONS_INFO);
+
+        Row instructionsVersionRow = instructionsSheet.createRow(INSTRUCTIONS_VERSION_ROW);
+        Cell instructionsVersionCell = instructionsVersionRow.createCell(INSTRUCTIONS_VERSION_COL);
+        instructionsVersionCell.setCellValue(INSTRUCTIONS_VERSION_VALUE);
+
+        if (!instrumented) {
+            write(workbook, outputStream);
+            return;
+        }
+
+        listener.sheetCompleted(INSTRUCTIONS_SHEET, 2, 2, now() - instructionsStart);
+
+        long writeStart = now();
+        CountingOutputStream countingOutputStream = new CountingOutputStream(outputStream);
+        write(workbook, countingOutputStream);
+        listener.phaseCompleted(SerializationListener.Phase.WRITE, now() - writeStart);
+        listener.bytesWritten(countingOutputStream.getCount());
+    }
+
+    /**
+     * Writes the workbook to the output stream. New <code>.xls</code> workbooks contain nothing but the workbook stream
+     * so the stream is stored using the old POIFS implementation which does not use exceptions to grow the blocks
+     * while writing, which is the most expensive part of exporting small forms with the default implementation.
+     */
+    private static void write(Workbook workbook, OutputStream outputStream) throws IOException {
+        if (workbook instanceof HSSFWorkbook) {
+            OPOIFSFileSystem fileSystem = new OPOIFSFileSystem();
+            fileSystem.createDocument(new ByteArrayInputStream(((HSSFWorkbook) workbook).getBytes()), WORKBOOK_ENTRY);
+            fileSystem.writeFilesystem(outputStream);
+            return;
+        }
+        workbook.write(outputStream);
+    }
+
+    private RichTextString richText(String value) {
+        RichTextString richText = strings.get(value);
+        if (richText == null) {
+            richText = creationHelper.createRichTextString(value);
+            strings.put(value, richText);
+        }
+        return richText;
+    }
+
+    private void completeSheet() {
+        if (sheet != null) {
+            long start = now();
+            columnWidths.apply(sheet);
+            if (instrumented) {
+                listener.phaseCompleted(SerializationListener.Phase.COLUMN_WIDTHS, now() - start);
+            }
+        }
+    }
+
+    private long now() {
+        return instrumented ? System.nanoTime() : 0;
+    }
+}
@@ -0,0 +1,112 @@
+package org.modelcatalogue.crf.serializer
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook
+import org.modelcatalogue.crf.model.CaseReportForm
+import org.modelcatalogue.crf.model.Section
+import spock.lang.Specification
+
+import java.util.zip.ZipEntry
+import java.util.zip.ZipInputStream
+
+class CaseReportFormBatchSerializerSpec extends Specification {
+
+    def "forms are written into single archive"() {
+        List<CaseReportForm> forms = (1..10).collect { int i ->
+            CaseReportForm.build('Batch Form') {
+                version "v$i"
+                section('A') {
+                    text('ITEM') {
+                        question "Question $i"
+                        dataType string
+                    }
+                }
+            }
+        }
+        CaseReportForm broken = new CaseReportForm() {
+            @Override
+            Map<String, Section> getSections() {
+                throw new IllegalStateException('Broken')
+            }
+        }
+        forms.add(3, broken)
+
+        List<Integer> progress = []
+        List<CaseReportForm> failed = []
+        CaseReportFormBatchSerializer.Listener listener = new CaseReportFormBatchSerializer.Listener() {
+            @Override
+            void formWritten(CaseReportForm form, String entryName, int completed, int total) {
+                assert total == 11
+                progress << completed
+            }
+
+            @Override
+            void formFailed(CaseReportForm form, Exception failure, int completed, int total) {
+                progress << completed
+                failed << form
+            }
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream()
+
+        when:
+        CaseReportFormBatchSerializer.Result result = new CaseReportFormBatchSerializer(forms).write(output, 3, listener)
+
+        then:
+        !result.successful
+        result.failures.keySet() == [broken] as Set
+        result.failures[broken] instanceof IllegalStateException
+        failed == [broken]
+        progress == (1..11).toList()
+        result.entries.size() == 10
+        result.entries.values() as Set == (1..10).collect { "Batch Form v${it}.xls".toString() } as Set
+
+        when:
+        Map<String, String> questions = [:]
+        ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(output.toByteArray()))
+        for (ZipEntry entry = zip.nextEntry; entry; entry = zip.nextEntry) {
+            HSSFWorkbook workbook = new HSSFWorkbook(new ByteArrayInputStream(readEntry(zip)))
+            questions[entry.name] = workbook.getSheet('Items').getRow(1).getCell(2).stringCellValue
+        }
+
+        then:
+        questions.size() == 10
+        questions['Batch Form v7.xls'] == 'Question 7'
+    }
+
+    def "same form cannot be serialized twice in single batch"() {
+        CaseReportForm form = CaseReportForm.build('Batch Form') {}
+
+        when:
+        new CaseReportFormBatchSerializer([form, CaseReportForm.build('Other Form') {}, form])
+
+        then:
+        IllegalArgumentException e = thrown(IllegalArgumentException)
+        e.message.contains('Batch Form')
+    }
+
+    def "entry names are unique and safe"() {
+        Set<String> names = new HashSet<String>()
+        CaseReportForm form = CaseReportForm.build('A/B: "C"') {}
+
+        expect:
+        CaseReportFormBatchSerializer.uniqueEntryName(names, form) == 'A_B_ _C_.xls'
+        CaseReportFormBatchSerializer.uniqueEntryName(names, form) == 'A_B_ _C_ (2).xls'
+    }
+
+    def "parallelism must be positive"() {
+        when:
+        new CaseReportFormBatchSerializer([]).write(new ByteArrayOutputStream(), 0, null)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private static byte[] readEntry(ZipInputStream zip) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream()
+        byte[] buffer = new byte[8192]
+        for (int read = zip.read(buffer); read > 0; read = zip.read(buffer)) {
+            content.write(buffer, 0, read)
+        }
+        content.toByteArray()
+    }
+}
@@ -0,0 +1,209 @@
+package org.modelcatalogue.crf.serializer
+
+import org.apache.poi.hssf.record.FormulaRecord
+import org.apache.poi.hssf.record.MulRKRecord
+import org.apache.poi.hssf.record.NumberRecord
+import org.apache.poi.hssf.record.RKRecord
+import org.apache.poi.hssf.record.Record
+import org.apache.poi.hssf.record.RecordFactory
+import org.apache.poi.hssf.usermodel.HSSFWorkbook
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem
+import org.apache.poi.ss.formula.ptg.IntPtg
+import org.apache.poi.ss.formula.ptg.Ptg
+import org.apache.poi.ss.usermodel.Sheet
+import org.modelcatalogue.crf.model.CaseReportForm
+import org.modelcatalogue.crf.model.DataType
+import org.modelcatalogue.crf.model.DisplayStatus
+import org.modelcatalogue.crf.model.GridGroup
+import org.modelcatalogue.crf.model.Item
+import org.modelcatalogue.crf.model.ResponseType
+import spock.lang.Shared
+import spock.lang.Specification
+
+import static org.modelcatalogue.crf.serializer.WorkbookValues.toValues
+import static org.modelcatalogue.crf.serializer.WorkbookValues.writeXls
+
+class CaseReportFormImporterSpec extends Specification {
+
+    @Shared CaseReportForm original
+    @Shared byte[] exported
+
+    def setupSpec() {
+        original = CaseReportForm.load(new File(CaseReportFormImporterSpec.getResource('samplePhysicalExamEnglish.crf').toURI()))
+        exported = writeXls(original)
+    }
+
+    def "imported form is written back the same"() {
+        when:
+        CaseReportForm imported = new CaseReportFormImporter().read(new ByteArrayInputStream(exported))
+
+        then:
+        toValues(writeXls(imported)) == toValues(exported)
+    }
+
+    def "form is imported from file"() {
+        File file = File.createTempFile('importer', '.xls')
+        file.bytes = exported
+
+        when:
+        CaseReportForm imported = new CaseReportFormImporter().read(file)
+
+        then:
+        imported.name == original.name
+        imported.version == original.version
+        imported.versionDescription == original.versionDescription
+        imported.revisionNotes == original.revisionNotes
+        imported.sections.keySet() == original.sections.keySet()
+        imported.sections.values()*.title == original.sections.values()*.title
+
+        when:
+        Item appearance = imported.findItem('APPEARANCE')
+        Item comments = imported.findItem('APPEARANCE_COMMENTS')
+
+        then:
+        appearance.responseType == ResponseType.SINGLE_SELECT
+        appearance.dataType == DataType.INT
+        appearance.responseOptions*.text == original.findItem('APPEARANCE').responseOptions*.text
+        appearance.responseOptions*.value == original.findItem('APPEARANCE').responseOptions*.value
+
+        comments.displayStatus == DisplayStatus.HIDE
+        comments.conditionalDisplay.response.item.is(appearance)
+        comments.conditionalDisplay.response.value == original.findItem('APPEARANCE_COMMENTS').conditionalDisplay.response.value
+        comments.conditionalDisplay.message == original.findItem('APPEARANCE_COMMENTS').conditionalDisplay.message
+
+        when:
+        GridGroup grid = imported.sections['III Other'].groups['Other Body System Site'] as GridGroup
+
+        then:
+        grid
+        grid.header == 'Other Body System / Site'
+        grid.items.keySet() == ['OTHERBODYSYSTEM', 'OTHERBODYSYSTEM_STATUS', 'OTHERBODYSYSTEM_COMMENTS'] as Set
+
+        cleanup:
+        file.delete()
+    }
+
+    def "numbers stored by Excel as RK records and formulas are imported"() {
+        CaseReportForm form = CaseReportForm.load(new File(CaseReportFormImporterSpec.getResource('samplePhysicalExamEnglish.crf').toURI()))
+        form.sections.values().each { it.items.values().each { Item item -> item.phi = 0 } }
+        byte[] written = writeXls(form)
+        List<byte[]> rewritten = encodeNumbersAsExcel(readWorkbookRecords(written))
+        Set<Integer> sids = rewritten.collect { (it[0] & 0xFF) | ((it[1] & 0xFF) << 8) } as Set
+
+        expect:
+        sids.contains(RKRecord.sid as int)
+        sids.contains(MulRKRecord.sid as int)
+        sids.contains(FormulaRecord.sid as int)
+        !sids.contains(NumberRecord.sid as int)
+
+        when:
+        CaseReportForm imported = new CaseReportFormImporter().read(new ByteArrayInputStream(writeWorkbookRecords(rewritten)))
+
+        then:
+        toValues(writeXls(imported)) == toValues(written)
+    }
+
+    def "unknown response type is reported"() {
+        HSSFWorkbook workbook = new HSSFWorkbook(new ByteArrayInputStream(exported))
+        Sheet items = workbook.getSheet('Items')
+        int responseTypeColumn = items.getRow(0).cellIterator().find { it.stringCellValue == 'RESPONSE_TYPE' }.columnIndex
+        items.getRow(1).getCell(responseTypeColumn).setCellValue('slider')
+        ByteArrayOutputStream out = new ByteArrayOutputStream()
+        workbook.write(out)
+
+        when:
+        new CaseReportFormImporter().read(new ByteArrayInputStream(out.toByteArray()))
+
+        then:
+        IllegalArgumentException e = thrown(IllegalArgumentException)
+        e.message.contains('slider')
+    }
+
+    private static List<Record> readWorkbookRecords(byte[] workbook) {
+        NPOIFSFileSystem fileSystem = new NPOIFSFileSystem(new ByteArrayInputStream(workbook))
+        try {
+            RecordFactory.createRecords(fileSystem.root.createDocumentInputStream('Workbook'))
+        } finally {
+            fileSystem.close()
+        }
+    }
+
+    private static byte[] writeWorkbookRecords(List<byte[]> records) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream()
+        records.each { stream.write(it) }
+        NPOIFSFileSystem fileSystem = new NPOIFSFileSystem()
+        fileSystem.createDocument(new ByteArrayInputStream(stream.toByteArray()), 'Workbook')
+        ByteArrayOutputStream output = new ByteArrayOutputStream()
+        fileSystem.writeFilesystem(output)
+        fileSystem.close()
+        output.toByteArray()
+    }
+
+    /**
+     * Replaces the number records written by POI with the records Excel uses and serializes all the records. The first
+     * number is stored as a formula with the cached result, the integers in adjacent cells of the same row as MulRK
+     * records and the other integers as RK records. POI cannot write the RK records so they are encoded here.
+     */
+    private static List<byte[]> encodeNumbersAsExcel(List<Record> records) {
+        List<byte[]> rewritten = []
+        List<NumberRecord> run = []
+        boolean formulaWritten = false
+        Closure flush = {
+            if (run.size() == 1) {
+                rewritten << encodeRecord(RKRecord.sid, [run[0].row, run[0].column, run[0].XFIndex, encodeRK(run[0].value)], [false, false, false, true])
+            } else if (run) {
+                List<Integer> values = [run[0].row, run[0].column]
+                List<Boolean> ints = [false, false]
+                run.each { values << (int) it.XFIndex << encodeRK(it.value); ints << false << true }
+                values << (int) run.last().column
+                ints << false
+                rewritten << encodeRecord(MulRKRecord.sid, values, ints)
+            }
+            run.clear()
+        }
+        for (Record record : records) {
+            if (record instanceof NumberRecord && !formulaWritten) {
+                NumberRecord number = record as NumberRecord
+                FormulaRecord formula = new FormulaRecord()
+                formula.row = number.row
+                formula.column = number.column
+                formula.XFIndex = number.XFIndex
+                formula.value = number.value
+                formula.parsedExpression = [new IntPtg((int) number.value)] as Ptg[]
+                rewritten << formula.serialize()
+                formulaWritten = true
+            } else if (record instanceof NumberRecord && record.value == Math.rint(record.value)) {
+                NumberRecord number = record as NumberRecord
+                if (run && (run.last().row != number.row || run.last().column + 1 != number.column)) {
+                    flush()
+                }
+                run << number
+            } else {
+                flush()
+                rewritten << record.serialize()
+            }
+        }
+        flush()
+        rewritten
+    }
+
+    private static int encodeRK(double value) {
+        ((int) value << 2) | 2
+    }
+
+    /**
+     * @param values values of the record fields in order
+     * @param ints whether the field at the same position is four bytes long, the other fields are two bytes long
+     * @return the record including its header
+     */
+    private static byte[] encodeRecord(short sid, List<Integer> values, List<Boolean> ints) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream()
+        values.eachWithIndex { int value, int i ->
+            (ints[i] ? 4 : 2).times { int b -> body.write((value >> (8 * b)) & 0xFF) }
+        }
+        ByteArrayOutputStream record = new ByteArrayOutputStream()
+        [sid, body.size()].each { int value -> record.write(value & 0xFF); record.write((value >> 8) & 0xFF) }
+        body.writeTo(record)
+        record.toByteArray()
+    }
+}
@@ -6,10 +6,23 @@ import org.apache.poi.hssf.usermodel.HSSFRow
 import org.apache.poi.hssf.usermodel.HSSFSheet
 import org.apache.poi.hssf.usermodel.HSSFWorkbook
 import org.apache.poi.hssf.util.HSSFColor
+import org.apache.poi.ss.usermodel.Cell
+import org.apache.poi.ss.usermodel.Row
+import org.apache.poi.ss.usermodel.Sheet
+import org.apache.poi.xssf.usermodel.XSSFWorkbook
 import org.modelcatalogue.crf.model.CaseReportForm
+import org.modelcatalogue.crf.model.Item
+import org.modelcatalogue.crf.model.Section
 import spock.lang.Shared
 import spock.lang.Specification
 
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
+import static org.modelcatalogue.crf.serializer.WorkbookValues.toValues
+
 class CaseReportFormSerializerSpec extends Specification {
 
     @Shared HSSFWorkbook workbook
@@ -610,6 +623,242 @@ class CaseReportFormSerializerSpec extends Specification {
         noExceptionThrown()
     }
 
+    def "heading styles are shared and columns are wide enough for the values"() {
+        HSSFWorkbook empty = new HSSFWorkbook()
+
+        expect:
+        workbook.numCellStyles == empty.numCellStyles + 3
+        workbook.numberOfFonts == empty.numberOfFonts + 1
+
+        when:
+        HSSFSheet itemsSheet = workbook.getSheet(SHEET_ITEMS)
+        int conditionalDisplayColumn = itemsSheet.getRow(0).cellIterator().find { it.stringCellValue == ITEM_SIMPLE_CONDITIONAL_DISPLAY }.columnIndex
+        int nameColumn = itemsSheet.getRow(0).cellIterator().find { it.stringCellValue == ITEM_NAME }.columnIndex
+
+        then:
+        itemsSheet.getColumnWidth(nameColumn) >= ITEM_NAME_3.length() * 256
+        itemsSheet.getColumnWidth(conditionalDisplayColumn) >= ITEM_SIMPLE_CONDITIONAL_DISPLAY_3.length() * 256
+        itemsSheet.getColumnWidth(conditionalDisplayColumn) <= 255 * 256
+    }
+
+    def "streaming xlsx has the same content as xls"() {
+        URL complexFormFileURL = CaseReportFormSerializerSpec.getResource('samplePhysicalExamEnglish.crf')
+        CaseReportForm form = CaseReportForm.load(new File(complexFormFileURL.toURI()))
+
+        when:
+        HSSFWorkbook xls = serialize form
+        XSSFWorkbook xlsx = serializeXlsx form, 2
+
+        then:
+        xlsx.numberOfSheets == xls.numberOfSheets
+        (0..<xls.numberOfSheets).every { xlsx.getSheetName(it) == xls.getSheetName(it) }
+        (0..<xls.numberOfSheets).every { toValues(xlsx.getSheetAt(it)) == toValues(xls.getSheetAt(it)) }
+
+        when:
+        Cell xlsHeading = xls.getSheet(SHEET_ITEMS).getRow(0).getCell(0)
+        Cell xlsxHeading = xlsx.getSheet(SHEET_ITEMS).getRow(0).getCell(0)
+
+        then:
+        xlsxHeading.cellStyle.fillForegroundColor == xlsHeading.cellStyle.fillForegroundColor
+        xlsxHeading.cellStyle.borderLeft == xlsHeading.cellStyle.borderLeft
+        xlsx.getFontAt(xlsxHeading.cellStyle.fontIndex).boldweight == xls.getFontAt(xlsHeading.cellStyle.fontIndex).boldweight
+    }
+
+    def "row access window must be positive"() {
+        when:
+        new CaseReportFormSerializer(buildTestForm()).writeXlsx(new ByteArrayOutputStream(), 0)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "only changed sections are read again when the form is written again"() {
+        URL complexFormFileURL = CaseReportFormSerializerSpec.getResource('samplePhysicalExamEnglish.crf')
+        CaseReportForm form = CaseReportForm.load(new File(complexFormFileURL.toURI()))
+        CaseReportFormSerializer serializer = new CaseReportFormSerializer(form)
+        serializer.reuseRows = true
+        serializer.write(new ByteArrayOutputStream())
+        Map<Section, SectionRows> previousRows = new IdentityHashMap<Section, SectionRows>(serializer.sectionRows)
+
+        Item appearance = form.findItem('APPEARANCE')
+        Section changed = appearance.section
+
+        when:
+        appearance.leftItemText = 'Overall Appearance'
+        ByteArrayOutputStream output = new ByteArrayOutputStream()
+        serializer.write(output)
+        HSSFWorkbook rewritten = new HSSFWorkbook(new ByteArrayInputStream(output.toByteArray()))
+        HSSFWorkbook fresh = serialize form
+
+        then:
+        (0..<fresh.numberOfSheets).every { toValues(rewritten.getSheetAt(it)) == toValues(fresh.getSheetAt(it)) }
+        (0..<SectionRows.ITEM_COLUMNS).every { rewritten.getSheet(SHEET_ITEMS).getColumnWidth(it) == fresh.getSheet(SHEET_ITEMS).getColumnWidth(it) }
+        rewritten.getSheet(SHEET_ITEMS).getRow(1).getCell(3).cellType == fresh.getSheet(SHEET_ITEMS).getRow(1).getCell(3).cellType
+
+        !serializer.sectionRows[changed].is(previousRows[changed])
+        form.sections.values().findAll { !it.is(changed) }.every { serializer.sectionRows[it].is(previousRows[it]) }
+
+        when:
+        SectionRows unsorted = serializer.sectionRows[changed]
+        changed.sortItemsByQuestionNumber()
+        serializer.write(new ByteArrayOutputStream())
+
+        then:
+        !serializer.sectionRows[changed].is(unsorted)
+
+        when:
+        form.@sections.remove(changed.label)
+        serializer.write(new ByteArrayOutputStream())
+
+        then:
+        !serializer.sectionRows.containsKey(changed)
+    }
+
+    def "rows are not kept after the write unless reused"() {
+        CaseReportFormSerializer serializer = new CaseReportFormSerializer(buildTestForm())
+
+        when:
+        serializer.writeXlsx(new ByteArrayOutputStream())
+
+        then:
+        serializer.sectionRows.isEmpty()
+
+        when:
+        serializer.reuseRows = true
+        serializer.write(new ByteArrayOutputStream())
+
+        then:
+        !serializer.sectionRows.isEmpty()
+
+        when:
+        serializer.reuseRows = false
+
+        then:
+        serializer.sectionRows.isEmpty()
+    }
+
+    def "text tables have the same content as the workbook"() {
+        URL complexFormFileURL = CaseReportFormSerializerSpec.getResource('samplePhysicalExamEnglish.crf')
+        CaseReportForm form = CaseReportForm.load(new File(complexFormFileURL.toURI()))
+        File directory = File.createTempDir()
+
+        when:
+        HSSFWorkbook xls = serialize form
+        new CaseReportFormSerializer(form).writeText(directory, format)
+
+        then:
+        directory.list().sort() == [SHEET_CRF, SHEET_GROUPS, SHEET_ITEMS, SHEET_SECTIONS].collect { it + format.extension }.sort()
+        [SHEET_CRF, SHEET_SECTIONS, SHEET_GROUPS, SHEET_ITEMS].every { String sheet ->
+            parseDelimited(new File(directory, sheet + format.extension).getText('UTF-8'), format.delimiter) == toTextValues(xls.getSheet(sheet))
+        }
+
+        cleanup:
+        directory.deleteDir()
+
+        where:
+        format << TextFormat.values()
+    }
+
+    def "text values are escaped"() {
+        StringWriter writer = new StringWriter()
+
+        when:
+        DelimitedTextRowSink.write(writer, ',' as char, ['plain', 'a,b', 'say "hi"', 'two\nlines', 5, RowSink.BLANK, null] as Object[])
+
+        then:
+        writer.toString() == 'plain,"a,b","say ""hi""","two\nlines",5,,\r\n'
+    }
+
+    def "rows are measured only for the sinks needing the widths"() {
+        Section section = buildTestForm().sections.values().first()
+        List<ColumnWidthEstimator> widths = []
+        RowSink sink = [
+            sheet: { SheetTemplate template -> },
+            needsWidths: { needsWidths },
+            rows: { List<Object[]> rows, ColumnWidthEstimator estimator -> widths << estimator },
+            finish: { -> }
+        ] as RowSink
+
+        when:
+        SectionRows.writeSectionRow(section, sink)
+        SectionRows.writeGroupRows(section, sink)
+        SectionRows.writeItemRows(section, sink)
+
+        then:
+        widths.size() == 3
+        widths.every { (it != null) == needsWidths }
+
+        where:
+        needsWidths << [true, false]
+    }
+
+    def "missing data type is written as empty value"() {
+        CaseReportForm form = buildTestForm()
+        form.sections.values().first().items.values().first().dataType = null
+
+        when:
+        HSSFWorkbook workbook = serialize form
+
+        then:
+        workbook.getSheet(SHEET_ITEMS).getRow(1).getCell(19).stringCellValue == ''
+    }
+
+    def "repeated values share the same string in the workbook"() {
+        HSSFWorkbook workbook = new HSSFWorkbook()
+        WorkbookRowSink sink = new WorkbookRowSink(workbook, new ByteArrayOutputStream())
+
+        when:
+        sink.sheet(new SheetTemplate(SHEET_ITEMS, 0, ITEM_NAME, 1, ITEM_DATA_TYPE))
+        sink.rows([['FIRST', 'ST'] as Object[], ['SECOND', 'ST'] as Object[]], new ColumnWidthEstimator())
+        Sheet sheet = workbook.getSheet(SHEET_ITEMS)
+
+        then:
+        sheet.getRow(1).getCell(1).richStringCellValue.is(sheet.getRow(2).getCell(1).richStringCellValue)
+        !sheet.getRow(1).getCell(0).richStringCellValue.is(sheet.getRow(2).getCell(0).richStringCellValue)
+    }
+
+    def "listener is notified about the sheets and phases"() {
+        CaseReportForm form = buildTestForm()
+        RecordingSerializationListener listener = new RecordingSerializationListener()
+        CaseReportFormSerializer serializer = new CaseReportFormSerializer(form)
+        serializer.listener = listener
+        ByteArrayOutputStream output = new ByteArrayOutputStream()
+
+        when:
+        serializer.write(output)
+
+        then:
+        listener.sheets.keySet().toList() == [SHEET_CRF, SHEET_SECTIONS, SHEET_GROUPS, SHEET_ITEMS, INSTRUCTIONS_SHEET]
+        listener.sheets[SHEET_CRF].rows == 2
+        listener.sheets[SHEET_ITEMS].rows == form.sections.values().sum { it.items.size() } + 1
+        listener.sheets[SHEET_ITEMS].cells > listener.sheets[SHEET_ITEMS].rows
+        listener.sheets.values().every { it.elapsedNanos > 0 }
+        SerializationListener.Phase.values().every { listener.getElapsedNanos(it) > 0 }
+        listener.cellStyles == 3
+        listener.fonts == 1
+        listener.bytes == output.size()
+        listener.toString().contains("sheet $SHEET_ITEMS")
+    }
+
+    def "frozen form is written by many threads at once same as the original"() {
+        URL complexFormFileURL = CaseReportFormSerializerSpec.getResource('samplePhysicalExamEnglish.crf')
+        CaseReportForm form = CaseReportForm.load(new File(complexFormFileURL.toURI()))
+        CaseReportForm frozen = form.freeze()
+        ExecutorService executor = Executors.newFixedThreadPool(4)
+
+        when:
+        HSSFWorkbook original = serialize form
+        List<Future<HSSFWorkbook>> workbooks = (1..8).collect { executor.submit({ serialize frozen } as Callable<HSSFWorkbook>) }
+
+        then:
+        workbooks.every { Future<HSSFWorkbook> workbook ->
+            (0..<original.numberOfSheets).every { toValues(workbook.get().getSheetAt(it)) == toValues(original.getSheetAt(it)) }
+        }
+
+        cleanup:
+        executor.shutdown()
+    }
+
     private static final String SHEET_CRF = 'CRF'
 
     private static final String HEADING_CRF_NAME = 'CRF_NAME'
@@ -796,6 +1045,61 @@ class CaseReportFormSerializerSpec extends Specification {
 
     }
 
+    private static XSSFWorkbook serializeXlsx(CaseReportForm form, int rowAccessWindowSize) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream()
+        new CaseReportFormSerializer(form).writeXlsx(output, rowAccessWindowSize)
+
+        ByteArrayInputStream input = new ByteArrayInputStream(output.toByteArray())
+        new XSSFWorkbook(input)
+    }
+
+    private static List<List<String>> toTextValues(Sheet sheet) {
+        (sheet.firstRowNum..sheet.lastRowNum).collect { int rowNum ->
+            Row row = sheet.getRow(rowNum)
+            (0..<sheet.getRow(0).lastCellNum).collect { int cellNum ->
+                Cell cell = row.getCell(cellNum)
+                if (!cell || cell.cellType == Cell.CELL_TYPE_BLANK) {
+                    return ''
+                }
+                cell.cellType == Cell.CELL_TYPE_NUMERIC ? String.valueOf(cell.numericCellValue as int) : cell.stringCellValue
+            }
+        }
+    }
+
+    private static List<List<String>> parseDelimited(String text, char delimiter) {
+        List<List<String>> rows = []
+        List<String> row = []
+        StringBuilder value = new StringBuilder()
+        boolean quoted = false
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i)
+            if (quoted) {
+                if (c == '"' as char && i + 1 < text.length() && text.charAt(i + 1) == '"' as char) {
+                    value << c
+                    i++
+                } else if (c == '"' as char) {
+                    quoted = false
+                } else {
+                    value << c
+                }
+            } else if (c == '"' as char) {
+                quoted = true
+            } else if (c == delimiter) {
+                row << value.toString()
+                value.length = 0
+            } else if (c == '\r' as char) {
+                row << value.toString()
+                value.length = 0
+                rows << row
+                row = []
+                i++
+            } else {
+                value << c
+            }
+        }
+        rows
+    }
+
     private static HSSFWorkbook serialize(CaseReportForm form) {
         ByteArrayOutputStream output = new ByteArrayOutputStream()
         new CaseReportFormSerializer(form).write(output)
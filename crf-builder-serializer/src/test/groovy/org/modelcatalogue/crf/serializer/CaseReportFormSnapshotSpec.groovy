@@ -0,0 +1,120 @@
+package org.modelcatalogue.crf.serializer
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import org.modelcatalogue.crf.model.CaseReportForm
+import org.modelcatalogue.crf.model.GridGroup
+import org.modelcatalogue.crf.model.Item
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+
+import static org.modelcatalogue.crf.serializer.WorkbookValues.toValues
+import static org.modelcatalogue.crf.serializer.WorkbookValues.writeXls
+
+class CaseReportFormSnapshotSpec extends Specification {
+
+    @Rule TemporaryFolder tmp = new TemporaryFolder()
+
+    @Shared File source
+    @Shared CaseReportForm original
+
+    def setupSpec() {
+        source = new File(CaseReportFormSnapshotSpec.getResource('samplePhysicalExamEnglish.crf').toURI())
+        original = CaseReportForm.load(source)
+    }
+
+    def "snapshot is read back the same"() {
+        when:
+        CaseReportForm restored = CaseReportFormSnapshot.read(ByteBuffer.wrap(snapshot(original)))
+
+        then:
+        toValues(writeXls(restored)) == toValues(writeXls(original))
+        restored.sections.values()*.items*.keySet() == original.sections.values()*.items*.keySet()
+        (restored.sections['III Other'].groups['Other Body System Site'] as GridGroup).header == 'Other Body System / Site'
+
+        when:
+        Item comments = restored.findItem('APPEARANCE_COMMENTS')
+
+        then:
+        comments.conditionalDisplay.response.is(restored.findItem('APPEARANCE').findResponseOptionByValue(comments.conditionalDisplay.response.value))
+        comments.conditionalDisplay.message == original.findItem('APPEARANCE_COMMENTS').conditionalDisplay.message
+    }
+
+    def "snapshot is read from memory mapped file"() {
+        File file = tmp.newFile('form.crfs')
+        file.bytes = snapshot(original.freeze())
+
+        expect:
+        toValues(writeXls(CaseReportFormSnapshot.read(file))) == toValues(writeXls(original))
+    }
+
+    def "invalid snapshots are rejected"() {
+        when:
+        CaseReportFormSnapshot.read(ByteBuffer.wrap(bytes))
+
+        then:
+        thrown(IOException)
+
+        where:
+        bytes << [
+            'not a snapshot'.bytes,
+            ('CRFS'.bytes.toList() + [99 as byte]) as byte[],
+            snapshot(original).with { it[0..<(it.length / 2 as int)] } as byte[],
+            header(0xFF, 0xFF, 0xFF, 0xFF, 0x07),
+            header(0, 0xFF, 0xFF, 0xFF, 0xFF, 0x07),
+            header(0, 1, 0xFF, 0xFF, 0xFF, 0xFF, 0x07),
+            header(0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01)
+        ]
+    }
+
+    def "forms are loaded from the source only if the source changes"() {
+        File crf = tmp.newFile('form.crf')
+        crf.bytes = source.bytes
+        List<File> loaded = []
+        CaseReportFormSnapshotCache cache = new CaseReportFormSnapshotCache(new File(tmp.root, 'cache'), { File file ->
+            loaded << file
+            CaseReportForm.load(file)
+        } as CaseReportFormSnapshotCache.Loader)
+
+        when:
+        CaseReportForm first = cache.load(crf)
+        CaseReportForm second = cache.load(crf)
+
+        then:
+        loaded == [crf]
+        cache.getSnapshotFile(crf).isFile()
+        toValues(writeXls(second)) == toValues(writeXls(first))
+
+        when:
+        crf.text = crf.text.replace('Physical Exam', 'Changed Exam')
+        CaseReportForm changed = cache.load(crf)
+
+        then:
+        loaded == [crf, crf]
+        changed.name != first.name
+
+        when:
+        cache.getSnapshotFile(crf).bytes = 'broken'.bytes
+        cache.load(crf)
+
+        then:
+        loaded == [crf, crf, crf]
+        CaseReportFormSnapshot.read(cache.getSnapshotFile(crf)).name == changed.name
+    }
+
+    /**
+     * @return snapshot header of the current version followed by given bytes
+     */
+    private static byte[] header(int... bytes) {
+        ('CRFS'.bytes.toList() + [CaseReportFormSnapshot.VERSION] + bytes.toList()).collect { it as byte } as byte[]
+    }
+
+    private static byte[] snapshot(CaseReportForm form) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream()
+        CaseReportFormSnapshot.write(form, output)
+        output.toByteArray()
+    }
+}
@@ -0,0 +1,48 @@
+package org.modelcatalogue.crf.serializer
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook
+import org.apache.poi.ss.usermodel.Cell
+import org.apache.poi.ss.usermodel.Row
+import org.apache.poi.ss.usermodel.Sheet
+import org.modelcatalogue.crf.model.CaseReportForm
+
+/**
+ * Flattens the workbooks into plain values so the workbooks written in different ways can be compared in the specs.
+ */
+final class WorkbookValues {
+
+    private WorkbookValues() {}
+
+    /**
+     * @return the form written as excel file by {@link CaseReportFormSerializer}
+     */
+    static byte[] writeXls(CaseReportForm form) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream()
+        new CaseReportFormSerializer(form).write(output)
+        output.toByteArray()
+    }
+
+    /**
+     * @return values of all the sheets of the excel file by the sheet name
+     */
+    static Map<String, List<List<Object>>> toValues(byte[] xls) {
+        HSSFWorkbook workbook = new HSSFWorkbook(new ByteArrayInputStream(xls))
+        workbook.collectEntries { Sheet sheet -> [sheet.sheetName, toValues(sheet)] }
+    }
+
+    /**
+     * @return values of the rows of the sheet, the numbers as doubles and the blank cells and empty strings as null
+     */
+    static List<List<Object>> toValues(Sheet sheet) {
+        (sheet.firstRowNum..sheet.lastRowNum).collect { int rowNum ->
+            Row row = sheet.getRow(rowNum)
+            row ? (0..<Math.max(row.lastCellNum, 0)).collect { int cellNum ->
+                Cell cell = row.getCell(cellNum)
+                if (!cell || cell.cellType == Cell.CELL_TYPE_BLANK) {
+                    return null
+                }
+                cell.cellType == Cell.CELL_TYPE_NUMERIC ? cell.numericCellValue : cell.stringCellValue ?: null
+            } : []
+        }
+    }
+}